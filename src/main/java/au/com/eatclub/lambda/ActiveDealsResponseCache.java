@@ -0,0 +1,160 @@
+package au.com.eatclub.lambda;
+
+import au.com.eatclub.snapshot.DealSnapshot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Serialized active-deals response bodies, keyed by snapshot version and minute of the day.
+ *
+ * <p>The answer for a minute only changes when the feed (and with it the
+ * {@link DealSnapshot#version() snapshot version}) changes, so a cached body can be returned
+ * without querying, mapping or serializing anything. Bodies are filled lazily, one slot per
+ * minute of the day, and only the newest version is kept: the first request for a newer version
+ * drops every body of the previous one. Requests for {@link DealSnapshot#NO_VERSION} are never
+ * cached.
+ *
+ * <p>Memory is bounded by {@value #MAX_BYTES_ENV} (32 MiB by default), counted as an upper bound
+ * of two bytes per character plus the String overhead. Once a version's bodies reach the budget,
+ * further minutes are served uncached. The footprint and hit/miss counts are logged whenever a
+ * version is replaced and are available through {@link #footprintBytes()}, {@link #hits()} and
+ * {@link #misses()}.
+ */
+@ThreadSafe
+public class ActiveDealsResponseCache {
+    public static final String MAX_BYTES_ENV = "ACTIVE_DEALS_RESPONSE_CACHE_MAX_BYTES";
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    // String header plus its backing byte[] header
+    private static final long STRING_OVERHEAD_BYTES = 56;
+
+    private static final Logger logger = LogManager.getLogger(ActiveDealsResponseCache.class);
+
+    private final long maxBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Generation generation = new Generation(DealSnapshot.NO_VERSION);
+
+    public ActiveDealsResponseCache() {
+        this(maxBytesFromEnvironment());
+    }
+
+    public ActiveDealsResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Cached body for {@code minuteOfDay} of snapshot {@code version}, or {@code null}.
+     */
+    public String get(long version, int minuteOfDay) {
+        Generation current = generation;
+        String body = version != DealSnapshot.NO_VERSION && current.version == version
+                ? current.bodies.get(minuteOfDay)
+                : null;
+        (body != null ? hits : misses).incrementAndGet();
+        return body;
+    }
+
+    /**
+     * Stores the body for {@code minuteOfDay} of snapshot {@code version}, unless the version is
+     * older than the cached one or the body would exceed the memory budget.
+     */
+    public void put(long version, int minuteOfDay, String body) {
+        if (version == DealSnapshot.NO_VERSION) {
+            return;
+        }
+        Generation current = generationFor(version);
+        if (current == null) {
+            return;
+        }
+
+        long bodyBytes = estimateBytes(body);
+        long footprint = current.bytes.addAndGet(bodyBytes);
+        if (footprint > maxBytes || !current.bodies.compareAndSet(minuteOfDay, null, body)) {
+            current.bytes.addAndGet(-bodyBytes);
+        }
+    }
+
+    private Generation generationFor(long version) {
+        while (true) {
+            Generation current = generation;
+            if (current.version == version) {
+                return current;
+            }
+            if (current.version > version) {
+                return null;
+            }
+            Generation replacement = new Generation(version);
+            synchronized (this) {
+                if (generation == current) {
+                    generation = replacement;
+                    if (current.version != DealSnapshot.NO_VERSION) {
+                        logger.info("Dropped active deals responses for snapshot {}: {} bodies ({} bytes), {} hits, {} misses",
+                                current.version, current.size(), current.bytes.get(), hits.get(), misses.get());
+                    }
+                }
+            }
+        }
+    }
+
+    static long estimateBytes(String body) {
+        return STRING_OVERHEAD_BYTES + 2L * body.length();
+    }
+
+    /**
+     * Estimated heap held by the cached bodies of the current version.
+     */
+    public long footprintBytes() {
+        return generation.bytes.get();
+    }
+
+    /**
+     * Number of minutes cached for the current version.
+     */
+    public int size() {
+        return generation.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    private static long maxBytesFromEnvironment() {
+        String maxBytes = System.getenv(MAX_BYTES_ENV);
+        if (maxBytes == null || maxBytes.isBlank()) {
+            return DEFAULT_MAX_BYTES;
+        }
+        try {
+            return Long.parseLong(maxBytes.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + MAX_BYTES_ENV + ": " + maxBytes, e);
+        }
+    }
+
+    private static final class Generation {
+        private final long version;
+        private final AtomicReferenceArray<String> bodies = new AtomicReferenceArray<>(DealSnapshot.DAY_TOTAL_MINUTES);
+        private final AtomicLong bytes = new AtomicLong();
+
+        private Generation(long version) {
+            this.version = version;
+        }
+
+        private int size() {
+            int size = 0;
+            for (int minute = 0; minute < bodies.length(); minute++) {
+                if (bodies.get(minute) != null) {
+                    size++;
+                }
+            }
+            return size;
+        }
+    }
+}
@@ -1,21 +1,36 @@
 package au.com.eatclub.lambda;
 
+import au.com.eatclub.metrics.Metric;
+import au.com.eatclub.metrics.MetricsRegistry;
 import au.com.eatclub.model.ActiveDeal;
+import au.com.eatclub.model.ActiveDealBatch;
+import au.com.eatclub.serialization.TimeOfDayParser;
 import au.com.eatclub.service.RestaurantDealService;
+import au.com.eatclub.snapshot.DealFilter;
+import au.com.eatclub.snapshot.DealSnapshot;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import software.amazon.awssdk.http.HttpStatusCode;
 
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalTime;
-import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * AWS Lambda function handler for retrieving active restaurant deals at a specific time.
@@ -23,28 +38,99 @@ import java.util.Map;
  * and returns a list of active deals available at that time.
  * 
  * <p>Example request: v1/restaurants/deals/active?timeOfDay=6:30PM
- * 
+ *
+ * <p>Several comma-separated times are answered in one request against the same deal snapshot,
+ * as an {@link ActiveDealBatch} listing each deal once.
+ * Example request: v1/restaurants/deals/active?timeOfDay=5:00PM,5:30PM,6:00PM
+ *
+ * <p>Alternatively, 'from' and 'to' return every deal active at any point of that inclusive
+ * window, each with its effective 'activeFrom'/'activeTo' times.
+ * Example request: v1/restaurants/deals/active?from=6:00PM&to=7:00PM
+ *
+ * <p>With 'limit' (1 to 1000, default 100) and/or 'cursor', single-time and window queries return
+ * one page as {@code {"deals": [...], "nextCursor": "..."}}; passing 'nextCursor' back as
+ * 'cursor' returns the next page, until a page has no 'nextCursor'. Cursors are only valid for
+ * the same query and deal snapshot. Pages are written straight from the snapshot into a reused
+ * buffer with a {@link JsonGenerator}, without building {@link ActiveDeal}s.
+ * Example request: v1/restaurants/deals/active?timeOfDay=6:30PM&limit=50
+ *
+ * <p>With 'top' (1 to 100), a single-time query instead returns that many of the in-stock deals
+ * with the highest discount, best first.
+ * Example request: v1/restaurants/deals/active?timeOfDay=6:30PM&top=10
+ *
+ * <p>Any query can be narrowed with 'suburb', 'cuisine' (both case-insensitive), 'dineIn' and
+ * 'lightning' ("true" or "false"); a deal must match every filter given.
+ * Example request: v1/restaurants/deals/active?timeOfDay=3:00PM&suburb=Richmond&dineIn=true
+ *
+ * <p>Unfiltered serialized responses are cached per minute of the day in an
+ * {@link ActiveDealsResponseCache} until the deal snapshot changes.
+ *
+ * <p>Response cache hits and misses and the serialization latency are recorded in the
+ * {@link MetricsRegistry}, along with the request metrics recorded by {@link HandlerRuntime}.
+ *
  * <p>Implements AWS Lambda's RequestHandler interface to process API Gateway proxy events.
  * Returns responses in JSON format with appropriate HTTP status codes.
  */
 public class GetActiveDealsHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
     private static final Logger logger = LogManager.getLogger(GetActiveDealsHandler.class);
-    private  RestaurantDealService service = new RestaurantDealService();
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    public final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("h:mma");
+    private static final int MAX_BATCH_TIMES = DealSnapshot.DAY_TOTAL_MINUTES;
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    private static final int MAX_PAGE_LIMIT = 1000;
+    private static final int MAX_TOP = 100;
+    // Page bodies are written into buffers kept between requests. They are pooled rather than held
+    // per thread, as the embedded server runs every request on a new virtual thread
+    private static final int PAGE_BUFFER_POOL_SIZE = 16;
+    private static final BlockingQueue<ByteArrayBuilder> PAGE_BUFFERS = new ArrayBlockingQueue<>(PAGE_BUFFER_POOL_SIZE);
+    private static final HandlerRuntime runtime = HandlerRuntime.get();
+    private  RestaurantDealService service = runtime.service();
+    private final ObjectMapper objectMapper = runtime.objectMapper();
+    private final ActiveDealsResponseCache responseCache = new ActiveDealsResponseCache();
+    private final MetricsRegistry metrics = MetricsRegistry.global();
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        long started = System.nanoTime();
+        long allocatedAtStart = MetricsRegistry.currentThreadAllocatedBytes();
         try {
             logger.info("Request received for {} with parameter{}", request.getPath(), request.getQueryStringParameters());
-            String timeOfDay = request.getQueryStringParameters().get("timeOfDay");
-            if (timeOfDay == null || timeOfDay.isEmpty()) {
-                logger.error("Missing required parameter: timeOfDay");
-                return errorResponse("Missing required parameter: timeOfDay", 400);
+            Map<String, String> parameters = request.getQueryStringParameters();
+            String from = parameters.get("from");
+            String to = parameters.get("to");
+            String limit = parameters.get("limit");
+            String cursor = parameters.get("cursor");
+            String top = parameters.get("top");
+            boolean paginated = limit != null || cursor != null;
+            DealFilter filter = parseFilter(parameters);
+            if (top != null && (paginated || from != null || to != null)) {
+                throw new IllegalArgumentException("top is only supported with a single timeOfDay");
+            }
+            String jsonResponse;
+            if (from != null || to != null) {
+                jsonResponse = paginated
+                        ? activeDealsBetweenPage(from, to, filter, cursor, limit)
+                        : activeDealsBetween(from, to, filter);
+            } else {
+                String timeOfDay = parameters.get("timeOfDay");
+                if (timeOfDay == null || timeOfDay.isEmpty()) {
+                    logger.error("Missing required parameter: timeOfDay");
+                    return errorResponse("Missing required parameter: timeOfDay", 400);
+                }
+                if (timeOfDay.indexOf(',') >= 0) {
+                    if (top != null) {
+                        throw new IllegalArgumentException("top is only supported with a single timeOfDay");
+                    }
+                    if (paginated) {
+                        throw new IllegalArgumentException("limit and cursor are not supported with several times");
+                    }
+                    jsonResponse = activeDealsAtTimes(timeOfDay, filter);
+                } else if (top != null) {
+                    jsonResponse = bestDealsAt(timeOfDay, filter, top);
+                } else {
+                    jsonResponse = paginated
+                            ? activeDealsAtPage(timeOfDay, filter, cursor, limit)
+                            : activeDealsAt(timeOfDay, filter);
+                }
             }
-            LocalTime time = convertToLocalTime(timeOfDay);
-            List<ActiveDeal> activeDeals = service.getAllActiveDealsAtTime(time);
-            String jsonResponse = objectMapper.writeValueAsString(activeDeals);
             return new APIGatewayProxyResponseEvent()
                     .withStatusCode(200)
                     .withHeaders(Map.of("Content-Type", "application/json"))
@@ -55,6 +141,179 @@ public class GetActiveDealsHandler implements RequestHandler<APIGatewayProxyRequ
         } catch (Exception e) {
             logger.error("error occurred {}: " , e.getMessage(), e);
             return errorResponse("Internal server error", HttpStatusCode.INTERNAL_SERVER_ERROR);
+        } finally {
+            runtime.invocationCompleted("GetActiveDealsHandler", started, allocatedAtStart);
+        }
+    }
+
+    private String activeDealsAt(String timeOfDay, DealFilter filter) throws IOException {
+        int minuteOfDay = convertToMinuteOfDay(timeOfDay);
+        if (!filter.isEmpty()) {
+            return toJson(
+                    service.getAllActiveDealsAtTime(TimeOfDayParser.toLocalTime(minuteOfDay), filter));
+        }
+        long snapshotVersion = service.getSnapshotVersion();
+        String jsonResponse = responseCache.get(snapshotVersion, minuteOfDay);
+        metrics.increment(jsonResponse != null ? Metric.RESPONSE_CACHE_HIT : Metric.RESPONSE_CACHE_MISS);
+        if (jsonResponse == null) {
+            List<ActiveDeal> activeDeals = service.getAllActiveDealsAtTime(TimeOfDayParser.toLocalTime(minuteOfDay));
+            jsonResponse = toJson(activeDeals);
+            responseCache.put(snapshotVersion, minuteOfDay, jsonResponse);
+        }
+        return jsonResponse;
+    }
+
+    private String bestDealsAt(String timeOfDay, DealFilter filter, String top) throws IOException {
+        LocalTime time = TimeOfDayParser.toLocalTime(convertToMinuteOfDay(timeOfDay));
+        return toJson(service.getBestActiveDealsAtTime(time, parseTop(top), filter));
+    }
+
+    private String activeDealsAtPage(String timeOfDay, DealFilter filter, String cursor, String limit)
+            throws IOException {
+        LocalTime time = TimeOfDayParser.toLocalTime(convertToMinuteOfDay(timeOfDay));
+        int pageLimit = parsePageLimit(limit);
+        return writePage(generator -> service.writeActiveDealsPageAt(time, filter, cursor, pageLimit, generator));
+    }
+
+    private String activeDealsBetweenPage(String from, String to, DealFilter filter, String cursor, String limit)
+            throws IOException {
+        requireBounds(from, to);
+        LocalTime fromTime = TimeOfDayParser.toLocalTime(convertToMinuteOfDay(from));
+        LocalTime toTime = TimeOfDayParser.toLocalTime(convertToMinuteOfDay(to));
+        int pageLimit = parsePageLimit(limit);
+        return writePage(generator ->
+                service.writeActiveDealsPageBetween(fromTime, toTime, filter, cursor, pageLimit, generator));
+    }
+
+    private String toJson(Object value) throws IOException {
+        long started = System.nanoTime();
+        String json = objectMapper.writeValueAsString(value);
+        metrics.recordSince(Metric.SERIALIZATION, started);
+        return json;
+    }
+
+    /**
+     * Runs {@code page} against a generator over a pooled buffer and returns what it wrote. The
+     * buffer goes back to the pool afterwards, or is dropped if the pool is full.
+     */
+    private String writePage(PageWriter page) throws IOException {
+        ByteArrayBuilder buffer = PAGE_BUFFERS.poll();
+        if (buffer == null) {
+            buffer = new ByteArrayBuilder();
+        }
+        try {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8)) {
+                page.write(generator);
+            }
+            return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            buffer.reset();
+            PAGE_BUFFERS.offer(buffer);
+        }
+    }
+
+    private static int parsePageLimit(String limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_LIMIT;
+        }
+        try {
+            int value = Integer.parseInt(limit.trim());
+            if (value >= 1 && value <= MAX_PAGE_LIMIT) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid limit. Use a whole number between 1 and " + MAX_PAGE_LIMIT);
+    }
+
+    private static int parseTop(String top) {
+        try {
+            int value = Integer.parseInt(top.trim());
+            if (value >= 1 && value <= MAX_TOP) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid top. Use a whole number between 1 and " + MAX_TOP);
+    }
+
+    private static DealFilter parseFilter(Map<String, String> parameters) {
+        return new DealFilter(emptyToNull(parameters.get("suburb")), emptyToNull(parameters.get("cuisine")),
+                parseFlag(parameters, "dineIn"), parseFlag(parameters, "lightning"));
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private static Boolean parseFlag(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (value.equalsIgnoreCase("true")) {
+            return Boolean.TRUE;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException("Invalid " + name + ". Use true or false");
+    }
+
+    private String activeDealsAtTimes(String timeOfDay, DealFilter filter) throws IOException {
+        String[] tokens = timeOfDay.split(",", -1);
+        if (tokens.length > MAX_BATCH_TIMES) {
+            throw new IllegalArgumentException("Too many times requested, maximum is " + MAX_BATCH_TIMES);
+        }
+        Map<String, LocalTime> times = new LinkedHashMap<>();
+        for (String token : tokens) {
+            String time = token.trim();
+            times.put(time, TimeOfDayParser.toLocalTime(convertToMinuteOfDay(time)));
+        }
+
+        Map<LocalTime, List<ActiveDeal>> activeDeals = filter.isEmpty()
+                ? service.getAllActiveDealsAtTimes(times.values())
+                : service.getAllActiveDealsAtTimes(times.values(), filter);
+
+        // List every deal once and refer to it by index from each time. The service hands back one
+        // instance per snapshot deal, so identity tells deals apart without hashing their fields
+        List<ActiveDeal> deals = new ArrayList<>();
+        Map<ActiveDeal, Integer> dealIndexes = new IdentityHashMap<>();
+        Map<String, List<Integer>> activeAt = new LinkedHashMap<>();
+        for (Map.Entry<String, LocalTime> time : times.entrySet()) {
+            List<ActiveDeal> activeAtTime = activeDeals.getOrDefault(time.getValue(), Collections.emptyList());
+            List<Integer> indexes = new ArrayList<>(activeAtTime.size());
+            for (ActiveDeal deal : activeAtTime) {
+                indexes.add(dealIndexes.computeIfAbsent(deal, added -> {
+                    deals.add(added);
+                    return deals.size() - 1;
+                }));
+            }
+            activeAt.put(time.getKey(), indexes);
+        }
+        return toJson(new ActiveDealBatch(deals, activeAt));
+    }
+
+    private String activeDealsBetween(String from, String to, DealFilter filter) throws IOException {
+        requireBounds(from, to);
+        LocalTime fromTime = TimeOfDayParser.toLocalTime(convertToMinuteOfDay(from));
+        LocalTime toTime = TimeOfDayParser.toLocalTime(convertToMinuteOfDay(to));
+        List<ActiveDeal> activeDeals = filter.isEmpty()
+                ? service.getAllActiveDealsBetween(fromTime, toTime)
+                : service.getAllActiveDealsBetween(fromTime, toTime, filter);
+        return toJson(activeDeals);
+    }
+
+    private static void requireBounds(String from, String to) {
+        if (from == null || from.isEmpty()) {
+            logger.error("Missing required parameter: from");
+            throw new IllegalArgumentException("Missing required parameter: from");
+        }
+        if (to == null || to.isEmpty()) {
+            logger.error("Missing required parameter: to");
+            throw new IllegalArgumentException("Missing required parameter: to");
         }
     }
 
@@ -65,15 +324,21 @@ public class GetActiveDealsHandler implements RequestHandler<APIGatewayProxyRequ
                 .withBody("{\"error\":\"" + message + "\"}");
     }
 
-    private LocalTime convertToLocalTime(String timeOfDay) {
-        try {
-            java.util.Date date = simpleDateFormat.parse(timeOfDay);
-            return date.toInstant().atZone(ZoneId.systemDefault()).toLocalTime();
-
-        } catch (Exception e) {
-            logger.error("Error parsing timeOfDay: {}", e.getMessage());
+    private int convertToMinuteOfDay(String timeOfDay) {
+        int minuteOfDay = TimeOfDayParser.parseMinuteOfDay(timeOfDay);
+        if (minuteOfDay == TimeOfDayParser.INVALID) {
+            logger.error("Error parsing timeOfDay: {}", timeOfDay);
             throw new IllegalArgumentException("Invalid time format. Use format: h:mma");
         }
+        return minuteOfDay;
+    }
+
+    /**
+     * Writes one page of a paginated response.
+     */
+    @FunctionalInterface
+    private interface PageWriter {
+        void write(JsonGenerator generator) throws IOException;
     }
 }
 
@@ -1,6 +1,8 @@
 package au.com.eatclub.lambda;
 
-import au.com.eatclub.model.DealPeakTime;
+import au.com.eatclub.metrics.Metric;
+import au.com.eatclub.metrics.MetricsRegistry;
+import au.com.eatclub.model.DealOccupancy;
 import au.com.eatclub.service.RestaurantDealService;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
@@ -11,6 +13,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import software.amazon.awssdk.http.HttpStatusCode;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -21,33 +25,92 @@ import java.util.Map;
  * 
  * <p>Example request: v1/restaurants/deals/peak-times
  * 
+ * <p>One optional query parameter selects a different view of the same occupancy data:
+ * <ul>
+ *   <li>{@code bucketMinutes=N}: the occupancy curve of the day as a {@link DealOccupancy}
+ *       in N-minute buckets</li>
+ *   <li>{@code top=K}: the K non-overlapping windows with the most concurrent deals</li>
+ *   <li>{@code minDeals=N}: every window with at least N concurrent deals</li>
+ * </ul>
+ *
  * <p>Implements AWS Lambda's RequestHandler interface to process API Gateway proxy events.
- * Returns a list of DealPeakTime objects in JSON format, each containing a time range
+ * By default returns a list of DealPeakTime objects in JSON format, each containing a time range
  * and the count of active deals during that range.
  */
 public class GetPeakTimeForDealsHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
     private static final Logger logger = LogManager.getLogger(GetPeakTimeForDealsHandler.class);
-    private  RestaurantDealService service = new RestaurantDealService();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final HandlerRuntime runtime = HandlerRuntime.get();
+    private static final String BUCKET_MINUTES = "bucketMinutes";
+    private static final String TOP = "top";
+    private static final String MIN_DEALS = "minDeals";
+    private static final List<String> OPTIONS = List.of(BUCKET_MINUTES, TOP, MIN_DEALS);
+    private  RestaurantDealService service = runtime.service();
+    private final ObjectMapper objectMapper = runtime.objectMapper();
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        long started = System.nanoTime();
+        long allocatedAtStart = MetricsRegistry.currentThreadAllocatedBytes();
         try {
-            logger.info("Request received for {}", request.getPath());
+            logger.info("Request received for {} with parameters {}", request.getPath(), request.getQueryStringParameters());
 
-            List<DealPeakTime> dealPeakTimes = service.findPeakTimeRange();
-            String jsonResponse = objectMapper.writeValueAsString(dealPeakTimes);
+            Object result = query(request.getQueryStringParameters());
+            long serializationStarted = System.nanoTime();
+            String jsonResponse = objectMapper.writeValueAsString(result);
+            MetricsRegistry.global().recordSince(Metric.SERIALIZATION, serializationStarted);
             return new APIGatewayProxyResponseEvent()
                     .withStatusCode(200)
                     .withHeaders(Map.of("Content-Type", "application/json"))
                     .withBody(jsonResponse);
 
+        } catch (IllegalArgumentException illegalArgumentException) {
+            return errorResponse(illegalArgumentException.getMessage(), 400);
         } catch (Exception e) {
             logger.error("error occurred {}: " , e.getMessage(), e);
             return errorResponse("Internal server error", HttpStatusCode.INTERNAL_SERVER_ERROR);
+        } finally {
+            runtime.invocationCompleted("GetPeakTimeForDealsHandler", started, allocatedAtStart);
         }
     }
 
+    private Object query(Map<String, String> parameters) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        if (parameters != null) {
+            for (String option : OPTIONS) {
+                if (parameters.get(option) != null) {
+                    options.put(option, parameters.get(option));
+                }
+            }
+        }
+        if (options.size() > 1) {
+            throw new IllegalArgumentException("Use only one of: " + String.join(", ", OPTIONS));
+        }
+
+        if (options.containsKey(BUCKET_MINUTES)) {
+            return service.getOccupancy(parsePositiveInt(BUCKET_MINUTES, options.get(BUCKET_MINUTES)));
+        }
+        if (options.containsKey(TOP)) {
+            return service.findTopPeakWindows(parsePositiveInt(TOP, options.get(TOP)));
+        }
+        if (options.containsKey(MIN_DEALS)) {
+            return service.findWindowsWithAtLeast(parsePositiveInt(MIN_DEALS, options.get(MIN_DEALS)));
+        }
+        return service.findPeakTimeRange();
+    }
+
+    private static int parsePositiveInt(String name, String value) {
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        logger.error("Invalid {}: {}", name, value);
+        throw new IllegalArgumentException("Invalid " + name + ". Use a positive whole number");
+    }
+
     private APIGatewayProxyResponseEvent errorResponse(String message, int statusCode) {
         return new APIGatewayProxyResponseEvent()
                 .withStatusCode(statusCode)
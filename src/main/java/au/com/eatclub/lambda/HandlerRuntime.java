@@ -0,0 +1,174 @@
+package au.com.eatclub.lambda;
+
+import au.com.eatclub.metrics.Metric;
+import au.com.eatclub.metrics.MetricsRegistry;
+import au.com.eatclub.model.ActiveDeal;
+import au.com.eatclub.model.DealPeakTime;
+import au.com.eatclub.model.Restaurant;
+import au.com.eatclub.repository.RestaurantFeedParser;
+import au.com.eatclub.repository.RestaurantRepository;
+import au.com.eatclub.service.RestaurantDealService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runtime context shared by the Lambda handlers of this function package.
+ *
+ * <p>The {@link ObjectMapper}, {@link RestaurantRepository} (and with it the HTTP client and
+ * cached feed) and {@link RestaurantDealService} are created once per execution environment,
+ * during static initialisation, instead of once per handler instance. The context registers
+ * itself as a CRaC {@link Resource}: with Lambda SnapStart enabled, {@link #beforeCheckpoint}
+ * runs the Jackson serializers for {@link ActiveDeal} and {@link DealPeakTime}, the snapshot
+ * build and both query paths against the sample feed bundled at
+ * {@value #SAMPLE_FEED}, so the code paths are already loaded and JIT-compiled when the
+ * snapshot is restored. The sample runs through its own service, so nothing from it leaks into
+ * the shared feed cache. If the repository has a feed snapshot file, it is mapped and the deal
+ * snapshot built from it during initialisation, so both are in place before a checkpoint.
+ *
+ * <p>The first invocation after initialisation or restore is logged with its latency, alongside
+ * the priming time, to compare against the {@code Init Duration} / {@code Restore Duration} of
+ * the Lambda {@code REPORT} line. Every invocation's latency and allocated bytes are recorded in
+ * the {@link MetricsRegistry}, which is then flushed if its interval has passed; whatever the
+ * priming run recorded is discarded so it does not show up in the first flush.
+ */
+@ThreadSafe
+public final class HandlerRuntime implements Resource {
+    static final String SAMPLE_FEED = "/priming/sample-feed.json";
+
+    private static final Logger logger = LogManager.getLogger(HandlerRuntime.class);
+    private static final int PRIMING_ROUNDS = 200;
+    private static final HandlerRuntime INSTANCE = new HandlerRuntime();
+
+    static {
+        Core.getGlobalContext().register(INSTANCE);
+    }
+
+    private final ObjectMapper objectMapper;
+    private final RestaurantRepository repository;
+    private final RestaurantDealService service;
+    private final AtomicBoolean awaitingFirstInvocation = new AtomicBoolean(true);
+    private volatile String phase = "init";
+
+    private HandlerRuntime() {
+        long started = System.nanoTime();
+        this.objectMapper = new ObjectMapper();
+        this.repository = new RestaurantRepository();
+        this.service = new RestaurantDealService(repository);
+        service.preloadSnapshot();
+        logger.info("Handler runtime initialised in {} ms", elapsedMillis(started));
+    }
+
+    public static HandlerRuntime get() {
+        return INSTANCE;
+    }
+
+    public ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    public RestaurantDealService service() {
+        return service;
+    }
+
+    /**
+     * Records the latency of an invocation and the bytes the handling thread allocated during it
+     * ({@code allocatedBytesAtStart} being {@link MetricsRegistry#currentThreadAllocatedBytes()}
+     * when it started), then flushes the metrics if due. The latency of the first invocation
+     * handled after initialisation or restore is also logged.
+     */
+    public void invocationCompleted(String handler, long startedNanos, long allocatedBytesAtStart) {
+        MetricsRegistry metrics = MetricsRegistry.global();
+        metrics.recordSince(Metric.REQUEST_LATENCY, startedNanos);
+        long allocatedBytes = MetricsRegistry.currentThreadAllocatedBytes();
+        if (allocatedBytesAtStart >= 0 && allocatedBytes >= 0) {
+            metrics.record(Metric.REQUEST_ALLOCATED_BYTES, allocatedBytes - allocatedBytesAtStart);
+        }
+        metrics.flushIfDue();
+
+        if (awaitingFirstInvocation.compareAndSet(true, false)) {
+            logger.info("First invocation after {} handled by {} in {} ms", phase, handler, elapsedMillis(startedNanos));
+        }
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+        prime();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        phase = "restore";
+        awaitingFirstInvocation.set(true);
+        logger.info("Handler runtime restored from snapshot");
+    }
+
+    /**
+     * Exercises feed parsing, snapshot building, both queries and response serialization against
+     * the bundled sample feed.
+     */
+    void prime() throws IOException {
+        long started = System.nanoTime();
+        List<Restaurant> sample = Collections.unmodifiableList(loadSampleFeed());
+        RestaurantDealService sampleService = new RestaurantDealService(new FixedFeedRepository(sample));
+
+        int responseBytes = 0;
+        for (int round = 0; round < PRIMING_ROUNDS; round++) {
+            LocalTime time = LocalTime.of(round % 24, (round * 7) % 60);
+            List<ActiveDeal> activeDeals = sampleService.getAllActiveDealsAtTime(time);
+            List<DealPeakTime> peakTimes = sampleService.findPeakTimeRange();
+            responseBytes += objectMapper.writeValueAsBytes(activeDeals).length;
+            responseBytes += objectMapper.writeValueAsBytes(peakTimes).length;
+        }
+        sampleService.findPeakTimeRange(ChronoUnit.SECONDS);
+        responseBytes += objectMapper.writeValueAsBytes(sampleService.getOccupancy(15)).length;
+        responseBytes += objectMapper.writeValueAsBytes(sampleService.findTopPeakWindows(3)).length;
+        responseBytes += objectMapper.writeValueAsBytes(sampleService.findWindowsWithAtLeast(1)).length;
+
+        MetricsRegistry.global().discard();
+        logger.info("Primed handler runtime with {} sample restaurants in {} ms ({} response bytes)",
+                sample.size(), elapsedMillis(started), responseBytes);
+    }
+
+    private List<Restaurant> loadSampleFeed() throws IOException {
+        try (InputStream inputStream = HandlerRuntime.class.getResourceAsStream(SAMPLE_FEED)) {
+            if (inputStream == null) {
+                throw new IOException("Sample feed not found: " + SAMPLE_FEED);
+            }
+            return new RestaurantFeedParser(objectMapper).parse(inputStream);
+        }
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    }
+
+    /**
+     * Repository serving a fixed, already parsed feed without touching the network.
+     */
+    private static final class FixedFeedRepository extends RestaurantRepository {
+        private final List<Restaurant> restaurants;
+
+        private FixedFeedRepository(List<Restaurant> restaurants) {
+            this.restaurants = restaurants;
+        }
+
+        @Override
+        public List<Restaurant> getRestaurantDataFromApi() {
+            return restaurants;
+        }
+    }
+}
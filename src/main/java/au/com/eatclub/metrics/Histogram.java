@@ -0,0 +1,185 @@
+package au.com.eatclub.metrics;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free histogram of non-negative long values in the style of HdrHistogram.
+ *
+ * <p>Values below {@value #SUB_BUCKETS} get a bucket each; above that, every power of two is
+ * split into {@value #SUB_BUCKETS} equal sub-buckets, so a recorded value is off by at most 1/32
+ * of itself when read back as its bucket's midpoint. The whole long range fits in 960 buckets,
+ * so {@link #record(long)} is a few shifts and one atomic increment, with no allocation and no
+ * resizing. Exact count, sum, min and max are kept alongside.
+ *
+ * <p>{@link #drain()} reads and resets the histogram. Values recorded concurrently with a drain
+ * land either in the drained snapshot or in the next one; the snapshot's count, sum and buckets
+ * may disagree by those few in-flight values.
+ */
+@ThreadSafe
+public final class Histogram {
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Records {@code value}; negative values are recorded as 0.
+     */
+    public void record(long value) {
+        long clamped = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(clamped));
+        count.incrementAndGet();
+        sum.addAndGet(clamped);
+        if (clamped < min.get()) {
+            min.accumulateAndGet(clamped, Math::min);
+        }
+        if (clamped > max.get()) {
+            max.accumulateAndGet(clamped, Math::max);
+        }
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Smallest value that falls into {@code bucket}.
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Value reported for {@code bucket}: the middle of its range.
+     */
+    static long midpoint(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return lowerBound(bucket) + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * Returns what was recorded since the previous drain and resets the histogram.
+     */
+    public Snapshot drain() {
+        long[] bucketCounts = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (counts.get(bucket) != 0) {
+                bucketCounts[bucket] = counts.getAndSet(bucket, 0);
+            }
+        }
+        return new Snapshot(bucketCounts, count.getAndSet(0), sum.getAndSet(0),
+                min.getAndSet(Long.MAX_VALUE), max.getAndSet(Long.MIN_VALUE));
+    }
+
+    /**
+     * Drained contents of a {@link Histogram}.
+     */
+    public static final class Snapshot {
+        private final long[] bucketCounts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        private Snapshot(long[] bucketCounts, long count, long sum, long min, long max) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long sum() {
+            return sum;
+        }
+
+        public long min() {
+            return count == 0 ? 0 : min;
+        }
+
+        public long max() {
+            return count == 0 ? 0 : max;
+        }
+
+        /**
+         * Value at quantile {@code q} (0 to 1), accurate to the bucket width.
+         */
+        public long valueAtQuantile(double q) {
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+                seen += bucketCounts[bucket];
+                if (seen >= rank) {
+                    return Math.min(max(), Math.max(min(), midpoint(bucket)));
+                }
+            }
+            return max();
+        }
+
+        /**
+         * Distinct values and their counts, at most {@code maxValues} of them: the midpoints of
+         * the non-empty buckets (kept within min and max), with neighbouring buckets merged into
+         * their count-weighted mean as often as needed to stay within the limit.
+         *
+         * @return {@code [values, counts]}
+         */
+        public long[][] valuesAndCounts(int maxValues) {
+            int nonEmpty = 0;
+            for (long bucketCount : bucketCounts) {
+                if (bucketCount != 0) {
+                    nonEmpty++;
+                }
+            }
+            long[] values = new long[nonEmpty];
+            long[] counts = new long[nonEmpty];
+            int index = 0;
+            for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+                if (bucketCounts[bucket] != 0) {
+                    values[index] = Math.min(max(), Math.max(min(), midpoint(bucket)));
+                    counts[index++] = bucketCounts[bucket];
+                }
+            }
+
+            int size = nonEmpty;
+            while (size > maxValues) {
+                int merged = 0;
+                for (int i = 0; i < size; i += 2) {
+                    if (i + 1 < size) {
+                        long total = counts[i] + counts[i + 1];
+                        values[merged] = Math.round((values[i] * (double) counts[i]
+                                + values[i + 1] * (double) counts[i + 1]) / total);
+                        counts[merged++] = total;
+                    } else {
+                        values[merged] = values[i];
+                        counts[merged++] = counts[i];
+                    }
+                }
+                size = merged;
+            }
+            return new long[][]{Arrays.copyOf(values, size), Arrays.copyOf(counts, size)};
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package au.com.eatclub.metrics;
+
+/**
+ * Metrics recorded by the handlers, service and repository, by CloudWatch metric name and unit.
+ *
+ * <p>Timers and sizes are {@link Histogram}s; counters are plain sums per flush.
+ */
+public enum Metric {
+    // Whole invocation, and memory allocated by the handling thread during it
+    REQUEST_LATENCY("RequestLatency", Unit.MICROSECONDS),
+    REQUEST_ALLOCATED_BYTES("RequestAllocatedBytes", Unit.BYTES),
+
+    // Phases of a request
+    FEED_FETCH("FeedFetchLatency", Unit.MICROSECONDS),
+    FEED_TIME_TO_FIRST_BYTE("FeedTimeToFirstByte", Unit.MICROSECONDS),
+    // Compressed size as read from the network; 0 when served from the HTTP cache
+    FEED_BYTES_TRANSFERRED("FeedBytesTransferred", Unit.BYTES),
+    // Includes reading the body, which is parsed as it streams in
+    FEED_PARSE("FeedParseLatency", Unit.MICROSECONDS),
+    SNAPSHOT_BUILD("SnapshotBuildLatency", Unit.MICROSECONDS),
+    QUERY("QueryLatency", Unit.MICROSECONDS),
+    MAPPING("MappingLatency", Unit.MICROSECONDS),
+    SERIALIZATION("SerializationLatency", Unit.MICROSECONDS),
+
+    // Cache outcomes
+    RESPONSE_CACHE_HIT("ResponseCacheHit", Unit.COUNT),
+    RESPONSE_CACHE_MISS("ResponseCacheMiss", Unit.COUNT),
+    FEED_CACHE_HIT("FeedCacheHit", Unit.COUNT),
+    FEED_STALE_HIT("FeedStaleHit", Unit.COUNT),
+    FEED_CACHE_MISS("FeedCacheMiss", Unit.COUNT),
+    FEED_COALESCED("FeedFetchCoalesced", Unit.COUNT),
+    FEED_HTTP_CACHE_HIT("FeedHttpCacheHit", Unit.COUNT),
+    // One of several feeds failed or timed out, so its last good version (if any) was merged instead
+    FEED_FALLBACK("FeedFallback", Unit.COUNT),
+
+    // Upstream responses
+    UPSTREAM_OK("UpstreamOk", Unit.COUNT),
+    UPSTREAM_NOT_MODIFIED("UpstreamNotModified", Unit.COUNT),
+    UPSTREAM_ERROR("UpstreamError", Unit.COUNT);
+
+    private final String metricName;
+    private final Unit unit;
+
+    Metric(String metricName, Unit unit) {
+        this.metricName = metricName;
+        this.unit = unit;
+    }
+
+    /**
+     * Name of the metric in CloudWatch.
+     */
+    public String metricName() {
+        return metricName;
+    }
+
+    public Unit unit() {
+        return unit;
+    }
+
+    /**
+     * Whether the metric is a histogram of recorded values rather than a counter.
+     */
+    public boolean isHistogram() {
+        return unit != Unit.COUNT;
+    }
+
+    /**
+     * CloudWatch units used by the metrics.
+     */
+    public enum Unit {
+        MICROSECONDS("Microseconds"),
+        BYTES("Bytes"),
+        COUNT("Count");
+
+        private final String unitName;
+
+        Unit(String unitName) {
+            this.unitName = unitName;
+        }
+
+        public String unitName() {
+            return unitName;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package au.com.eatclub.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide recorder of the {@link Metric}s, flushed as CloudWatch Embedded Metric Format
+ * (EMF) log lines.
+ *
+ * <p>Recording is a lock-free {@link Histogram} update or {@link LongAdder} increment on an array
+ * slot picked by the metric's ordinal, so it is cheap enough for every request phase. Once the
+ * flush interval ({@value #FLUSH_INTERVAL_ENV}, in seconds, 60 by default; 0 flushes after every
+ * invocation) has passed, {@link #flushIfDue()} drains everything into one JSON line logged
+ * through the {@value #EMF_LOGGER} log4j2 logger, which writes the bare message. In Lambda,
+ * CloudWatch Logs turns those lines into metrics in the {@value #NAMESPACE_ENV} namespace
+ * (default {@value #DEFAULT_NAMESPACE}) with a {@code FunctionName} dimension; outside Lambda
+ * the dimension is {@value #FUNCTION_NAME_ENV} (default {@code local}), and nothing depends on the
+ * AWS SDK.
+ *
+ * <p>Histograms are written as EMF value/count arrays (at most {@value #MAX_VALUES} pairs, as
+ * EMF allows) with their exact min, max, sum and count, so CloudWatch can compute percentiles.
+ * Metrics with nothing recorded since the last flush are left out.
+ */
+@ThreadSafe
+public final class MetricsRegistry {
+    public static final String NAMESPACE_ENV = "METRICS_NAMESPACE";
+    public static final String FLUSH_INTERVAL_ENV = "METRICS_FLUSH_INTERVAL_SECONDS";
+    public static final String FUNCTION_NAME_ENV = "METRICS_FUNCTION_NAME";
+    static final String DEFAULT_NAMESPACE = "EatClub/RestaurantDeals";
+    static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(60);
+    static final String EMF_LOGGER = "au.com.eatclub.metrics.EMF";
+    static final String DIMENSION = "FunctionName";
+    static final int MAX_VALUES = 100;
+
+    private static final Logger logger = LogManager.getLogger(MetricsRegistry.class);
+    private static final Logger emfLogger = LogManager.getLogger(EMF_LOGGER);
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final Metric[] METRICS = Metric.values();
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry(
+            environment(NAMESPACE_ENV, DEFAULT_NAMESPACE),
+            environment("AWS_LAMBDA_FUNCTION_NAME", environment(FUNCTION_NAME_ENV, "local")),
+            flushIntervalFromEnvironment());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(GLOBAL::flush, "metrics-flush"));
+    }
+
+    private final String namespace;
+    private final String functionName;
+    private final long flushIntervalNanos;
+    private final Histogram[] histograms = new Histogram[METRICS.length];
+    private final LongAdder[] counters = new LongAdder[METRICS.length];
+    private final AtomicLong lastFlushNanos = new AtomicLong(System.nanoTime());
+
+    MetricsRegistry(String namespace, String functionName, Duration flushInterval) {
+        this.namespace = namespace;
+        this.functionName = functionName;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        for (Metric metric : METRICS) {
+            if (metric.isHistogram()) {
+                histograms[metric.ordinal()] = new Histogram();
+            } else {
+                counters[metric.ordinal()] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * The registry shared by the whole process.
+     */
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Records {@code value} into a histogram metric.
+     */
+    public void record(Metric metric, long value) {
+        histograms[metric.ordinal()].record(value);
+    }
+
+    /**
+     * Records the microseconds elapsed since {@code startedNanos} (a {@link System#nanoTime()}).
+     */
+    public void recordSince(Metric metric, long startedNanos) {
+        record(metric, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedNanos));
+    }
+
+    /**
+     * Adds one to a counter metric.
+     */
+    public void increment(Metric metric) {
+        counters[metric.ordinal()].increment();
+    }
+
+    /**
+     * Flushes if the flush interval has passed since the last flush; only one of several
+     * concurrent callers flushes.
+     */
+    public void flushIfDue() {
+        long last = lastFlushNanos.get();
+        long now = System.nanoTime();
+        if (now - last >= flushIntervalNanos && lastFlushNanos.compareAndSet(last, now)) {
+            flush();
+        }
+    }
+
+    /**
+     * Logs everything recorded since the last flush as one EMF line, unless nothing was.
+     */
+    public void flush() {
+        try {
+            String line = drain(System.currentTimeMillis());
+            if (line != null) {
+                emfLogger.info(line);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not flush metrics", e);
+        }
+    }
+
+    /**
+     * Drops everything recorded since the last flush without logging it.
+     */
+    public void discard() {
+        drain(System.currentTimeMillis());
+    }
+
+    /**
+     * Drains every metric into an EMF document stamped {@code timestampMillis}, or returns
+     * {@code null} if nothing was recorded.
+     */
+    String drain(long timestampMillis) {
+        Histogram.Snapshot[] snapshots = new Histogram.Snapshot[METRICS.length];
+        long[] sums = new long[METRICS.length];
+        boolean any = false;
+        for (Metric metric : METRICS) {
+            int index = metric.ordinal();
+            if (metric.isHistogram()) {
+                snapshots[index] = histograms[index].drain();
+                any |= snapshots[index].count() > 0;
+            } else {
+                sums[index] = counters[index].sumThenReset();
+                any |= sums[index] > 0;
+            }
+        }
+        if (!any) {
+            return null;
+        }
+
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON.createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("_aws");
+            generator.writeNumberField("Timestamp", timestampMillis);
+            generator.writeArrayFieldStart("CloudWatchMetrics");
+            generator.writeStartObject();
+            generator.writeStringField("Namespace", namespace);
+            generator.writeArrayFieldStart("Dimensions");
+            generator.writeStartArray();
+            generator.writeString(DIMENSION);
+            generator.writeEndArray();
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("Metrics");
+            for (Metric metric : METRICS) {
+                if (isRecorded(metric, snapshots, sums)) {
+                    generator.writeStartObject();
+                    generator.writeStringField("Name", metric.metricName());
+                    generator.writeStringField("Unit", metric.unit().unitName());
+                    generator.writeEndObject();
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeEndObject();
+
+            generator.writeStringField(DIMENSION, functionName);
+            for (Metric metric : METRICS) {
+                if (!isRecorded(metric, snapshots, sums)) {
+                    continue;
+                }
+                if (metric.isHistogram()) {
+                    writeHistogram(generator, metric.metricName(), snapshots[metric.ordinal()]);
+                } else {
+                    generator.writeNumberField(metric.metricName(), sums[metric.ordinal()]);
+                }
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    private static boolean isRecorded(Metric metric, Histogram.Snapshot[] snapshots, long[] sums) {
+        return metric.isHistogram() ? snapshots[metric.ordinal()].count() > 0 : sums[metric.ordinal()] > 0;
+    }
+
+    private static void writeHistogram(JsonGenerator generator, String name, Histogram.Snapshot snapshot)
+            throws IOException {
+        long[][] valuesAndCounts = snapshot.valuesAndCounts(MAX_VALUES);
+        generator.writeObjectFieldStart(name);
+        generator.writeFieldName("Values");
+        generator.writeArray(valuesAndCounts[0], 0, valuesAndCounts[0].length);
+        generator.writeFieldName("Counts");
+        generator.writeArray(valuesAndCounts[1], 0, valuesAndCounts[1].length);
+        generator.writeNumberField("Min", snapshot.min());
+        generator.writeNumberField("Max", snapshot.max());
+        generator.writeNumberField("Count", snapshot.count());
+        generator.writeNumberField("Sum", snapshot.sum());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Bytes allocated so far by the calling thread, or -1 if the JVM cannot tell.
+     */
+    public static long currentThreadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+                return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static String environment(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    private static Duration flushIntervalFromEnvironment() {
+        String seconds = System.getenv(FLUSH_INTERVAL_ENV);
+        if (seconds == null || seconds.isBlank()) {
+            return DEFAULT_FLUSH_INTERVAL;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(seconds.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + FLUSH_INTERVAL_ENV + ": " + seconds, e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package au.com.eatclub.model;
 
 import au.com.eatclub.serialization.TimeSerializer;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Data;
@@ -43,4 +44,15 @@ public class ActiveDeal {
     
     @JsonProperty("qtyLeft")
     private String qtyLeft;
+
+    // Effective active window, only set by time-window queries
+    @JsonProperty("activeFrom")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonSerialize(using = TimeSerializer.class)
+    private LocalTime activeFrom;
+
+    @JsonProperty("activeTo")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonSerialize(using = TimeSerializer.class)
+    private LocalTime activeTo;
 }
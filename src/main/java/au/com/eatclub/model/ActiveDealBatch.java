@@ -0,0 +1,30 @@
+package au.com.eatclub.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Active deals for several times of day, with every deal listed once.
+ *
+ * <p>{@code activeAt} maps each requested time to the indexes in {@code deals} of the deals
+ * active at that time.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActiveDealBatch {
+
+    @JsonProperty("deals")
+    private List<ActiveDeal> deals;
+
+    @JsonProperty("activeAt")
+    private Map<String, List<Integer>> activeAt;
+
+}
@@ -0,0 +1,25 @@
+package au.com.eatclub.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Occupancy curve of the day: {@code dealCounts[i]} is the highest number of deals active at once
+ * during the i-th bucket of {@code bucketMinutes} minutes, starting at midnight.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DealOccupancy {
+
+    @JsonProperty("bucketMinutes")
+    private int bucketMinutes;
+
+    @JsonProperty("dealCounts")
+    private int[] dealCounts;
+
+}
@@ -0,0 +1,33 @@
+package au.com.eatclub.model;
+
+import au.com.eatclub.serialization.TimeSerializer;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalTime;
+
+/**
+ * Inclusive time window with the highest number of deals active at once during it.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DealWindow {
+
+    @JsonProperty("windowStart")
+    @JsonSerialize(using = TimeSerializer.class)
+    private LocalTime windowStart;
+
+    @JsonProperty("windowEnd")
+    @JsonSerialize(using = TimeSerializer.class)
+    private LocalTime windowEnd;
+
+    @JsonProperty("dealCount")
+    private int dealCount;
+
+}
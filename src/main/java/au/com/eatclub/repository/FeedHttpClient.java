@@ -0,0 +1,117 @@
+package au.com.eatclub.repository;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.brotli.BrotliInterceptor;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link OkHttpClient} shared by every {@link RestaurantRepository} of the process, so they
+ * share one connection pool, dispatcher and HTTP cache.
+ *
+ * <p>The client:
+ * <ul>
+ *   <li>keeps responses in an on-disk {@link Cache} ({@value #CACHE_DIR_ENV}, default
+ *       {@code /tmp/restaurant-feed-http-cache}, up to {@value #CACHE_MAX_BYTES_ENV} bytes, 64 MiB
+ *       by default, 0 disabling it), so the CDN's cache headers and validators are honoured
+ *       across invocations of a warm environment and across processes sharing {@code /tmp};</li>
+ *   <li>asks for {@code br} or {@code gzip} content encoding and decodes either, above the
+ *       cache, so the cache holds the compressed body;</li>
+ *   <li>keeps at most {@value #MAX_IDLE_CONNECTIONS} idle connections, as the feed comes from a
+ *       single host, for {@link #KEEP_ALIVE} (see there);</li>
+ *   <li>applies the connect, read and whole-call timeouts of {@value #CONNECT_TIMEOUT_ENV},
+ *       {@value #READ_TIMEOUT_ENV} and {@value #CALL_TIMEOUT_ENV} (in milliseconds);</li>
+ *   <li>reports each call's bytes and time to first byte to the {@link FeedTransfer} tagged on
+ *       its request.</li>
+ * </ul>
+ */
+@ThreadSafe
+final class FeedHttpClient {
+    static final String CACHE_DIR_ENV = "RESTAURANT_FEED_HTTP_CACHE_DIR";
+    static final String CACHE_MAX_BYTES_ENV = "RESTAURANT_FEED_HTTP_CACHE_MAX_BYTES";
+    static final String CONNECT_TIMEOUT_ENV = "RESTAURANT_FEED_CONNECT_TIMEOUT_MILLIS";
+    static final String READ_TIMEOUT_ENV = "RESTAURANT_FEED_READ_TIMEOUT_MILLIS";
+    static final String CALL_TIMEOUT_ENV = "RESTAURANT_FEED_CALL_TIMEOUT_MILLIS";
+    static final Path DEFAULT_CACHE_DIR = Paths.get("/tmp/restaurant-feed-http-cache");
+    static final long DEFAULT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+    static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(10);
+    // Well inside the 60 s Lambda timeout, leaving time to fall back to a stale feed
+    static final Duration DEFAULT_CALL_TIMEOUT = Duration.ofSeconds(30);
+    static final int MAX_IDLE_CONNECTIONS = 2;
+    /**
+     * How long an idle connection is kept: under the 60 s idle timeout common to CDNs and load
+     * balancers, so an environment thawed within it rarely picks a connection the server has
+     * already closed, and a stale one is retried on a fresh connection.
+     */
+    static final Duration KEEP_ALIVE = Duration.ofSeconds(50);
+
+    private FeedHttpClient() {
+    }
+
+    /**
+     * The process-wide client, configured from the environment on first use.
+     */
+    static OkHttpClient shared() {
+        return Holder.CLIENT;
+    }
+
+    /**
+     * Builds a client as described above; {@code cacheDir} {@code null} or {@code cacheMaxBytes}
+     * 0 disables the cache.
+     */
+    static OkHttpClient build(Path cacheDir, long cacheMaxBytes, Duration connectTimeout, Duration readTimeout,
+                              Duration callTimeout) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE.toMillis(), TimeUnit.MILLISECONDS))
+                .retryOnConnectionFailure(true)
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .callTimeout(callTimeout)
+                .addInterceptor(BrotliInterceptor.INSTANCE)
+                .eventListenerFactory(FeedTransfer.LISTENER_FACTORY);
+        if (cacheDir != null && cacheMaxBytes > 0) {
+            builder.cache(new Cache(cacheDir.toFile(), cacheMaxBytes));
+        }
+        return builder.build();
+    }
+
+    private static Path cacheDirFromEnvironment() {
+        String path = System.getenv(CACHE_DIR_ENV);
+        return path == null || path.isBlank() ? DEFAULT_CACHE_DIR : Paths.get(path.trim());
+    }
+
+    private static long longFromEnvironment(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value, e);
+        }
+    }
+
+    private static Duration millisFromEnvironment(String name, Duration defaultValue) {
+        return Duration.ofMillis(longFromEnvironment(name, defaultValue.toMillis()));
+    }
+
+    /**
+     * Builds the shared client lazily, on first use.
+     */
+    private static final class Holder {
+        private static final OkHttpClient CLIENT = build(
+                cacheDirFromEnvironment(),
+                longFromEnvironment(CACHE_MAX_BYTES_ENV, DEFAULT_CACHE_MAX_BYTES),
+                millisFromEnvironment(CONNECT_TIMEOUT_ENV, DEFAULT_CONNECT_TIMEOUT),
+                millisFromEnvironment(READ_TIMEOUT_ENV, DEFAULT_READ_TIMEOUT),
+                millisFromEnvironment(CALL_TIMEOUT_ENV, DEFAULT_CALL_TIMEOUT));
+    }
+}
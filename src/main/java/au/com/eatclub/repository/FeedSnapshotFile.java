@@ -0,0 +1,199 @@
+package au.com.eatclub.repository;
+
+import au.com.eatclub.model.Restaurant;
+import au.com.eatclub.snapshot.MappedFeed;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Restaurant feed on local disk in the column layout of {@link MappedFeed}, so a reused or
+ * restored environment (or one whose upstream is unreachable) can serve the last good feed
+ * without downloading or parsing JSON, and without building feed objects.
+ *
+ * <p>Layout:
+ * <pre>
+ * header      int magic ("ECFS"), int format version, long payload length, long CRC32 of payload
+ * payload     validators: for etag and lastModified, int UTF-8 length (-1 for none) + bytes,
+ *             padded to 8 bytes; then the {@link MappedFeed} columns
+ * </pre>
+ * The header and validators are big-endian, the columns little-endian. The file is read through
+ * {@link FileChannel#map} and {@link #restaurants()} is a {@link MappedFeed} over the mapping
+ * itself, so a {@link au.com.eatclub.snapshot.DealSnapshot} of it reads its columns, strings and
+ * deal windows straight from the page cache. The file is written to a temporary file first and
+ * then moved over the old one, so readers never see a partial file and an existing mapping keeps
+ * the file it was made from. The file's modification time is when the feed was last validated
+ * against upstream.
+ */
+@Immutable
+final class FeedSnapshotFile {
+    static final int MAGIC = 0x45434653;
+    static final int FORMAT_VERSION = 2;
+    static final int HEADER_BYTES = 24;
+
+    private static final int NONE = -1;
+    private static final int ALIGNMENT = Long.BYTES;
+
+    private final MappedFeed restaurants;
+    private final String etag;
+    private final String lastModified;
+    private final Instant validatedAt;
+
+    private FeedSnapshotFile(MappedFeed restaurants, String etag, String lastModified, Instant validatedAt) {
+        this.restaurants = restaurants;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.validatedAt = validatedAt;
+    }
+
+    /**
+     * The stored feed, read in place from the mapped file.
+     */
+    List<Restaurant> restaurants() {
+        return restaurants;
+    }
+
+    String etag() {
+        return etag;
+    }
+
+    String lastModified() {
+        return lastModified;
+    }
+
+    Instant validatedAt() {
+        return validatedAt;
+    }
+
+    /**
+     * Atomically replaces the file at {@code path} with the given feed.
+     */
+    static void write(Path path, List<Restaurant> restaurants, String etag, String lastModified) throws IOException {
+        byte[] validators = encodeValidators(etag, lastModified);
+        byte[] columns = MappedFeed.encode(restaurants);
+        CRC32 checksum = new CRC32();
+        checksum.update(validators);
+        checksum.update(columns);
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(file)) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong((long) validators.length + columns.length);
+                out.writeLong(checksum.getValue());
+                out.write(validators);
+                out.write(columns);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Marks the feed stored at {@code path} as validated now, after upstream answered
+     * {@code 304 Not Modified}.
+     */
+    static void touch(Path path) throws IOException {
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+    }
+
+    /**
+     * Maps the file at {@code path} and verifies its checksum. The feed's columns are not
+     * copied; they stay readable after the file is replaced.
+     *
+     * @throws IOException if the file cannot be read, has another format version, or is
+     *                     truncated or corrupt
+     */
+    static FeedSnapshotFile read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Feed snapshot is truncated: " + path);
+            }
+            Instant validatedAt = Files.getLastModifiedTime(path).toInstant();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a feed snapshot: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported feed snapshot format version " + version + ": " + path);
+            }
+            long payloadLength = buffer.getLong();
+            long expectedChecksum = buffer.getLong();
+            if (payloadLength != size - HEADER_BYTES) {
+                throw new IOException("Feed snapshot is truncated: " + path);
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.duplicate());
+            if (checksum.getValue() != expectedChecksum) {
+                throw new IOException("Feed snapshot checksum mismatch: " + path);
+            }
+            try {
+                String etag = readString(buffer);
+                String lastModified = readString(buffer);
+                buffer.position(align(buffer.position()));
+                return new FeedSnapshotFile(MappedFeed.map(buffer), etag, lastModified, validatedAt);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException
+                     | IllegalArgumentException e) {
+                throw new IOException("Corrupt feed snapshot: " + path, e);
+            }
+        }
+    }
+
+    private static byte[] encodeValidators(String etag, String lastModified) {
+        byte[] etagBytes = etag != null ? etag.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] lastModifiedBytes = lastModified != null ? lastModified.getBytes(StandardCharsets.UTF_8) : null;
+        int length = 2 * Integer.BYTES + (etagBytes != null ? etagBytes.length : 0)
+                + (lastModifiedBytes != null ? lastModifiedBytes.length : 0);
+        // The columns start on an aligned offset of the file, as the header is
+        ByteBuffer out = ByteBuffer.allocate(align(HEADER_BYTES + length) - HEADER_BYTES);
+        writeString(out, etagBytes);
+        writeString(out, lastModifiedBytes);
+        return out.array();
+    }
+
+    private static void writeString(ByteBuffer out, byte[] utf8) {
+        if (utf8 == null) {
+            out.putInt(NONE);
+        } else {
+            out.putInt(utf8.length);
+            out.put(utf8);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NONE) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static int align(int position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
@@ -0,0 +1,99 @@
+package au.com.eatclub.repository;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Response;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What one feed request cost on the wire, filled in by the OkHttp {@link EventListener} that
+ * {@link #LISTENER_FACTORY} creates for calls whose request is tagged with it.
+ *
+ * <p>Bytes are counted as read from the network, before any content decoding, so a compressed
+ * feed counts its compressed size and a response served from the HTTP cache counts nothing. The
+ * time to first byte runs from the start of the call to the start of the response headers.
+ */
+@ThreadSafe
+final class FeedTransfer {
+    static final EventListener.Factory LISTENER_FACTORY = call -> {
+        FeedTransfer transfer = call.request().tag(FeedTransfer.class);
+        return transfer == null ? EventListener.NONE : transfer.new Listener();
+    };
+
+    /**
+     * How the HTTP cache took part in a call.
+     */
+    enum CacheUse {
+        /** No cache configured, or the call never reached it */
+        NONE,
+        /** Served from the cache without a request */
+        HIT,
+        /** Revalidated with the cached validators; the server answered 304 */
+        VALIDATED,
+        /** Revalidated with the cached validators; the server sent a new response */
+        CONDITIONAL_MISS,
+        /** Fetched from the server */
+        MISS
+    }
+
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private volatile long callStartNanos;
+    private volatile long timeToFirstByteNanos = -1;
+    private volatile CacheUse cacheUse = CacheUse.NONE;
+
+    /**
+     * Response body bytes read from the network, across retries and redirects.
+     */
+    long bytesTransferred() {
+        return bytesTransferred.get();
+    }
+
+    /**
+     * Nanoseconds until the first response headers started to arrive, or -1 if the network
+     * was not used.
+     */
+    long timeToFirstByteNanos() {
+        return timeToFirstByteNanos;
+    }
+
+    CacheUse cacheUse() {
+        return cacheUse;
+    }
+
+    private final class Listener extends EventListener {
+        @Override
+        public void callStart(Call call) {
+            callStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            if (timeToFirstByteNanos < 0) {
+                timeToFirstByteNanos = System.nanoTime() - callStartNanos;
+            }
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            bytesTransferred.addAndGet(byteCount);
+        }
+
+        @Override
+        public void cacheHit(Call call, Response response) {
+            // Also reported once a revalidation got a 304
+            cacheUse = cacheUse == CacheUse.CONDITIONAL_MISS ? CacheUse.VALIDATED : CacheUse.HIT;
+        }
+
+        @Override
+        public void cacheConditionalHit(Call call, Response cachedResponse) {
+            cacheUse = CacheUse.CONDITIONAL_MISS;
+        }
+
+        @Override
+        public void cacheMiss(Call call) {
+            cacheUse = CacheUse.MISS;
+        }
+    }
+}
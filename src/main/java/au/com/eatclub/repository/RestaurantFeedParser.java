@@ -0,0 +1,83 @@
+package au.com.eatclub.repository;
+
+import au.com.eatclub.model.Restaurant;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming parser for the restaurant feed ({@code {"restaurants": [...]}}).
+ *
+ * <p>The feed is read token by token straight off the input stream: other top-level fields are
+ * skipped, and each element of the {@code restaurants} array is bound to a {@link Restaurant} on
+ * its own. Neither the raw payload nor a {@code JsonNode} tree of the whole document is ever held
+ * in memory, so peak heap and parse time scale with a single restaurant.
+ */
+@ThreadSafe
+public class RestaurantFeedParser {
+    static final String RESTAURANTS_FIELD = "restaurants";
+    static final String INVALID_FORMAT_MESSAGE = "Invalid response format: missing or invalid 'restaurants' array";
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader restaurantReader;
+
+    public RestaurantFeedParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.restaurantReader = objectMapper.readerFor(Restaurant.class);
+    }
+
+    /**
+     * Parses the whole feed into a list of restaurants.
+     */
+    public List<Restaurant> parse(InputStream inputStream) throws IOException {
+        List<Restaurant> restaurants = new ArrayList<>();
+        parse(inputStream, restaurants::add);
+        return restaurants;
+    }
+
+    /**
+     * Hands each restaurant of the feed to {@code consumer} as soon as it has been parsed.
+     *
+     * @return the number of restaurants read
+     * @throws IOException if the stream is not valid JSON or has no {@code restaurants} array
+     */
+    public int parse(InputStream inputStream, Consumer<Restaurant> consumer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException(INVALID_FORMAT_MESSAGE);
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (!RESTAURANTS_FIELD.equals(fieldName)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (value != JsonToken.START_ARRAY) {
+                    throw new IOException(INVALID_FORMAT_MESSAGE);
+                }
+
+                int count = 0;
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        throw new IOException("Unexpected end of restaurant feed");
+                    }
+                    consumer.accept(restaurantReader.readValue(parser));
+                    count++;
+                }
+                return count;
+            }
+            throw new IOException(INVALID_FORMAT_MESSAGE);
+        }
+    }
+}
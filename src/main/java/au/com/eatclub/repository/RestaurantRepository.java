@@ -1,57 +1,744 @@
 package au.com.eatclub.repository;
 
+import au.com.eatclub.metrics.Metric;
+import au.com.eatclub.metrics.MetricsRegistry;
 import au.com.eatclub.model.Restaurant;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Repository class responsible for fetching restaurant data from an external API.
  * This class provides thread-safe access to restaurant data by making HTTP requests
- * to a predefined API endpoint. It handles the retrieval and deserialization of
+ * to the feed URLs ({@value #FEED_URL_ENV} environment variable, a comma-separated list,
+ * {@value #API_URL} by default). It handles the retrieval and deserialization of
  * restaurant data into {@link au.com.eatclub.model.Restaurant} objects.
- * it's marked as {@code @ThreadSafe} to ensure safe concurrent access.
+ *
+ * <p>The feed is parsed with {@link RestaurantFeedParser} directly off the response stream.
+ * The parsed feed is cached as an immutable snapshot for a configurable TTL
+ * ({@value #CACHE_TTL_ENV} environment variable, in seconds). Once the TTL expires the
+ * snapshot is revalidated with a conditional request ({@code If-None-Match} /
+ * {@code If-Modified-Since}); a {@code 304 Not Modified} response keeps the already parsed
+ * restaurants without downloading or parsing the body again.
+ *
+ * <p>Revalidation is stale-while-revalidate: once the TTL expires, callers keep getting the last
+ * good feed while a single refresh runs on a background thread, until the feed is older than
+ * the max staleness ({@value #MAX_STALENESS_ENV}, in seconds). Past that bound, and for the
+ * first load, callers wait for the refresh and get its failure if upstream is down.
+ *
+ * <p>Fetches are single-flight: at most one fetch-and-parse runs per repository, and concurrent
+ * callers that need it wait on the same future and receive the same immutable list (or the same
+ * failure). {@link #fetchCount()} and {@link #coalescedCallCount()} are logged with every fetch.
+ *
+ * <p>If {@value #SNAPSHOT_FILE_ENV} names a file, every fetched feed is also written there as a
+ * {@link FeedSnapshotFile} (off the request path), and a new process maps it instead of waiting
+ * for upstream, either up front through {@link #getCachedRestaurantData()} or on the first call.
+ * The mapped feed is a {@link au.com.eatclub.snapshot.MappedFeed}, so a snapshot built from it
+ * reads the file in place. The loaded feed is as old as its last validation, so the
+ * TTL and max staleness above decide whether it is served as is, served while revalidating, or
+ * has to be refreshed first; within the max staleness it is served even if upstream is
+ * unreachable.
+ *
+ * <p>Requests go through the process-wide {@link FeedHttpClient}. When its on-disk HTTP cache is
+ * enabled, revalidation is left to the cache instead: it serves the feed without a request while
+ * the CDN's cache headers say it is fresh (but never for longer than the max staleness), and
+ * otherwise revalidates with the stored validators. A response from the cache, or revalidated
+ * by it, that carries the validators of the parsed feed is treated like a {@code 304}.
+ *
+ * <p>Feed cache hits (fresh or stale) and misses, coalesced calls, upstream outcomes, the
+ * fetch (up to the response headers) and parse latencies, and per fetch the time to first byte
+ * and the bytes transferred are recorded in the {@link MetricsRegistry}.
+ *
+ * <p>With several feed URLs, each feed is fetched and revalidated on its own, concurrently on
+ * virtual threads where the JVM has them, and the feeds are merged in the configured order into
+ * one list, keeping the first restaurant of each {@code objectId}. A refresh waits at most the
+ * feed timeout ({@value #FEED_TIMEOUT_ENV}, in milliseconds) for the feeds, so it takes about as
+ * long as the slowest feed rather than their sum. A feed that fails or misses the timeout is
+ * merged as its last good version (or left out until it has one) and, if still running, is
+ * picked up again by the next refresh; the refresh fails only if no feed could be fetched. The
+ * merged list is published as one snapshot, reused as is when no feed changed, and written to
+ * the snapshot file without validators, so a process that loads it fetches every feed again.
+ *
+ * <p>On Lambda the environment is frozen between invocations, so a background refresh may
+ * complete during the next invocation rather than the current one.
  */
 @ThreadSafe
 public class RestaurantRepository {
 
     public static final String API_URL = "https://eccdn.com.au/misc/challengedata.json";
+    public static final String FEED_URL_ENV = "RESTAURANT_FEED_URL";
+    public static final String CACHE_TTL_ENV = "RESTAURANT_FEED_CACHE_TTL_SECONDS";
+    public static final String MAX_STALENESS_ENV = "RESTAURANT_FEED_MAX_STALENESS_SECONDS";
+    public static final String SNAPSHOT_FILE_ENV = "RESTAURANT_FEED_SNAPSHOT_FILE";
+    public static final String FEED_TIMEOUT_ENV = "RESTAURANT_FEED_TIMEOUT_MILLIS";
+    static final Duration DEFAULT_CACHE_TTL = Duration.ofSeconds(60);
+    static final Duration DEFAULT_MAX_STALENESS = Duration.ofMinutes(10);
+    // Well inside the HTTP client's call timeout, so one hung feed does not hold the others back for long
+    static final Duration DEFAULT_FEED_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final Logger logger = LogManager.getLogger(RestaurantRepository.class);
+    // One daemon thread shared by all repositories; refreshes are rare and never overlap per repository
+    private static final ExecutorService REFRESH_EXECUTOR = newRefreshExecutor();
+    // Fetches the feeds of a multi-feed repository in parallel
+    private static final ExecutorService FEED_EXECUTOR = newFeedExecutor();
+
     private ObjectMapper objectMapper = new ObjectMapper();
-    private OkHttpClient httpClient = new OkHttpClient();
+    private OkHttpClient httpClient = FeedHttpClient.shared();
+    private RestaurantFeedParser feedParser = new RestaurantFeedParser(objectMapper);
+    private MetricsRegistry metrics = MetricsRegistry.global();
+    private volatile List<FeedSource> feedSources = feedSourcesFromEnvironment();
+    private volatile Duration feedTimeout = millisFromEnvironment(FEED_TIMEOUT_ENV, DEFAULT_FEED_TIMEOUT);
+    private volatile Duration cacheTtl = secondsFromEnvironment(CACHE_TTL_ENV, DEFAULT_CACHE_TTL);
+    private volatile Duration maxStaleness = secondsFromEnvironment(MAX_STALENESS_ENV, DEFAULT_MAX_STALENESS);
+    private volatile FeedSnapshot snapshot;
+    // Per feed, the version merged into the snapshot of a multi-feed repository
+    private volatile List<List<Restaurant>> mergedFeeds;
+    private volatile Path snapshotFile = snapshotFileFromEnvironment();
+    private boolean snapshotFileChecked;
+    private final AtomicReference<CompletableFuture<List<Restaurant>>> refreshing = new AtomicReference<>();
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong coalescedCalls = new AtomicLong();
 
+    /**
+     * Returns the latest parsed feed. Within the TTL the cached feed is returned as is; after the
+     * TTL it is still returned while it is younger than the max staleness, and revalidated in the
+     * background. Only the first load, or a feed older than the max staleness, waits for upstream.
+     *
+     * @throws IOException if the feed has to be waited for and cannot be fetched
+     */
     public List<Restaurant> getRestaurantDataFromApi() throws IOException {
-        Request request = new Request.Builder()
-                .url(API_URL)
-                .build();
+        FeedSnapshot current = snapshot;
+        if (current == null && snapshotFile != null) {
+            current = loadSnapshotFile();
+        }
+        if (current != null && !current.isExpired(cacheTtl)) {
+            metrics.increment(Metric.FEED_CACHE_HIT);
+            return current.restaurants;
+        }
+        if (current != null && !current.isExpired(maxStaleness)) {
+            metrics.increment(Metric.FEED_STALE_HIT);
+            refreshInBackground();
+            return current.restaurants;
+        }
+        metrics.increment(Metric.FEED_CACHE_MISS);
+        return refreshNow();
+    }
+
+    /**
+     * Returns the feed already held, mapping the snapshot file first if one is configured and has
+     * not been read yet, without contacting upstream. Returns {@code null} if there is no feed or
+     * it is older than the max staleness, so {@link #getRestaurantDataFromApi()} would not serve it.
+     */
+    public List<Restaurant> getCachedRestaurantData() {
+        FeedSnapshot current = snapshot;
+        if (current == null && snapshotFile != null) {
+            current = loadSnapshotFile();
+        }
+        return current != null && !current.isExpired(maxStaleness) ? current.restaurants : null;
+    }
+
+    /**
+     * Waits for the refresh in flight, or fetches the feed on the calling thread if there is none.
+     */
+    private List<Restaurant> refreshNow() throws IOException {
+        CompletableFuture<List<Restaurant>> refresh = new CompletableFuture<>();
+        CompletableFuture<List<Restaurant>> inFlight = refreshing.compareAndExchange(null, refresh);
+        if (inFlight != null) {
+            coalescedCalls.incrementAndGet();
+            metrics.increment(Metric.FEED_COALESCED);
+            return await(inFlight);
+        }
+        runRefresh(refresh);
+        return await(refresh);
+    }
+
+    /**
+     * Starts a refresh on the shared refresh thread unless one is already in flight. The caller
+     * has been served the stale feed and does not wait, so it is not counted as coalesced.
+     */
+    private void refreshInBackground() {
+        CompletableFuture<List<Restaurant>> refresh = new CompletableFuture<>();
+        if (!refreshing.compareAndSet(null, refresh)) {
+            return;
+        }
+        refresh.whenComplete((restaurants, failure) -> {
+            if (failure != null) {
+                logger.warn("Background restaurant feed refresh failed, serving cached feed", failure);
+            }
+        });
+        try {
+            REFRESH_EXECUTOR.execute(() -> runRefresh(refresh));
+        } catch (RejectedExecutionException e) {
+            refresh.completeExceptionally(e);
+            refreshing.compareAndSet(refresh, null);
+        }
+    }
+
+    private void runRefresh(CompletableFuture<List<Restaurant>> refresh) {
+        long started = System.nanoTime();
+        long fetch = fetches.incrementAndGet();
+        try {
+            List<Restaurant> restaurants = fetch(snapshot);
+            logger.info("Fetched restaurant feed with {} restaurants in {} ms (fetch {}, {} calls coalesced so far)",
+                    restaurants.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                    fetch, coalescedCalls.get());
+            refresh.complete(restaurants);
+        } catch (IOException | RuntimeException e) {
+            refresh.completeExceptionally(e);
+        } finally {
+            refreshing.compareAndSet(refresh, null);
+        }
+    }
+
+    private static List<Restaurant> await(CompletableFuture<List<Restaurant>> refresh) throws IOException {
+        try {
+            return refresh.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the restaurant feed");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Fetches the feed, or every feed and merges them, revalidating {@code current} if there is
+     * one, and publishes the result.
+     */
+    private List<Restaurant> fetch(FeedSnapshot current) throws IOException {
+        List<FeedSource> sources = feedSources;
+        if (sources.size() > 1) {
+            return fetchAll(sources, current);
+        }
+        FeedSnapshot fetched = fetchFeed(sources.get(0).url, current);
+        publish(current, fetched);
+        return fetched.restaurants;
+    }
+
+    /**
+     * Fetches every feed in parallel, each revalidating its own last good version, and publishes
+     * them merged. Waits for the feeds until the feed timeout; a feed that fails or is not done by
+     * then is merged as its last good version, or left out if it has none.
+     *
+     * @throws IOException if none of the feeds was fetched in time
+     */
+    private List<Restaurant> fetchAll(List<FeedSource> sources, FeedSnapshot current) throws IOException {
+        long started = System.nanoTime();
+        long deadline = started + feedTimeout.toNanos();
+        List<CompletableFuture<FeedSnapshot>> fetching = new ArrayList<>(sources.size());
+        for (FeedSource source : sources) {
+            fetching.add(fetchInBackground(source));
+        }
+
+        List<List<Restaurant>> feeds = new ArrayList<>(sources.size());
+        IOException failure = null;
+        int failed = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            FeedSource source = sources.get(i);
+            Throwable error;
+            try {
+                feeds.add(fetching.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS).restaurants);
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the restaurant feeds");
+            } catch (TimeoutException e) {
+                error = new InterruptedIOException("Restaurant feed " + source.url + " not fetched within "
+                        + feedTimeout.toMillis() + " ms");
+            } catch (ExecutionException e) {
+                error = e.getCause();
+            }
+
+            metrics.increment(Metric.FEED_FALLBACK);
+            failed++;
+            if (failure == null) {
+                failure = new IOException("None of the " + sources.size() + " restaurant feeds could be fetched", error);
+            } else {
+                failure.addSuppressed(error);
+            }
+            FeedSnapshot lastGood = source.lastGood;
+            if (lastGood != null) {
+                logger.warn("Merging last good version of restaurant feed {}: {}", source.url, error.toString());
+                feeds.add(lastGood.restaurants);
+            } else {
+                logger.warn("Merging without restaurant feed {}, which has no good version yet: {}",
+                        source.url, error.toString());
+            }
+        }
+        if (failed == sources.size()) {
+            throw failure;
+        }
+
+        if (current != null && sameLists(feeds, mergedFeeds)) {
+            FeedSnapshot revalidated = current.revalidated();
+            publish(current, revalidated);
+            return revalidated.restaurants;
+        }
+        int restaurantCount = 0;
+        for (List<Restaurant> feed : feeds) {
+            restaurantCount += feed.size();
+        }
+        FeedSnapshot merged = new FeedSnapshot(merge(feeds), null, null);
+        mergedFeeds = feeds;
+        publish(current, merged);
+        logger.info("Merged {} restaurant feeds into {} restaurants ({} duplicates dropped) in {} ms",
+                feeds.size(), merged.restaurants.size(), restaurantCount - merged.restaurants.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return merged.restaurants;
+    }
+
+    /**
+     * Starts fetching {@code source} on the feed executor, unless a fetch of it is still running
+     * from an earlier refresh, and records the result as its last good version when it completes.
+     */
+    private CompletableFuture<FeedSnapshot> fetchInBackground(FeedSource source) {
+        CompletableFuture<FeedSnapshot> inFlight = source.fetching;
+        if (inFlight != null && !inFlight.isDone()) {
+            return inFlight;
+        }
+        CompletableFuture<FeedSnapshot> fetch = new CompletableFuture<>();
+        source.fetching = fetch;
+        try {
+            FEED_EXECUTOR.execute(() -> {
+                try {
+                    FeedSnapshot fetched = fetchFeed(source.url, source.lastGood);
+                    source.lastGood = fetched;
+                    fetch.complete(fetched);
+                } catch (IOException | RuntimeException e) {
+                    fetch.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fetch.completeExceptionally(e);
+        }
+        return fetch;
+    }
+
+    /**
+     * Concatenates {@code feeds} in order, keeping only the first restaurant with each
+     * {@code objectId} (restaurants without one are all kept).
+     */
+    static List<Restaurant> merge(List<List<Restaurant>> feeds) {
+        int restaurantCount = 0;
+        for (List<Restaurant> feed : feeds) {
+            restaurantCount += feed.size();
+        }
+        List<Restaurant> merged = new ArrayList<>(restaurantCount);
+        Set<String> objectIds = new HashSet<>(restaurantCount * 4 / 3 + 1);
+        for (List<Restaurant> feed : feeds) {
+            for (Restaurant restaurant : feed) {
+                if (restaurant.getObjectId() == null || objectIds.add(restaurant.getObjectId())) {
+                    merged.add(restaurant);
+                }
+            }
+        }
+        return Collections.unmodifiableList(merged);
+    }
+
+    /**
+     * Whether both hold the same lists, by identity, in the same order.
+     */
+    private static boolean sameLists(List<List<Restaurant>> feeds, List<List<Restaurant>> previous) {
+        if (previous == null || previous.size() != feeds.size()) {
+            return false;
+        }
+        for (int i = 0; i < feeds.size(); i++) {
+            if (feeds.get(i) != previous.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes {@code fetched} the current snapshot and updates the snapshot file to match: only its
+     * validation time if {@code fetched} still holds the restaurants of {@code current}.
+     */
+    private void publish(FeedSnapshot current, FeedSnapshot fetched) {
+        snapshot = fetched;
+        if (current != null && fetched.restaurants == current.restaurants) {
+            persist(FeedSnapshotFile::touch);
+        } else {
+            persist(path -> FeedSnapshotFile.write(path, fetched.restaurants, fetched.etag, fetched.lastModified));
+        }
+    }
+
+    /**
+     * Fetches the feed at {@code url}, revalidating {@code current} if there is one. Returns
+     * {@code current} revalidated if the feed has not changed.
+     */
+    private FeedSnapshot fetchFeed(HttpUrl url, FeedSnapshot current) throws IOException {
+        FeedTransfer transfer = new FeedTransfer();
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(url)
+                .tag(FeedTransfer.class, transfer);
+        if (httpClient.cache() != null) {
+            // The HTTP cache revalidates with its own validators; cap how long it trusts the CDN
+            requestBuilder.cacheControl(new CacheControl.Builder()
+                    .maxAge((int) Math.min(Integer.MAX_VALUE, maxStaleness.toSeconds()), TimeUnit.SECONDS)
+                    .build());
+        } else if (current != null) {
+            // Revalidate the cached snapshot instead of downloading the whole feed again
+            if (current.etag != null) {
+                requestBuilder.header("If-None-Match", current.etag);
+            }
+            if (current.lastModified != null) {
+                requestBuilder.header("If-Modified-Since", current.lastModified);
+            }
+        }
+
+        long started = System.nanoTime();
+        Response response;
+        try {
+            response = httpClient.newCall(requestBuilder.build()).execute();
+        } catch (IOException e) {
+            metrics.increment(Metric.UPSTREAM_ERROR);
+            throw e;
+        }
+        metrics.recordSince(Metric.FEED_FETCH, started);
+
+        try (response) {
+            boolean fromHttpCache = response.networkResponse() == null && response.cacheResponse() != null;
+            if (current != null && isNotModified(response, current)) {
+                metrics.increment(fromHttpCache ? Metric.FEED_HTTP_CACHE_HIT : Metric.UPSTREAM_NOT_MODIFIED);
+                return current.revalidated();
+            }
 
-        try (Response response = httpClient.newCall(request).execute()) {
             if (!response.isSuccessful()) {
+                metrics.increment(Metric.UPSTREAM_ERROR);
                 throw new IOException("Unexpected response code: " + response.code());
             }
+            metrics.increment(fromHttpCache ? Metric.FEED_HTTP_CACHE_HIT : Metric.UPSTREAM_OK);
 
             ResponseBody body = response.body();
             if (body == null) {
                 throw new IOException("No response body received");
             }
 
-            JsonNode rootNode = objectMapper.readTree(body.string());
-            JsonNode restaurantsNode = rootNode.get("restaurants");
+            // Stream restaurants straight off the body instead of buffering the whole payload
+            long parseStarted = System.nanoTime();
+            List<Restaurant> restaurants = feedParser.parse(body.byteStream());
+            metrics.recordSince(Metric.FEED_PARSE, parseStarted);
+            return new FeedSnapshot(Collections.unmodifiableList(restaurants),
+                    response.header("ETag"), response.header("Last-Modified"));
+        } finally {
+            recordTransfer(url, transfer);
+        }
+    }
+
+    /**
+     * Whether {@code response} leaves {@code current} as is: a {@code 304}, or a response the HTTP
+     * cache served or revalidated that carries the validators {@code current} was parsed with.
+     */
+    private static boolean isNotModified(Response response, FeedSnapshot current) {
+        if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return true;
+        }
+        Response network = response.networkResponse();
+        boolean unchanged = network == null
+                ? response.cacheResponse() != null
+                : network.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
+        if (!unchanged) {
+            return false;
+        }
+        // The cached copy may predate a feed loaded from the snapshot file
+        return current.etag != null
+                ? current.etag.equals(response.header("ETag"))
+                : current.lastModified != null && current.lastModified.equals(response.header("Last-Modified"));
+    }
+
+    private void recordTransfer(HttpUrl url, FeedTransfer transfer) {
+        metrics.record(Metric.FEED_BYTES_TRANSFERRED, transfer.bytesTransferred());
+        long timeToFirstByte = transfer.timeToFirstByteNanos();
+        if (timeToFirstByte >= 0) {
+            metrics.record(Metric.FEED_TIME_TO_FIRST_BYTE, TimeUnit.NANOSECONDS.toMicros(timeToFirstByte));
+        }
+        logger.info("Feed request to {} transferred {} bytes, first byte after {} ms, HTTP cache {}",
+                url, transfer.bytesTransferred(),
+                timeToFirstByte < 0 ? "-" : TimeUnit.NANOSECONDS.toMillis(timeToFirstByte), transfer.cacheUse());
+    }
+
+    /**
+     * Seeds the cache from the snapshot file the first time the repository is used, aged by the
+     * time since the file's feed was last validated. The feed is read in place from the mapped
+     * file, which is already unmodifiable.
+     */
+    private synchronized FeedSnapshot loadSnapshotFile() {
+        if (snapshot != null || snapshotFileChecked) {
+            return snapshot;
+        }
+        snapshotFileChecked = true;
+        if (!Files.exists(snapshotFile)) {
+            return null;
+        }
+
+        long started = System.nanoTime();
+        try {
+            FeedSnapshotFile file = FeedSnapshotFile.read(snapshotFile);
+            long ageNanos = Math.max(0, Duration.between(file.validatedAt(), Instant.now()).toNanos());
+            FeedSnapshot loaded = new FeedSnapshot(file.restaurants(), file.etag(), file.lastModified(),
+                    System.nanoTime() - ageNanos);
+            snapshot = loaded;
+            logger.info("Mapped {} restaurants from feed snapshot {} in {} ms, last validated {} s ago",
+                    file.restaurants().size(), snapshotFile, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                    TimeUnit.NANOSECONDS.toSeconds(ageNanos));
+            return loaded;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable feed snapshot {}", snapshotFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Updates the snapshot file, if one is configured, on the refresh thread.
+     */
+    private void persist(SnapshotFileUpdate update) {
+        Path path = snapshotFile;
+        if (path == null) {
+            return;
+        }
+        try {
+            REFRESH_EXECUTOR.execute(() -> {
+                try {
+                    update.apply(path);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not update feed snapshot {}", path, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Could not schedule feed snapshot update", e);
+        }
+    }
+
+    /**
+     * Number of upstream fetches (including conditional revalidations) started so far.
+     */
+    public long fetchCount() {
+        return fetches.get();
+    }
+
+    /**
+     * Number of calls that had to wait for a fetch but shared the one already in flight instead
+     * of starting their own. Stale hits that found a background refresh running are not counted.
+     */
+    public long coalescedCallCount() {
+        return coalescedCalls.get();
+    }
+
+    /**
+     * Overrides the HTTP client.
+     */
+    void setHttpClient(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Overrides the feed URL.
+     */
+    void setFeedUrl(String feedUrl) {
+        setFeedUrls(List.of(feedUrl));
+    }
+
+    /**
+     * Overrides the feed URLs, merged in this order.
+     */
+    void setFeedUrls(List<String> feedUrls) {
+        List<FeedSource> sources = new ArrayList<>(feedUrls.size());
+        for (String feedUrl : feedUrls) {
+            sources.add(new FeedSource(HttpUrl.get(feedUrl)));
+        }
+        this.feedSources = List.copyOf(sources);
+    }
+
+    /**
+     * Overrides how long a refresh of several feeds waits for them.
+     */
+    void setFeedTimeout(Duration feedTimeout) {
+        this.feedTimeout = feedTimeout;
+    }
+
+    /**
+     * Overrides the snapshot TTL. A zero TTL revalidates the snapshot on every call.
+     */
+    void setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    /**
+     * Overrides the max staleness. A max staleness not above the TTL waits for every
+     * revalidation.
+     */
+    void setMaxStaleness(Duration maxStaleness) {
+        this.maxStaleness = maxStaleness;
+    }
+
+    /**
+     * Overrides the snapshot file; {@code null} disables it.
+     */
+    void setSnapshotFile(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
 
-            if (restaurantsNode == null || !restaurantsNode.isArray()) {
-                throw new IOException("Invalid response format: missing or invalid 'restaurants' array");
+    private static List<FeedSource> feedSourcesFromEnvironment() {
+        String urls = System.getenv(FEED_URL_ENV);
+        if (urls == null || urls.isBlank()) {
+            return List.of(new FeedSource(HttpUrl.get(API_URL)));
+        }
+        List<FeedSource> sources = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) {
+                continue;
             }
+            HttpUrl parsed = HttpUrl.parse(url.trim());
+            if (parsed == null) {
+                throw new IllegalArgumentException("Invalid " + FEED_URL_ENV + ": " + urls);
+            }
+            sources.add(new FeedSource(parsed));
+        }
+        return List.copyOf(sources);
+    }
+
+    private static Path snapshotFileFromEnvironment() {
+        String path = System.getenv(SNAPSHOT_FILE_ENV);
+        return path == null || path.isBlank() ? null : Paths.get(path.trim());
+    }
+
+    private static Duration secondsFromEnvironment(String name, Duration defaultValue) {
+        String seconds = System.getenv(name);
+        if (seconds == null || seconds.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(seconds.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + seconds, e);
+        }
+    }
+
+    private static Duration millisFromEnvironment(String name, Duration defaultValue) {
+        String millis = System.getenv(name);
+        if (millis == null || millis.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Duration.ofMillis(Long.parseLong(millis.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + millis, e);
+        }
+    }
+
+    private static ExecutorService newRefreshExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "restaurant-feed-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A virtual thread per feed fetch if the JVM has them, otherwise daemon threads created as
+     * needed; a fetch mostly waits on the network either way.
+     */
+    private static ExecutorService newFeedExecutor() {
+        try {
+            // Looked up reflectively, as the code is compiled for the Java 17 Lambda runtime
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger created = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "restaurant-feed-fetch-" + created.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Change to the snapshot file at the given path.
+     */
+    @FunctionalInterface
+    private interface SnapshotFileUpdate {
+        void apply(Path path) throws IOException;
+    }
+
+    /**
+     * One of several feeds, with its last successfully fetched version and the fetch of it in
+     * flight, if any. Only touched by the refresh in flight and the fetches it starts.
+     */
+    private static final class FeedSource {
+        private final HttpUrl url;
+        private volatile FeedSnapshot lastGood;
+        private volatile CompletableFuture<FeedSnapshot> fetching;
+
+        private FeedSource(HttpUrl url) {
+            this.url = url;
+        }
+    }
+
+    /**
+     * Immutable parsed feed together with the validators needed to revalidate it.
+     */
+    private static final class FeedSnapshot {
+        private final List<Restaurant> restaurants;
+        private final String etag;
+        private final String lastModified;
+        private final long validatedAtNanos;
+
+        private FeedSnapshot(List<Restaurant> restaurants, String etag, String lastModified) {
+            this(restaurants, etag, lastModified, System.nanoTime());
+        }
+
+        private FeedSnapshot(List<Restaurant> restaurants, String etag, String lastModified, long validatedAtNanos) {
+            this.restaurants = restaurants;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validatedAtNanos = validatedAtNanos;
+        }
+
+        private boolean isExpired(Duration ttl) {
+            return System.nanoTime() - validatedAtNanos >= ttl.toNanos();
+        }
 
-            return objectMapper.treeToValue(
-                    restaurantsNode,
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, Restaurant.class)
-            );
+        private FeedSnapshot revalidated() {
+            return new FeedSnapshot(restaurants, etag, lastModified, System.nanoTime());
         }
     }
 }
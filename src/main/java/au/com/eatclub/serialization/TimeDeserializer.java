@@ -1,38 +1,43 @@
 package au.com.eatclub.serialization;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import lombok.extern.slf4j.Slf4j;
 
-import java.text.SimpleDateFormat;
+import java.io.IOException;
 import java.time.LocalTime;
-import java.time.ZoneId;
 
 /**
  * Custom JSON deserializer for converting 12-hour format time strings to {@link LocalTime} objects.
  * This deserializer handles time strings in the format "h:mma" (e.g., "2:30PM") and converts
  * them to {@link LocalTime} instances. It properly handles null values and provides meaningful
  * error messages for invalid formats.
+ *
+ * <p>String values are parsed by {@link TimeOfDayParser} straight from the parser's character
+ * buffer, so no intermediate String or date objects are created per field.
  */
 @Slf4j
 public class TimeDeserializer extends JsonDeserializer<LocalTime> {
-    public final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("h:mma");
 
     @Override
-    public LocalTime deserialize(JsonParser p, DeserializationContext ctxt) throws RuntimeException {
-        java.util.Date date;
-        try {
+    public LocalTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        int minuteOfDay;
+        if (p.hasToken(JsonToken.VALUE_STRING)) {
+            minuteOfDay = TimeOfDayParser.parseMinuteOfDay(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+        } else {
             String timeStr = p.getValueAsString();
             if (timeStr == null) {
                 return null;
             }
+            minuteOfDay = TimeOfDayParser.parseMinuteOfDay(timeStr);
+        }
 
-            date = simpleDateFormat.parse(timeStr);
-            return date.toInstant().atZone(ZoneId.systemDefault()).toLocalTime();
-        } catch (Exception e) {
-            log.error("error parsing time {}", e.getMessage(), e);
-            throw new IllegalArgumentException(e);
+        if (minuteOfDay == TimeOfDayParser.INVALID) {
+            log.error("error parsing time {}", p.getText());
+            throw new IllegalArgumentException("Invalid time format. Use format: " + TimeOfDayParser.FORMAT);
         }
+        return TimeOfDayParser.toLocalTime(minuteOfDay);
     }
 }
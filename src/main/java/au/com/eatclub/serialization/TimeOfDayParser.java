@@ -0,0 +1,129 @@
+package au.com.eatclub.serialization;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Allocation-free parser for 12-hour times in the "h:mma" format (e.g. "2:30PM", "04:30pm").
+ *
+ * <p>The characters are scanned directly into a minute of the day: a one or two digit hour
+ * between 1 and 12, a colon, exactly two minute digits and a case-insensitive "am"/"pm" suffix,
+ * with nothing before or after. Nothing is allocated for valid input, no time zone is involved and
+ * the parser holds no mutable state, so it can be shared freely between threads. The
+ * {@link LocalTime} view and the formatted text each return one of 1440 preallocated instances.
+ */
+@ThreadSafe
+public final class TimeOfDayParser {
+    public static final int INVALID = -1;
+    public static final String FORMAT = "h:mma";
+
+    private static final int MINUTES_IN_HOUR = 60;
+    private static final int HOURS_IN_HALF_DAY = 12;
+    private static final LocalTime[] TIMES = new LocalTime[24 * MINUTES_IN_HOUR];
+    private static final String[] TEXTS = new String[TIMES.length];
+
+    static {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(FORMAT);
+        for (int minute = 0; minute < TIMES.length; minute++) {
+            TIMES[minute] = LocalTime.of(minute / MINUTES_IN_HOUR, minute % MINUTES_IN_HOUR);
+            TEXTS[minute] = TIMES[minute].format(formatter);
+        }
+    }
+
+    private TimeOfDayParser() {
+    }
+
+    /**
+     * Parses {@code text} into a minute of the day, or returns {@link #INVALID}.
+     */
+    public static int parseMinuteOfDay(CharSequence text) {
+        return parseMinuteOfDay(text, null, 0, text.length());
+    }
+
+    /**
+     * Parses {@code length} chars of {@code buffer} starting at {@code offset}, as exposed by
+     * {@code JsonParser#getTextCharacters()}, without creating a String.
+     */
+    public static int parseMinuteOfDay(char[] buffer, int offset, int length) {
+        return parseMinuteOfDay(null, buffer, offset, length);
+    }
+
+    private static int parseMinuteOfDay(CharSequence text, char[] buffer, int offset, int length) {
+        // Shortest is "1:00am" (6 chars), longest "12:00am" (7 chars)
+        if (length < 6 || length > 7) {
+            return INVALID;
+        }
+
+        int hour = digit(charAt(text, buffer, offset));
+        int position = offset + 1;
+        if (length == 7) {
+            hour = combine(hour, digit(charAt(text, buffer, position)));
+            position++;
+        }
+        if (hour < 1 || hour > HOURS_IN_HALF_DAY || charAt(text, buffer, position) != ':') {
+            return INVALID;
+        }
+
+        int minute = combine(digit(charAt(text, buffer, position + 1)), digit(charAt(text, buffer, position + 2)));
+        if (minute < 0 || minute >= MINUTES_IN_HOUR) {
+            return INVALID;
+        }
+
+        return toMinuteOfDay(hour, minute, charAt(text, buffer, position + 3), charAt(text, buffer, position + 4));
+    }
+
+    private static char charAt(CharSequence text, char[] buffer, int index) {
+        return text != null ? text.charAt(index) : buffer[index];
+    }
+
+    /**
+     * Parses {@code text} into a {@link LocalTime}.
+     *
+     * @throws IllegalArgumentException if {@code text} is not in "h:mma" format
+     */
+    public static LocalTime parse(CharSequence text) {
+        int minuteOfDay = parseMinuteOfDay(text);
+        if (minuteOfDay == INVALID) {
+            throw new IllegalArgumentException("Invalid time format. Use format: " + FORMAT);
+        }
+        return toLocalTime(minuteOfDay);
+    }
+
+    /**
+     * Shared {@link LocalTime} instance for a minute of the day.
+     */
+    public static LocalTime toLocalTime(int minuteOfDay) {
+        return TIMES[minuteOfDay];
+    }
+
+    /**
+     * Shared "h:mma" text for a minute of the day, as written by {@link TimeSerializer}.
+     */
+    public static String format(int minuteOfDay) {
+        return TEXTS[minuteOfDay];
+    }
+
+    private static int toMinuteOfDay(int hour, int minute, char marker, char suffix) {
+        if (suffix != 'm' && suffix != 'M') {
+            return INVALID;
+        }
+        int hourOfDay;
+        if (marker == 'a' || marker == 'A') {
+            hourOfDay = hour == HOURS_IN_HALF_DAY ? 0 : hour;
+        } else if (marker == 'p' || marker == 'P') {
+            hourOfDay = hour == HOURS_IN_HALF_DAY ? HOURS_IN_HALF_DAY : hour + HOURS_IN_HALF_DAY;
+        } else {
+            return INVALID;
+        }
+        return hourOfDay * MINUTES_IN_HOUR + minute;
+    }
+
+    private static int digit(char c) {
+        return c >= '0' && c <= '9' ? c - '0' : INVALID;
+    }
+
+    private static int combine(int tens, int units) {
+        return tens < 0 || units < 0 ? INVALID : tens * 10 + units;
+    }
+}
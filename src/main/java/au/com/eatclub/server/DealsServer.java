@@ -0,0 +1,228 @@
+package au.com.eatclub.server;
+
+import au.com.eatclub.lambda.GetActiveDealsHandler;
+import au.com.eatclub.lambda.GetPeakTimeForDealsHandler;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Standalone HTTP server exposing the same routes as the Lambda functions, for running in a
+ * container.
+ *
+ * <p>Requests are served by the JDK {@link HttpServer} and handed, as
+ * {@link APIGatewayProxyRequestEvent}s, to the very {@link GetActiveDealsHandler} and
+ * {@link GetPeakTimeForDealsHandler} the Lambda functions use. Both share the
+ * {@link au.com.eatclub.lambda.HandlerRuntime}, so every request is answered from one in-memory
+ * deal snapshot, and the request metrics are recorded and flushed exactly as in Lambda.
+ *
+ * <p>Each request runs on its own virtual thread when the JVM provides them (Java 21 and later);
+ * on older JVMs, such as the Java 17 Lambda runtime, a fixed pool of {@value #THREADS_ENV}
+ * threads (twice the available processors by default) is used instead.
+ *
+ * <p>The port is read from {@value #PORT_ENV} (default {@value #DEFAULT_PORT}).
+ */
+@ThreadSafe
+public final class DealsServer implements AutoCloseable {
+    public static final String PORT_ENV = "SERVER_PORT";
+    public static final String THREADS_ENV = "SERVER_THREADS";
+    static final int DEFAULT_PORT = 8080;
+    static final String ACTIVE_DEALS_PATH = "/v1/restaurants/deals";
+    static final String PEAK_TIMES_PATH = "/v1/restaurants/deals/peak-times";
+
+    private static final Logger logger = LogManager.getLogger(DealsServer.class);
+    private static final String NOT_FOUND = "{\"error\":\"Not found\"}";
+    private static final String METHOD_NOT_ALLOWED = "{\"error\":\"Method not allowed\"}";
+    private static final String INTERNAL_SERVER_ERROR = "{\"error\":\"Internal server error\"}";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>> routes;
+
+    DealsServer(InetSocketAddress address,
+                Map<String, RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>> routes,
+                ExecutorService executor) throws IOException {
+        this.routes = Map.copyOf(routes);
+        this.executor = executor;
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts a server on {@code port} (0 for any free port) serving the Lambda handlers.
+     */
+    public static DealsServer start(int port) throws IOException {
+        DealsServer server = new DealsServer(new InetSocketAddress(port),
+                Map.of(ACTIVE_DEALS_PATH, new GetActiveDealsHandler(), PEAK_TIMES_PATH, new GetPeakTimeForDealsHandler()),
+                requestExecutor(threadsFromEnvironment()));
+        server.listen();
+        return server;
+    }
+
+    public static void main(String[] args) throws IOException {
+        DealsServer server = start(portFromEnvironment());
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "server-shutdown"));
+    }
+
+    void listen() {
+        server.start();
+        logger.info("Serving {} and {} on port {}", ACTIVE_DEALS_PATH, PEAK_TIMES_PATH, port());
+    }
+
+    /**
+     * Port the server is listening on.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, lets those in flight finish for up to a second and shuts the
+     * request threads down.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler =
+                    routes.get(exchange.getRequestURI().getPath());
+            if (handler == null) {
+                send(exchange, 404, NOT_FOUND);
+                return;
+            }
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                send(exchange, 405, METHOD_NOT_ALLOWED);
+                return;
+            }
+
+            APIGatewayProxyResponseEvent response;
+            try {
+                response = handler.handleRequest(toRequestEvent(exchange), null);
+            } catch (RuntimeException e) {
+                logger.error("error occurred {}: ", e.getMessage(), e);
+                send(exchange, 500, INTERNAL_SERVER_ERROR);
+                return;
+            }
+            if (response.getHeaders() != null) {
+                response.getHeaders().forEach(exchange.getResponseHeaders()::set);
+            }
+            send(exchange, response.getStatusCode(), response.getBody());
+        }
+    }
+
+    private static APIGatewayProxyRequestEvent toRequestEvent(HttpExchange exchange) {
+        Map<String, String> headers = new HashMap<>();
+        exchange.getRequestHeaders().forEach((name, values) -> headers.put(name, values.get(values.size() - 1)));
+        return new APIGatewayProxyRequestEvent()
+                .withHttpMethod(exchange.getRequestMethod())
+                .withPath(exchange.getRequestURI().getPath())
+                .withHeaders(headers)
+                .withQueryStringParameters(parseQuery(exchange.getRequestURI().getRawQuery()));
+    }
+
+    /**
+     * Decodes a raw query string into parameters the way API Gateway does for
+     * {@code queryStringParameters}: the last value of a repeated name wins, and a name without
+     * '=' has an empty value.
+     */
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, String body) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+        }
+        exchange.sendResponseHeaders(statusCode, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * A virtual-thread-per-task executor if the JVM has one, otherwise a fixed pool of
+     * {@code threads} daemon threads.
+     */
+    static ExecutorService requestExecutor(int threads) {
+        try {
+            // Looked up reflectively, as the code is compiled for the Java 17 Lambda runtime
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            logger.info("Handling requests on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads unavailable on Java {}; handling requests on {} threads",
+                    Runtime.version().feature(), threads);
+            AtomicInteger created = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "request-" + created.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static int portFromEnvironment() {
+        return intFromEnvironment(PORT_ENV, DEFAULT_PORT);
+    }
+
+    private static int threadsFromEnvironment() {
+        return intFromEnvironment(THREADS_ENV, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    private static int intFromEnvironment(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value, e);
+        }
+    }
+}
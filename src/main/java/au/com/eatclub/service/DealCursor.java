@@ -0,0 +1,72 @@
+package au.com.eatclub.service;
+
+import javax.annotation.concurrent.Immutable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a paginated deal query, handed to clients as an opaque string.
+ *
+ * <p>A cursor records the {@linkplain au.com.eatclub.snapshot.DealSnapshot#version() snapshot
+ * version} and the query it was issued for, plus the offset of the next deal. Deal ids are only
+ * stable within a snapshot, so a cursor is rejected once the snapshot has changed, or when it is
+ * used with a different query.
+ */
+@Immutable
+public final class DealCursor {
+    private static final char SEPARATOR = ':';
+
+    private final long snapshotVersion;
+    private final String query;
+    private final int offset;
+
+    DealCursor(long snapshotVersion, String query, int offset) {
+        this.snapshotVersion = snapshotVersion;
+        this.query = query;
+        this.offset = offset;
+    }
+
+    /**
+     * Opaque, URL-safe form of this cursor.
+     */
+    public String encode() {
+        String text = Long.toString(snapshotVersion) + SEPARATOR + query + SEPARATOR + offset;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a cursor produced by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if {@code cursor} is not a valid cursor
+     */
+    public static DealCursor decode(String cursor) {
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int first = text.indexOf(SEPARATOR);
+            int last = text.lastIndexOf(SEPARATOR);
+            if (first < 0 || last <= first) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            int offset = Integer.parseInt(text.substring(last + 1));
+            if (offset < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new DealCursor(Long.parseLong(text.substring(0, first)), text.substring(first + 1, last), offset);
+        } catch (IllegalArgumentException e) {
+            // Also covers malformed Base64 and numbers
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    long snapshotVersion() {
+        return snapshotVersion;
+    }
+
+    String query() {
+        return query;
+    }
+
+    int offset() {
+        return offset;
+    }
+}
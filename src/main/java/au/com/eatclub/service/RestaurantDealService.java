@@ -1,189 +1,370 @@
 package au.com.eatclub.service;
 
-import au.com.eatclub.mapper.DealMapper;
+import au.com.eatclub.metrics.Metric;
+import au.com.eatclub.metrics.MetricsRegistry;
 import au.com.eatclub.model.ActiveDeal;
-import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.DealOccupancy;
 import au.com.eatclub.model.DealPeakTime;
+import au.com.eatclub.model.DealWindow;
 import au.com.eatclub.model.Restaurant;
 import au.com.eatclub.repository.RestaurantRepository;
+import au.com.eatclub.snapshot.DealFilter;
+import au.com.eatclub.snapshot.DealSnapshot;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.IOException;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service class for managing restaurant deals and their availability.
  * Determines active deals at specific times and identifies peak periods with the highest
  * concentration of active deals across all restaurants.
+ *
+ * <p>Snapshot builds, deal id lookups (query) and {@link ActiveDeal} materialisation (mapping)
+ * are timed into the {@link MetricsRegistry}; pages written straight from the snapshot count as
+ * serialization.
  */
 @ThreadSafe
 public class RestaurantDealService {
-    private static final int MINUTES_IN_HOUR = 60;
-    public static final int DAY_TOTAL_MINUTES = 24 * MINUTES_IN_HOUR;
-    private  RestaurantRepository repository = new RestaurantRepository();
-    private static final DealMapper mapper = DealMapper.INSTANCE;
+    private final RestaurantRepository repository;
+    private static final Logger logger = LogManager.getLogger(RestaurantDealService.class);
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+    private volatile DealSnapshot snapshot;
+
+    public RestaurantDealService() {
+        this(new RestaurantRepository());
+    }
+
+    public RestaurantDealService(RestaurantRepository repository) {
+        this.repository = repository;
+    }
 
     /**
      * Retrieves all active deals across all restaurants at the specified time.
      *
      * Approach:
      * 1. Fetches all restaurants and their deals from the repository
-     * 2. For each deal, determines its active time window:
-     *    - Uses deal-specific times if available
-     *    - Falls back to restaurant's operating hours if deal times are not specified
-     * 3. Checks if the specified time falls within the active window
-     * 4. Maps and collects all active deals into the result list
+     * 2. Reuses the {@link DealSnapshot} built for that feed, where each deal's active window has
+     *    already been resolved (deal-specific times first, restaurant's operating hours as fallback)
+     *    and precomputed per minute of the day
+     * 3. Looks up the deals for the specified minute, costing O(k) rather than a scan of every
+     *    deal (or O(log n + k) through the interval tree when the minute table is over budget)
+     * 4. Materialises an {@link ActiveDeal} from the snapshot's columns for each matching deal only
      *
      */
     public List<ActiveDeal> getAllActiveDealsAtTime(LocalTime time) throws IOException {
-        List<Restaurant> allRestaurants = repository.getRestaurantDataFromApi();
-        List<ActiveDeal> activeDeals = new ArrayList<>();
+        return getAllActiveDealsAtTime(time, DealFilter.NONE);
+    }
 
-        // Check each restaurant's deals for active status at the given time
-        for (Restaurant restaurant : allRestaurants) {
-            if (restaurant.getDeals() == null) {
-                continue;
-            }
+    /**
+     * Same as {@link #getAllActiveDealsAtTime(LocalTime)}, keeping only the deals that match
+     * {@code filter}. The filter is applied to the snapshot's deal ids with bitset intersections
+     * before any deal is materialised.
+     */
+    public List<ActiveDeal> getAllActiveDealsAtTime(LocalTime time, DealFilter filter) throws IOException {
+        DealSnapshot snapshot = currentSnapshot();
+        long started = System.nanoTime();
+        int[] dealIds = snapshot.activeDealIdsAt(time, filter);
+        metrics.recordSince(Metric.QUERY, started);
+        return materialise(snapshot, dealIds, false);
+    }
+
+    /**
+     * Retrieves up to {@code limit} of the in-stock ({@code qtyLeft > 0}) deals active at
+     * {@code time}, best first: highest discount, then feed order.
+     *
+     * <p>{@code discount} and {@code qtyLeft} are parsed into numbers once when the snapshot is
+     * built, and each minute's best deals are kept pre-ranked, so only the returned deals are
+     * looked at rather than sorting every active deal.
+     *
+     * @throws IllegalArgumentException if {@code limit} is not positive
+     */
+    public List<ActiveDeal> getBestActiveDealsAtTime(LocalTime time, int limit) throws IOException {
+        return getBestActiveDealsAtTime(time, limit, DealFilter.NONE);
+    }
+
+    /**
+     * Same as {@link #getBestActiveDealsAtTime(LocalTime, int)}, keeping only the deals that
+     * match {@code filter}.
+     */
+    public List<ActiveDeal> getBestActiveDealsAtTime(LocalTime time, int limit, DealFilter filter)
+            throws IOException {
+        DealSnapshot snapshot = currentSnapshot();
+        long started = System.nanoTime();
+        int[] dealIds = snapshot.bestDealIdsAt(time, limit, filter);
+        metrics.recordSince(Metric.QUERY, started);
+        return materialise(snapshot, dealIds, false);
+    }
+
+    /**
+     * Retrieves the active deals for each of {@code times}, all resolved against the same
+     * snapshot (one feed fetch for the whole batch).
+     *
+     * Duplicate times are evaluated once and the result is keyed in ascending time order. A deal
+     * active at several of the times is materialised once and the same {@link ActiveDeal}
+     * instance appears in each of their lists.
+     */
+    public Map<LocalTime, List<ActiveDeal>> getAllActiveDealsAtTimes(Collection<LocalTime> times) throws IOException {
+        return getAllActiveDealsAtTimes(times, DealFilter.NONE);
+    }
+
+    /**
+     * Same as {@link #getAllActiveDealsAtTimes(Collection)}, keeping only the deals that match
+     * {@code filter}.
+     */
+    public Map<LocalTime, List<ActiveDeal>> getAllActiveDealsAtTimes(Collection<LocalTime> times, DealFilter filter)
+            throws IOException {
+        DealSnapshot snapshot = currentSnapshot();
+        LocalTime[] sortedTimes = times.stream().distinct().sorted().toArray(LocalTime[]::new);
+        Map<Integer, ActiveDeal> materialised = new HashMap<>();
+        Map<LocalTime, List<ActiveDeal>> activeDeals = new LinkedHashMap<>();
+        long queryNanos = 0;
+        long mappingNanos = 0;
 
-            for (Deal deal : restaurant.getDeals()) {
-                // Use deal-specific times if available, otherwise use restaurant's operating hours
-                LocalTime dealStartTime = deal.getOpen() != null ? deal.getOpen() : deal.getStart();
-                LocalTime dealEndTime = deal.getClose() != null ? deal.getClose() : deal.getEnd();
-
-                // Fallback to restaurant's operating hours if deal times are not specified
-                if (dealStartTime == null || dealEndTime == null) {
-                    dealStartTime = restaurant.getOpen();
-                    dealEndTime = restaurant.getClose();
-                }
-
-                // Check if the deal is active at the specified time
-                if (isActiveDeal(time, restaurant.getOpen(), restaurant.getClose(), dealStartTime, dealEndTime)) {
-                    ActiveDeal resultDeal = mapper.mapActiveDeal(restaurant, deal);
-                    activeDeals.add(resultDeal);
-                }
+        for (LocalTime time : sortedTimes) {
+            long started = System.nanoTime();
+            int[] activeDealIds = snapshot.activeDealIdsAt(time, filter);
+            long queried = System.nanoTime();
+            List<ActiveDeal> activeAtTime = new ArrayList<>(activeDealIds.length);
+            for (int dealId : activeDealIds) {
+                activeAtTime.add(materialised.computeIfAbsent(dealId, snapshot::activeDeal));
             }
+            activeDeals.put(time, activeAtTime);
+            queryNanos += queried - started;
+            mappingNanos += System.nanoTime() - queried;
         }
-
+        metrics.record(Metric.QUERY, TimeUnit.NANOSECONDS.toMicros(queryNanos));
+        metrics.record(Metric.MAPPING, TimeUnit.NANOSECONDS.toMicros(mappingNanos));
         return activeDeals;
     }
 
-    private boolean isActiveDeal(LocalTime dealRequestTime, LocalTime restaurantOpenTime, LocalTime restaurantCloseTime,
-                                 LocalTime dealStartTime, LocalTime dealEndTime) {
+    /**
+     * Retrieves every deal active at any point of the inclusive window {@code [from, to]}, each
+     * with its effective active window ({@code activeFrom}/{@code activeTo}).
+     *
+     * Uses the same effective windows as {@link #getAllActiveDealsAtTime(LocalTime)}, queried in a
+     * single pass over the snapshot's interval tree (O(log n + k)) instead of one point lookup per
+     * minute. Windows crossing midnight are not supported.
+     *
+     * @throws IllegalArgumentException if {@code from} is after {@code to}
+     */
+    public List<ActiveDeal> getAllActiveDealsBetween(LocalTime from, LocalTime to) throws IOException {
+        return getAllActiveDealsBetween(from, to, DealFilter.NONE);
+    }
 
-        // Not handling overnight hours I-e restaurant/deal finishes next day
-        if (!hasTimeOverlap(restaurantOpenTime, restaurantCloseTime, dealStartTime, dealEndTime)) {
-            return false;
+    /**
+     * Same as {@link #getAllActiveDealsBetween(LocalTime, LocalTime)}, keeping only the deals that
+     * match {@code filter}.
+     *
+     * @throws IllegalArgumentException if {@code from} is after {@code to}
+     */
+    public List<ActiveDeal> getAllActiveDealsBetween(LocalTime from, LocalTime to, DealFilter filter)
+            throws IOException {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
         }
+        DealSnapshot snapshot = currentSnapshot();
+        long started = System.nanoTime();
+        int[] dealIds = snapshot.activeDealIdsBetween(from, to, filter);
+        metrics.recordSince(Metric.QUERY, started);
+        return materialise(snapshot, dealIds, true);
+    }
 
-        LocalTime actualDealStartTime = restaurantOpenTime.compareTo(dealStartTime) > 0 ? restaurantOpenTime : dealStartTime;
-        LocalTime actualDealEndTime = restaurantCloseTime.compareTo(dealEndTime) < 0 ? restaurantCloseTime : dealEndTime;
+    private List<ActiveDeal> materialise(DealSnapshot snapshot, int[] dealIds, boolean withWindows) {
+        long started = System.nanoTime();
+        List<ActiveDeal> activeDeals = withWindows
+                ? snapshot.activeDealsWithWindows(dealIds)
+                : snapshot.activeDeals(dealIds);
+        metrics.recordSince(Metric.MAPPING, started);
+        return activeDeals;
+    }
 
-        return (dealRequestTime.compareTo(actualDealStartTime) >= 0 && dealRequestTime.compareTo(actualDealEndTime) <= 0);
+    /**
+     * Writes one page of the deals active at {@code time} as
+     * {@code {"deals": [...], "nextCursor": "..."}}, with {@code nextCursor} only present if more
+     * deals follow. Deals are written straight from the snapshot's columns, in the same form and
+     * order as {@link #getAllActiveDealsAtTime(LocalTime, DealFilter)}, without materialising them.
+     *
+     * @param cursor {@code nextCursor} of the previous page, or {@code null} for the first page
+     * @throws IllegalArgumentException if {@code limit} is not positive, or the cursor is invalid,
+     *                                  expired (the snapshot changed) or from another query
+     */
+    public void writeActiveDealsPageAt(LocalTime time, DealFilter filter, String cursor, int limit,
+                                       JsonGenerator generator) throws IOException {
+        DealSnapshot snapshot = currentSnapshot();
+        long started = System.nanoTime();
+        int[] dealIds = snapshot.activeDealIdsAt(time, filter);
+        metrics.recordSince(Metric.QUERY, started);
+        writePage(snapshot, dealIds, "at" + time.toSecondOfDay() + "|" + filter, false, cursor, limit, generator);
     }
 
     /**
-     * Identifies time periods with the highest concentration of active deals across all restaurants.
-     * 
-     * Approach:
-     * 1. Tracks deal activity per minute across a 24-hour period
-     * 2. For each deal, marks its active minutes within the restaurant's operating hours
-     * 3. Finds the maximum number of overlapping deals
-     * 4. Identifies all continuous time ranges with this maximum overlap
-     * 
-     * @return List of peak time ranges with the highest deal activity
+     * Same as {@link #writeActiveDealsPageAt}, for the deals of
+     * {@link #getAllActiveDealsBetween(LocalTime, LocalTime, DealFilter)}, each with its effective
+     * window.
+     *
+     * @throws IllegalArgumentException if {@code from} is after {@code to}, or as for
+     *                                  {@link #writeActiveDealsPageAt}
      */
-    public List<DealPeakTime> findPeakTimeRange() throws IOException {
-        List<Restaurant> restaurants = repository.getRestaurantDataFromApi();
-        int[] dealCounts = new int[DAY_TOTAL_MINUTES]; // Tracks concurrent deals per minute
-        List<DealPeakTime> peakTimes = new ArrayList<>();
-
-        // Process each restaurant's deals to build the minute-by-minute deal count
-        for (Restaurant restaurant : restaurants) {
-            if (restaurant.getDeals() == null) {
-                continue; // Skip restaurants with no deals
-            }
+    public void writeActiveDealsPageBetween(LocalTime from, LocalTime to, DealFilter filter, String cursor,
+                                            int limit, JsonGenerator generator) throws IOException {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        DealSnapshot snapshot = currentSnapshot();
+        long started = System.nanoTime();
+        int[] dealIds = snapshot.activeDealIdsBetween(from, to, filter);
+        metrics.recordSince(Metric.QUERY, started);
+        writePage(snapshot, dealIds, "between" + from.toSecondOfDay() + "-" + to.toSecondOfDay() + "|" + filter,
+                true, cursor, limit, generator);
+    }
 
-            for (Deal deal : restaurant.getDeals()) {
-                // Use deal-specific times if available, otherwise fall back to restaurant hours
-                LocalTime dealStartTime = deal.getOpen() != null ? deal.getOpen() : deal.getStart();
-                LocalTime dealEndTime = deal.getClose() != null ? deal.getClose() : deal.getEnd();
-
-                // If deal times aren't specified, use restaurant's operating hours
-                if (dealStartTime == null || dealEndTime == null) {
-                    dealStartTime = restaurant.getOpen();
-                    dealEndTime = restaurant.getClose();
-                }
-
-                // Mark active minutes for this deal
-                markDealTime(dealCounts, restaurant.getOpen(),
-                        restaurant.getClose(),
-                        dealStartTime, dealEndTime);
+    /**
+     * Writes the page of {@code dealIds} selected by {@code cursor} and {@code limit}; deals are
+     * written straight from the columns, so this is recorded as serialization only.
+     */
+    private void writePage(DealSnapshot snapshot, int[] dealIds, String query, boolean withWindows,
+                           String cursor, int limit, JsonGenerator generator) throws IOException {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        int offset = 0;
+        if (cursor != null) {
+            DealCursor position = DealCursor.decode(cursor);
+            if (position.snapshotVersion() != snapshot.version()) {
+                throw new IllegalArgumentException("Cursor has expired, request the first page again");
+            }
+            if (!position.query().equals(query)) {
+                throw new IllegalArgumentException("Cursor does not match the request");
             }
+            offset = Math.min(position.offset(), dealIds.length);
         }
+        int end = (int) Math.min((long) offset + limit, dealIds.length);
 
-        // Find the maximum number of overlapping deals at any minute
-        int maxDeals = Arrays.stream(dealCounts).max().orElse(0);
-        if (maxDeals == 0) {
-            return peakTimes; // No active deals found
+        long started = System.nanoTime();
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("deals");
+        for (int i = offset; i < end; i++) {
+            snapshot.writeActiveDeal(dealIds[i], withWindows, generator);
         }
-
-        // Identify all time ranges with the maximum number of concurrent deals
-        boolean inPeak = false;
-        int rangeStart = -1;
-
-        // Scan through each minute to find peak ranges
-        for (int i = 0; i <= dealCounts.length; i++) {
-            int current = (i < dealCounts.length) ? dealCounts[i] : 0;
-
-            if ((current == maxDeals) && !inPeak) {
-                // Start of a new peak range
-                inPeak = true;
-                rangeStart = i;
-            } else if (current != maxDeals && inPeak) {
-                // End of the current peak range
-                int endMinute = i - 1;
-                peakTimes.add(new DealPeakTime(
-                        LocalTime.of(rangeStart / MINUTES_IN_HOUR, rangeStart % MINUTES_IN_HOUR),
-                        LocalTime.of(endMinute / MINUTES_IN_HOUR, endMinute % MINUTES_IN_HOUR)
-                ));
-                inPeak = false;
-            }
+        generator.writeEndArray();
+        if (end < dealIds.length) {
+            generator.writeStringField("nextCursor", new DealCursor(snapshot.version(), query, end).encode());
         }
-        return peakTimes;
+        generator.writeEndObject();
+        metrics.recordSince(Metric.SERIALIZATION, started);
     }
 
-    private void markDealTime(int[] dealCounts, LocalTime restaurantOpenTime, LocalTime restaurantCloseTime,
-                              LocalTime dealStartTime, LocalTime dealEndTime) {
-        int restOpenMin = restaurantOpenTime.getHour() * MINUTES_IN_HOUR + restaurantOpenTime.getMinute();
-        int restCloseMin = restaurantCloseTime.getHour() * MINUTES_IN_HOUR + restaurantCloseTime.getMinute();
-        int dealStartMin = dealStartTime.getHour() * MINUTES_IN_HOUR + dealStartTime.getMinute();
-        int dealEndMin = dealEndTime.getHour() * MINUTES_IN_HOUR + dealEndTime.getMinute();
+    /**
+     * Version of the {@link DealSnapshot} for the repository's current feed. Results only change
+     * when the version does, so callers can cache them against it.
+     */
+    public long getSnapshotVersion() throws IOException {
+        return currentSnapshot().version();
+    }
 
-        // Not handling overnight hours i-e restaurant/deal finishes next day
-        if (!hasTimeOverlap(restOpenMin, restCloseMin, dealStartMin, dealEndMin)) {
-            return;
-        }
+    /**
+     * Returns the snapshot for the repository's current feed, refreshing it only when the
+     * repository hands out a different feed instance. A refresh is applied incrementally to the
+     * previous snapshot where possible (see {@link DealSnapshot#refresh(List)}).
+     */
+    private DealSnapshot currentSnapshot() throws IOException {
+        return snapshotFor(repository.getRestaurantDataFromApi());
+    }
 
-        // Adjust for restaurant hours
-        dealStartMin = Math.max(dealStartMin, restOpenMin);
-        dealEndMin = Math.min(dealEndMin, restCloseMin);
+    /**
+     * Builds the snapshot for the feed the repository already holds, such as one mapped from its
+     * snapshot file, so the first query does not pay for it. Never contacts upstream, and does
+     * nothing if the repository has no feed it would serve.
+     */
+    public void preloadSnapshot() {
+        List<Restaurant> restaurants = repository.getCachedRestaurantData();
+        if (restaurants != null) {
+            snapshotFor(restaurants);
+        }
+    }
 
-        if (dealStartMin <= dealEndMin) {
-            for (int i = dealStartMin; i <= dealEndMin; i++) {
-                dealCounts[i]++;
-            }
+    private DealSnapshot snapshotFor(List<Restaurant> restaurants) {
+        DealSnapshot current = snapshot;
+        if (current == null || !current.isBuiltFrom(restaurants)) {
+            long started = System.nanoTime();
+            current = current == null ? DealSnapshot.of(restaurants) : current.refresh(restaurants);
+            snapshot = current;
+            metrics.recordSince(Metric.SNAPSHOT_BUILD, started);
+            logger.info("{} deal snapshot with {} deals ({} inserted, {} removed) in {} ms ({} column bytes), "
+                            + "minute table: {} ({} bytes), filter index: {} bytes, ranked table: {} bytes",
+                    current.isIncremental() ? "Refreshed" : "Built", current.dealCount(),
+                    current.insertedDealCount(), current.removedDealCount(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), current.columnFootprintBytes(),
+                    current.hasMinuteTable() ? "enabled" : "over budget", current.minuteTableFootprintBytes(),
+                    current.filterIndexFootprintBytes(), current.rankedTableFootprintBytes());
         }
+        return current;
+    }
+
+    /**
+     * Identifies time periods with the highest concentration of active deals across all restaurants.
+     *
+     * Approach:
+     * 1. Reuses the {@link DealSnapshot} for the current feed, whose per-minute occupancy was
+     *    computed once with a sweep line: +1 at each deal's effective start, -1 after its end,
+     *    then a prefix sum over the day (O(deals + 1440))
+     * 2. Finds the maximum number of overlapping deals
+     * 3. Identifies all continuous time ranges with this maximum overlap
+     *
+     * @return List of peak time ranges with the highest deal activity
+     */
+    public List<DealPeakTime> findPeakTimeRange() throws IOException {
+        return findPeakTimeRange(ChronoUnit.MINUTES);
     }
 
-    private boolean hasTimeOverlap(int restOpenMin, int restCloseMin, int dealStartMin, int dealEndMin) {
-        return dealStartMin <= restCloseMin && dealEndMin >= restOpenMin;
+    /**
+     * Same as {@link #findPeakTimeRange()} at {@link ChronoUnit#MINUTES} or
+     * {@link ChronoUnit#SECONDS} resolution. Second resolution sorts the start/end events instead
+     * of using a per-minute array.
+     */
+    public List<DealPeakTime> findPeakTimeRange(ChronoUnit resolution) throws IOException {
+        return currentSnapshot().peakTimes(resolution);
     }
 
-    private boolean hasTimeOverlap(LocalTime restOpenTime, LocalTime restCloseTime,  LocalTime dealStartTime, LocalTime dealEndTime) {
-        return dealStartTime.compareTo(restCloseTime) <= 0 && dealEndTime.compareTo(restOpenTime) >= 0;
+    /**
+     * Occupancy curve of the day in {@code bucketMinutes}-minute buckets, each holding the highest
+     * number of deals active at once within it. Served from the current snapshot's precomputed
+     * per-minute counts.
+     *
+     * @throws IllegalArgumentException if {@code bucketMinutes} is not between 1 and 1440
+     */
+    public DealOccupancy getOccupancy(int bucketMinutes) throws IOException {
+        return new DealOccupancy(bucketMinutes, currentSnapshot().occupancy().bucketCounts(bucketMinutes));
     }
 
-}
\ No newline at end of file
+    /**
+     * The {@code k} non-overlapping windows with the most concurrently active deals, highest first.
+     *
+     * @throws IllegalArgumentException if {@code k} is less than 1
+     */
+    public List<DealWindow> findTopPeakWindows(int k) throws IOException {
+        return currentSnapshot().occupancy().topWindows(k);
+    }
+
+    /**
+     * Maximal windows during which at least {@code minDeals} deals are active at once, in time
+     * order.
+     *
+     * @throws IllegalArgumentException if {@code minDeals} is less than 1
+     */
+    public List<DealWindow> findWindowsWithAtLeast(int minDeals) throws IOException {
+        return currentSnapshot().occupancy().windowsWithAtLeast(minDeals);
+    }
+}
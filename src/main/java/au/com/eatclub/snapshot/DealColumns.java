@@ -0,0 +1,329 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.ActiveDeal;
+import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.Restaurant;
+import au.com.eatclub.serialization.TimeOfDayParser;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.time.LocalTime;
+
+/**
+ * Immutable columnar store of the restaurant and deal attributes returned to clients.
+ *
+ * <p>Restaurants and deals are laid out as parallel primitive columns indexed by restaurant index
+ * and deal id respectively; strings are codes into a shared {@link StringDictionary}, booleans
+ * are bits in a flags byte and times are minutes of the day. {@code discount} and
+ * {@code qtyLeft} are also parsed once into int columns, so ranking and thresholds never parse
+ * strings at query time; the strings are still returned as received. Nothing references the feed's
+ * {@link Restaurant}/{@link Deal} objects, and an {@link ActiveDeal} is only materialised for a
+ * deal that is actually returned.
+ *
+ * <p>Columns are int and byte buffers: heap arrays when {@linkplain Builder built} from the feed,
+ * or views of a {@link MappedFeed}'s buffer, read in place. Only absolute reads are used, so the
+ * buffers are shared by every thread.
+ */
+@Immutable
+public final class DealColumns {
+    /**
+     * Parsed {@code discount}/{@code qtyLeft} of a deal whose value is missing or not a whole number.
+     */
+    public static final int UNKNOWN = -1;
+    private static final int NO_TIME = -1;
+    static final byte DINE_IN = 1;
+    static final byte LIGHTNING = 1 << 1;
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    private final StringDictionary strings;
+
+    // Restaurant columns, indexed by restaurant index
+    private final IntBuffer restaurantObjectIds;
+    private final IntBuffer restaurantNames;
+    private final IntBuffer restaurantAddresses;
+    private final IntBuffer restaurantSuburbs;
+    private final IntBuffer restaurantOpenMinutes;
+    private final IntBuffer restaurantCloseMinutes;
+
+    // Deal columns, indexed by deal id
+    private final IntBuffer dealRestaurants;
+    private final IntBuffer dealObjectIds;
+    private final IntBuffer dealDiscounts;
+    private final IntBuffer dealQtyLeft;
+    private final IntBuffer dealDiscountValues;
+    private final IntBuffer dealQtyLeftValues;
+    private final ByteBuffer dealFlags;
+
+    /**
+     * Columns over the given buffers, indexed from 0 to their limits. The buffers are kept, not
+     * copied.
+     */
+    DealColumns(StringDictionary strings, IntBuffer restaurantObjectIds, IntBuffer restaurantNames,
+                IntBuffer restaurantAddresses, IntBuffer restaurantSuburbs, IntBuffer restaurantOpenMinutes,
+                IntBuffer restaurantCloseMinutes, IntBuffer dealRestaurants, IntBuffer dealObjectIds,
+                IntBuffer dealDiscounts, IntBuffer dealQtyLeft, IntBuffer dealDiscountValues,
+                IntBuffer dealQtyLeftValues, ByteBuffer dealFlags) {
+        this.strings = strings;
+        this.restaurantObjectIds = restaurantObjectIds;
+        this.restaurantNames = restaurantNames;
+        this.restaurantAddresses = restaurantAddresses;
+        this.restaurantSuburbs = restaurantSuburbs;
+        this.restaurantOpenMinutes = restaurantOpenMinutes;
+        this.restaurantCloseMinutes = restaurantCloseMinutes;
+        this.dealRestaurants = dealRestaurants;
+        this.dealObjectIds = dealObjectIds;
+        this.dealDiscounts = dealDiscounts;
+        this.dealQtyLeft = dealQtyLeft;
+        this.dealDiscountValues = dealDiscountValues;
+        this.dealQtyLeftValues = dealQtyLeftValues;
+        this.dealFlags = dealFlags;
+    }
+
+    /**
+     * Materialises the client view of deal {@code dealId}.
+     */
+    public ActiveDeal activeDeal(int dealId) {
+        int restaurant = dealRestaurants.get(dealId);
+        ActiveDeal activeDeal = new ActiveDeal();
+        activeDeal.setRestaurantObjectId(strings.decode(restaurantObjectIds.get(restaurant)));
+        activeDeal.setRestaurantName(strings.decode(restaurantNames.get(restaurant)));
+        activeDeal.setRestaurantAddress1(strings.decode(restaurantAddresses.get(restaurant)));
+        activeDeal.setRestaurantSuburb(strings.decode(restaurantSuburbs.get(restaurant)));
+        activeDeal.setRestaurantOpen(toLocalTime(restaurantOpenMinutes.get(restaurant)));
+        activeDeal.setRestaurantClose(toLocalTime(restaurantCloseMinutes.get(restaurant)));
+        activeDeal.setDealObjectId(strings.decode(dealObjectIds.get(dealId)));
+        activeDeal.setDiscount(strings.decode(dealDiscounts.get(dealId)));
+        activeDeal.setDineIn((dealFlags.get(dealId) & DINE_IN) != 0);
+        activeDeal.setLightning((dealFlags.get(dealId) & LIGHTNING) != 0);
+        activeDeal.setQtyLeft(strings.decode(dealQtyLeft.get(dealId)));
+        return activeDeal;
+    }
+
+    /**
+     * Writes deal {@code dealId} as the JSON object {@link #activeDeal(int)} serializes to,
+     * straight from the columns.
+     */
+    public void writeActiveDeal(int dealId, JsonGenerator generator) throws IOException {
+        writeActiveDeal(dealId, NO_TIME, NO_TIME, generator);
+    }
+
+    /**
+     * Same as {@link #writeActiveDeal(int, JsonGenerator)}, with {@code activeFrom}/{@code activeTo}
+     * set to the given minutes of the day unless they are negative.
+     */
+    public void writeActiveDeal(int dealId, int activeFromMinute, int activeToMinute, JsonGenerator generator)
+            throws IOException {
+        int restaurant = dealRestaurants.get(dealId);
+        generator.writeStartObject();
+        generator.writeStringField("restaurantObjectId", strings.decode(restaurantObjectIds.get(restaurant)));
+        generator.writeStringField("restaurantName", strings.decode(restaurantNames.get(restaurant)));
+        generator.writeStringField("restaurantAddress1", strings.decode(restaurantAddresses.get(restaurant)));
+        generator.writeStringField("restaurantSuburb", strings.decode(restaurantSuburbs.get(restaurant)));
+        writeTimeField(generator, "restaurantOpen", restaurantOpenMinutes.get(restaurant));
+        writeTimeField(generator, "restaurantClose", restaurantCloseMinutes.get(restaurant));
+        generator.writeStringField("dealObjectId", strings.decode(dealObjectIds.get(dealId)));
+        generator.writeStringField("discount", strings.decode(dealDiscounts.get(dealId)));
+        generator.writeBooleanField("dineIn", (dealFlags.get(dealId) & DINE_IN) != 0);
+        generator.writeBooleanField("lightning", (dealFlags.get(dealId) & LIGHTNING) != 0);
+        generator.writeStringField("qtyLeft", strings.decode(dealQtyLeft.get(dealId)));
+        if (activeFromMinute >= 0) {
+            writeTimeField(generator, "activeFrom", activeFromMinute);
+        }
+        if (activeToMinute >= 0) {
+            writeTimeField(generator, "activeTo", activeToMinute);
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeTimeField(JsonGenerator generator, String name, int minuteOfDay) throws IOException {
+        if (minuteOfDay == NO_TIME) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeStringField(name, TimeOfDayParser.format(minuteOfDay));
+        }
+    }
+
+    /**
+     * Discount of deal {@code dealId} as a whole number, or {@link #UNKNOWN}.
+     */
+    public int discount(int dealId) {
+        return dealDiscountValues.get(dealId);
+    }
+
+    /**
+     * Quantity left of deal {@code dealId} as a whole number, or {@link #UNKNOWN}.
+     */
+    public int qtyLeft(int dealId) {
+        return dealQtyLeftValues.get(dealId);
+    }
+
+    /**
+     * Parses a whole, non-negative number such as "25" or "25%", ignoring surrounding spaces,
+     * without allocating. Returns {@link #UNKNOWN} for {@code null}, anything else, or a value
+     * that does not fit an int.
+     */
+    static int parseWholeNumber(String text) {
+        if (text == null) {
+            return UNKNOWN;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end > start && text.charAt(end - 1) == '%') {
+            end--;
+        }
+        if (start == end) {
+            return UNKNOWN;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return UNKNOWN;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                return UNKNOWN;
+            }
+        }
+        return (int) value;
+    }
+
+    public int restaurantIndex(int dealId) {
+        return dealRestaurants.get(dealId);
+    }
+
+    public int dealCount() {
+        return dealRestaurants.limit();
+    }
+
+    public int restaurantCount() {
+        return restaurantObjectIds.limit();
+    }
+
+    public StringDictionary strings() {
+        return strings;
+    }
+
+    /**
+     * Approximate heap footprint of the columns and their dictionary in bytes. Columns read in
+     * place from a mapped buffer take no heap.
+     */
+    public long footprintBytes() {
+        long bytes = strings.footprintBytes() + heapBytes(dealFlags);
+        for (IntBuffer column : new IntBuffer[]{restaurantObjectIds, restaurantNames, restaurantAddresses,
+                restaurantSuburbs, restaurantOpenMinutes, restaurantCloseMinutes, dealRestaurants, dealObjectIds,
+                dealDiscounts, dealQtyLeft, dealDiscountValues, dealQtyLeftValues}) {
+            bytes += heapBytes(column);
+        }
+        return bytes;
+    }
+
+    private static long heapBytes(IntBuffer column) {
+        return column.hasArray() ? ARRAY_HEADER_BYTES + 4L * column.capacity() : 0;
+    }
+
+    private static long heapBytes(ByteBuffer column) {
+        return column.hasArray() ? ARRAY_HEADER_BYTES + column.capacity() : 0;
+    }
+
+    /**
+     * Flags byte of {@code deal}, as stored in the flags column.
+     */
+    static byte flags(Deal deal) {
+        return (byte) ((deal.isDineIn() ? DINE_IN : 0) | (deal.isLightning() ? LIGHTNING : 0));
+    }
+
+    private static LocalTime toLocalTime(int minuteOfDay) {
+        return minuteOfDay == NO_TIME ? null : TimeOfDayParser.toLocalTime(minuteOfDay);
+    }
+
+    static int toMinuteOfDay(LocalTime time) {
+        return time == null ? NO_TIME : DealSnapshot.toMinuteOfDay(time);
+    }
+
+    /**
+     * Fills the columns for a known number of restaurants and deals, in id order.
+     */
+    static final class Builder {
+        private final StringDictionary.Builder strings = new StringDictionary.Builder();
+        private final int[] restaurantObjectIds;
+        private final int[] restaurantNames;
+        private final int[] restaurantAddresses;
+        private final int[] restaurantSuburbs;
+        private final int[] restaurantOpenMinutes;
+        private final int[] restaurantCloseMinutes;
+        private final int[] dealRestaurants;
+        private final int[] dealObjectIds;
+        private final int[] dealDiscounts;
+        private final int[] dealQtyLeft;
+        private final int[] dealDiscountValues;
+        private final int[] dealQtyLeftValues;
+        private final byte[] dealFlags;
+        private int restaurantCount;
+        private int dealCount;
+
+        Builder(int restaurants, int deals) {
+            restaurantObjectIds = new int[restaurants];
+            restaurantNames = new int[restaurants];
+            restaurantAddresses = new int[restaurants];
+            restaurantSuburbs = new int[restaurants];
+            restaurantOpenMinutes = new int[restaurants];
+            restaurantCloseMinutes = new int[restaurants];
+            dealRestaurants = new int[deals];
+            dealObjectIds = new int[deals];
+            dealDiscounts = new int[deals];
+            dealQtyLeft = new int[deals];
+            dealDiscountValues = new int[deals];
+            dealQtyLeftValues = new int[deals];
+            dealFlags = new byte[deals];
+        }
+
+        /**
+         * Adds a restaurant and returns its index.
+         */
+        int addRestaurant(Restaurant restaurant) {
+            int index = restaurantCount++;
+            restaurantObjectIds[index] = strings.encode(restaurant.getObjectId());
+            restaurantNames[index] = strings.encode(restaurant.getName());
+            restaurantAddresses[index] = strings.encode(restaurant.getAddress1());
+            restaurantSuburbs[index] = strings.encode(restaurant.getSuburb());
+            restaurantOpenMinutes[index] = toMinuteOfDay(restaurant.getOpen());
+            restaurantCloseMinutes[index] = toMinuteOfDay(restaurant.getClose());
+            return index;
+        }
+
+        /**
+         * Adds a deal of the restaurant at {@code restaurantIndex} and returns its id.
+         */
+        int addDeal(int restaurantIndex, Deal deal) {
+            int id = dealCount++;
+            dealRestaurants[id] = restaurantIndex;
+            dealObjectIds[id] = strings.encode(deal.getObjectId());
+            dealDiscounts[id] = strings.encode(deal.getDiscount());
+            dealQtyLeft[id] = strings.encode(deal.getQtyLeft());
+            dealDiscountValues[id] = parseWholeNumber(deal.getDiscount());
+            dealQtyLeftValues[id] = parseWholeNumber(deal.getQtyLeft());
+            dealFlags[id] = flags(deal);
+            return id;
+        }
+
+        DealColumns build() {
+            return new DealColumns(strings.build(), IntBuffer.wrap(restaurantObjectIds), IntBuffer.wrap(restaurantNames),
+                    IntBuffer.wrap(restaurantAddresses), IntBuffer.wrap(restaurantSuburbs),
+                    IntBuffer.wrap(restaurantOpenMinutes), IntBuffer.wrap(restaurantCloseMinutes),
+                    IntBuffer.wrap(dealRestaurants), IntBuffer.wrap(dealObjectIds), IntBuffer.wrap(dealDiscounts),
+                    IntBuffer.wrap(dealQtyLeft), IntBuffer.wrap(dealDiscountValues), IntBuffer.wrap(dealQtyLeftValues),
+                    ByteBuffer.wrap(dealFlags));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package au.com.eatclub.snapshot;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Attribute filter for active-deal queries. Every criterion is optional; a deal matches if it
+ * meets all criteria that are set. Suburb and cuisine are matched case-insensitively against the
+ * restaurant's suburb and any of its cuisines.
+ */
+@Immutable
+public final class DealFilter {
+    public static final DealFilter NONE = new DealFilter(null, null, null, null);
+
+    private final String suburb;
+    private final String cuisine;
+    private final Boolean dineIn;
+    private final Boolean lightning;
+
+    public DealFilter(String suburb, String cuisine, Boolean dineIn, Boolean lightning) {
+        this.suburb = normalise(suburb);
+        this.cuisine = normalise(cuisine);
+        this.dineIn = dineIn;
+        this.lightning = lightning;
+    }
+
+    /**
+     * Form in which suburbs and cuisines are indexed and compared.
+     */
+    static String normalise(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public String suburb() {
+        return suburb;
+    }
+
+    public String cuisine() {
+        return cuisine;
+    }
+
+    public Boolean dineIn() {
+        return dineIn;
+    }
+
+    public Boolean lightning() {
+        return lightning;
+    }
+
+    /**
+     * Whether no criterion is set, so every deal matches.
+     */
+    public boolean isEmpty() {
+        return suburb == null && cuisine == null && dineIn == null && lightning == null;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof DealFilter)) {
+            return false;
+        }
+        DealFilter filter = (DealFilter) other;
+        return Objects.equals(suburb, filter.suburb) && Objects.equals(cuisine, filter.cuisine)
+                && Objects.equals(dineIn, filter.dineIn) && Objects.equals(lightning, filter.lightning);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(suburb, cuisine, dineIn, lightning);
+    }
+
+    @Override
+    public String toString() {
+        return "suburb=" + suburb + ",cuisine=" + cuisine + ",dineIn=" + dineIn + ",lightning=" + lightning;
+    }
+}
@@ -0,0 +1,154 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.Restaurant;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable per-value bitsets over the deal ids of a {@link DealSegment}: one per suburb and per
+ * cuisine (normalised as in {@link DealFilter}), plus the deals that are dine-in and lightning.
+ *
+ * <p>{@link #matching(DealFilter)} intersects the bitsets of the filter's criteria with
+ * word-level {@link BitSet#and}/{@link BitSet#andNot}, so each added criterion is a pass over
+ * {@code size / 64} words that can only shrink the result.
+ */
+@Immutable
+final class DealFilterIndex {
+    private static final BitSet NO_DEALS = new BitSet();
+
+    private final int size;
+    private final Map<String, BitSet> suburbs;
+    private final Map<String, BitSet> cuisines;
+    private final BitSet dineIn;
+    private final BitSet lightning;
+
+    private DealFilterIndex(int size, Map<String, BitSet> suburbs, Map<String, BitSet> cuisines, BitSet dineIn,
+                            BitSet lightning) {
+        this.size = size;
+        this.suburbs = suburbs;
+        this.cuisines = cuisines;
+        this.dineIn = dineIn;
+        this.lightning = lightning;
+    }
+
+    /**
+     * Indexes {@code deals.get(i)} of {@code restaurants.get(i)} for every i, numbered in that
+     * order as in {@link DealSegment#build}.
+     */
+    static DealFilterIndex build(List<Restaurant> restaurants, List<List<Deal>> deals) {
+        Builder builder = new Builder();
+        int id = 0;
+        for (int r = 0; r < restaurants.size(); r++) {
+            Restaurant restaurant = restaurants.get(r);
+            List<Deal> restaurantDeals = deals.get(r);
+            if (restaurantDeals.isEmpty()) {
+                continue;
+            }
+            int first = id;
+            int end = id + restaurantDeals.size();
+            builder.addSuburb(restaurant.getSuburb(), first, end);
+            if (restaurant.getCuisines() != null) {
+                for (String cuisine : restaurant.getCuisines()) {
+                    builder.addCuisine(cuisine, first, end);
+                }
+            }
+            for (Deal deal : restaurantDeals) {
+                builder.addDeal(id++, deal.isDineIn(), deal.isLightning());
+            }
+        }
+        return builder.build(id);
+    }
+
+    /**
+     * New bitset of the deals matching every criterion of {@code filter}.
+     */
+    BitSet matching(DealFilter filter) {
+        List<BitSet> required = new ArrayList<>(3);
+        List<BitSet> excluded = new ArrayList<>(2);
+        if (filter.suburb() != null) {
+            required.add(suburbs.getOrDefault(filter.suburb(), NO_DEALS));
+        }
+        if (filter.cuisine() != null) {
+            required.add(cuisines.getOrDefault(filter.cuisine(), NO_DEALS));
+        }
+        if (filter.dineIn() != null) {
+            (filter.dineIn() ? required : excluded).add(dineIn);
+        }
+        if (filter.lightning() != null) {
+            (filter.lightning() ? required : excluded).add(lightning);
+        }
+
+        BitSet matching;
+        if (required.isEmpty()) {
+            matching = new BitSet(size);
+            matching.set(0, size);
+        } else {
+            // Start from the sparsest bitset so later ANDs touch as few words as possible
+            required.sort((a, b) -> Integer.compare(a.length(), b.length()));
+            matching = (BitSet) required.get(0).clone();
+            for (int i = 1; i < required.size(); i++) {
+                matching.and(required.get(i));
+            }
+        }
+        for (BitSet bits : excluded) {
+            matching.andNot(bits);
+        }
+        return matching;
+    }
+
+    /**
+     * Approximate heap footprint of the bitsets in bytes.
+     */
+    long footprintBytes() {
+        long bytes = bitsetBytes(dineIn) + bitsetBytes(lightning);
+        for (BitSet bits : suburbs.values()) {
+            bytes += bitsetBytes(bits);
+        }
+        for (BitSet bits : cuisines.values()) {
+            bytes += bitsetBytes(bits);
+        }
+        return bytes;
+    }
+
+    private static long bitsetBytes(BitSet bits) {
+        return 32 + bits.size() / Byte.SIZE;
+    }
+
+    /**
+     * Collects the bitsets restaurant by restaurant; each restaurant's deals are the contiguous
+     * ids {@code [first, end)}.
+     */
+    static final class Builder {
+        private final Map<String, BitSet> suburbs = new HashMap<>();
+        private final Map<String, BitSet> cuisines = new HashMap<>();
+        private final BitSet dineIn = new BitSet();
+        private final BitSet lightning = new BitSet();
+
+        void addSuburb(String suburb, int first, int end) {
+            if (suburb != null) {
+                suburbs.computeIfAbsent(DealFilter.normalise(suburb), key -> new BitSet()).set(first, end);
+            }
+        }
+
+        void addCuisine(String cuisine, int first, int end) {
+            if (cuisine != null) {
+                cuisines.computeIfAbsent(DealFilter.normalise(cuisine), key -> new BitSet()).set(first, end);
+            }
+        }
+
+        void addDeal(int id, boolean dineIn, boolean lightning) {
+            this.dineIn.set(id, dineIn);
+            this.lightning.set(id, lightning);
+        }
+
+        DealFilterIndex build(int size) {
+            return new DealFilterIndex(size, suburbs, cuisines, dineIn, lightning);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package au.com.eatclub.snapshot;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable centered interval tree over inclusive {@code [start, end]} minute-of-day intervals.
+ *
+ * <p>Each node owns the intervals that contain its center point, kept twice: sorted by start
+ * ascending and by end descending. Intervals entirely before the center go to the left subtree and
+ * intervals entirely after it go to the right subtree. A point query walks a single root-to-leaf
+ * path and only scans node entries that are actually reported, so it costs O(log n + k) instead
+ * of O(n). A window query only descends into both subtrees at nodes whose center lies inside the
+ * window; every node holds at least one interval and all of such a node's intervals are reported,
+ * so a window query also costs O(log n + k).
+ *
+ * <p>The tree is stored in flat {@code int} arrays so that it can be shared between threads
+ * without synchronisation once built.
+ */
+@Immutable
+public final class DealIntervalIndex {
+    private static final int NO_NODE = -1;
+
+    private final int[] starts;
+    private final int[] ends;
+
+    // Per node: center point, children and the slice of byStart/byEnd it owns
+    private final int[] nodeCenter;
+    private final int[] nodeLeft;
+    private final int[] nodeRight;
+    private final int[] nodeFrom;
+    private final int[] nodeTo;
+    private final int root;
+
+    // Interval ids of every node, sorted by start ascending and by end descending respectively
+    private final int[] byStart;
+    private final int[] byEnd;
+
+    /**
+     * Builds the index. Interval {@code i} is {@code [starts[i], ends[i]]}; intervals with a
+     * negative start or {@code start > end} are treated as empty and never reported.
+     */
+    public DealIntervalIndex(int[] starts, int[] ends) {
+        if (starts.length != ends.length) {
+            throw new IllegalArgumentException("starts and ends must have the same length");
+        }
+        this.starts = starts.clone();
+        this.ends = ends.clone();
+
+        int[] ids = new int[starts.length];
+        int count = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] >= 0 && starts[i] <= ends[i]) {
+                ids[count++] = i;
+            }
+        }
+
+        // A centered tree never has more nodes than intervals
+        int capacity = Math.max(count, 1);
+        this.nodeCenter = new int[capacity];
+        this.nodeLeft = new int[capacity];
+        this.nodeRight = new int[capacity];
+        this.nodeFrom = new int[capacity];
+        this.nodeTo = new int[capacity];
+        this.byStart = new int[count];
+        this.byEnd = new int[count];
+
+        Builder builder = new Builder();
+        this.root = builder.build(Arrays.copyOf(ids, count));
+    }
+
+    /**
+     * Reports the id of every interval containing {@code point}, in no particular order.
+     */
+    public void stab(int point, IntConsumer sink) {
+        int node = root;
+        while (node != NO_NODE) {
+            int center = nodeCenter[node];
+            if (point < center) {
+                // Every interval here ends at or after the center, so only the start matters
+                for (int i = nodeFrom[node]; i < nodeTo[node] && starts[byStart[i]] <= point; i++) {
+                    sink.accept(byStart[i]);
+                }
+                node = nodeLeft[node];
+            } else if (point > center) {
+                // Every interval here starts at or before the center, so only the end matters
+                for (int i = nodeFrom[node]; i < nodeTo[node] && ends[byEnd[i]] >= point; i++) {
+                    sink.accept(byEnd[i]);
+                }
+                node = nodeRight[node];
+            } else {
+                for (int i = nodeFrom[node]; i < nodeTo[node]; i++) {
+                    sink.accept(byStart[i]);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of every interval containing {@code point} in ascending id order.
+     */
+    public int[] stab(int point) {
+        IntBuffer buffer = new IntBuffer();
+        stab(point, buffer);
+        return buffer.sortedArray();
+    }
+
+    /**
+     * Reports the id of every interval overlapping the inclusive window {@code [from, to]}, in no
+     * particular order.
+     */
+    public void overlapping(int from, int to, IntConsumer sink) {
+        if (from > to) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        overlapping(root, from, to, sink);
+    }
+
+    private void overlapping(int node, int from, int to, IntConsumer sink) {
+        while (node != NO_NODE) {
+            int center = nodeCenter[node];
+            if (to < center) {
+                // Every interval here ends at or after the center, so it overlaps if it starts by `to`
+                for (int i = nodeFrom[node]; i < nodeTo[node] && starts[byStart[i]] <= to; i++) {
+                    sink.accept(byStart[i]);
+                }
+                node = nodeLeft[node];
+            } else if (from > center) {
+                // Every interval here starts at or before the center, so it overlaps if it ends at or after `from`
+                for (int i = nodeFrom[node]; i < nodeTo[node] && ends[byEnd[i]] >= from; i++) {
+                    sink.accept(byEnd[i]);
+                }
+                node = nodeRight[node];
+            } else {
+                // The center is inside the window, so every interval here overlaps it
+                for (int i = nodeFrom[node]; i < nodeTo[node]; i++) {
+                    sink.accept(byStart[i]);
+                }
+                overlapping(nodeLeft[node], from, to, sink);
+                node = nodeRight[node];
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of every interval overlapping {@code [from, to]} in ascending id order.
+     */
+    public int[] overlapping(int from, int to) {
+        IntBuffer buffer = new IntBuffer();
+        overlapping(from, to, buffer);
+        return buffer.sortedArray();
+    }
+
+    /**
+     * Number of non-empty intervals held by the index.
+     */
+    public int size() {
+        return byStart.length;
+    }
+
+    private final class Builder {
+        private int nodeCount;
+        private int entryCount;
+
+        private int build(int[] ids) {
+            if (ids.length == 0) {
+                return NO_NODE;
+            }
+
+            int center = medianEndpoint(ids);
+            int leftCount = 0;
+            int rightCount = 0;
+            int[] left = new int[ids.length];
+            int[] right = new int[ids.length];
+            int[] here = new int[ids.length];
+            int hereCount = 0;
+            for (int id : ids) {
+                if (ends[id] < center) {
+                    left[leftCount++] = id;
+                } else if (starts[id] > center) {
+                    right[rightCount++] = id;
+                } else {
+                    here[hereCount++] = id;
+                }
+            }
+
+            int node = nodeCount++;
+            nodeCenter[node] = center;
+            nodeFrom[node] = entryCount;
+            nodeTo[node] = entryCount + hereCount;
+            Integer[] sorted = new Integer[hereCount];
+            for (int i = 0; i < hereCount; i++) {
+                sorted[i] = here[i];
+            }
+            Arrays.sort(sorted, (a, b) -> Integer.compare(starts[a], starts[b]));
+            for (int i = 0; i < hereCount; i++) {
+                byStart[entryCount + i] = sorted[i];
+            }
+            Arrays.sort(sorted, (a, b) -> Integer.compare(ends[b], ends[a]));
+            for (int i = 0; i < hereCount; i++) {
+                byEnd[entryCount + i] = sorted[i];
+            }
+            entryCount += hereCount;
+
+            nodeLeft[node] = build(Arrays.copyOf(left, leftCount));
+            nodeRight[node] = build(Arrays.copyOf(right, rightCount));
+            return node;
+        }
+
+        private int medianEndpoint(int[] ids) {
+            int[] endpoints = new int[ids.length * 2];
+            for (int i = 0; i < ids.length; i++) {
+                endpoints[2 * i] = starts[ids[i]];
+                endpoints[2 * i + 1] = ends[ids[i]];
+            }
+            Arrays.sort(endpoints);
+            return endpoints[ids.length];
+        }
+    }
+
+    /**
+     * Minimal growable int buffer used to collect query results.
+     */
+    static final class IntBuffer implements IntConsumer {
+        private int[] values = new int[16];
+        private int size;
+
+        @Override
+        public void accept(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] sortedArray() {
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
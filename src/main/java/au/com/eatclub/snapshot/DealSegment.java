@@ -0,0 +1,234 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.Restaurant;
+
+import javax.annotation.concurrent.Immutable;
+import java.nio.IntBuffer;
+import java.time.LocalTime;
+import java.util.BitSet;
+import java.util.List;
+
+import static au.com.eatclub.snapshot.DealSnapshot.INACTIVE;
+import static au.com.eatclub.snapshot.DealSnapshot.toMinuteOfDay;
+
+/**
+ * Immutable, indexed block of deals with dense local ids, from which a {@link DealSnapshot} is
+ * assembled.
+ *
+ * <p>A segment holds the {@link DealColumns}, the resolved effective windows, a
+ * {@link DealIntervalIndex}, the {@link DealFilterIndex}, a {@link RankedDealTable} and, within the
+ * memory budget, a {@link MinuteDealTable} for its deals. Segments never change once built; a
+ * snapshot refresh adds a new small segment instead of rebuilding a large one.
+ *
+ * <p>The columns and windows of a segment {@linkplain #of mapped} from a {@link MappedFeed} are
+ * read in place; the indexes are always built on the heap.
+ */
+@Immutable
+final class DealSegment {
+    static final DealSegment EMPTY = build(List.of(), List.of(), 0);
+
+    private final DealColumns columns;
+    private final IntBuffer startMinutes;
+    private final IntBuffer endMinutes;
+    private final DealIntervalIndex intervalIndex;
+    private final MinuteDealTable minuteTable;
+    private final DealFilterIndex filterIndex;
+    private final RankedDealTable rankedTable;
+
+    private DealSegment(DealColumns columns, IntBuffer startMinutes, IntBuffer endMinutes, long minuteTableMaxBytes,
+                        DealFilterIndex filterIndex) {
+        this.columns = columns;
+        this.filterIndex = filterIndex;
+        this.startMinutes = startMinutes;
+        this.endMinutes = endMinutes;
+        int[] starts = toArray(startMinutes);
+        int[] ends = toArray(endMinutes);
+        this.intervalIndex = new DealIntervalIndex(starts, ends);
+        this.minuteTable = minuteTableMaxBytes > 0
+                && MinuteDealTable.estimateBytes(starts, ends) <= minuteTableMaxBytes
+                ? MinuteDealTable.build(starts, ends)
+                : null;
+        int[] discounts = new int[starts.length];
+        int[] quantities = new int[starts.length];
+        for (int id = 0; id < starts.length; id++) {
+            discounts[id] = columns.discount(id);
+            quantities[id] = columns.qtyLeft(id);
+        }
+        this.rankedTable = RankedDealTable.build(starts, ends, discounts, quantities);
+    }
+
+    /**
+     * Segment over existing columns and effective windows, such as those of a
+     * {@link MappedFeed}, building only the indexes. The minute table is only built if it fits in
+     * {@code minuteTableMaxBytes}.
+     */
+    static DealSegment of(DealColumns columns, IntBuffer startMinutes, IntBuffer endMinutes,
+                          DealFilterIndex filterIndex, long minuteTableMaxBytes) {
+        return new DealSegment(columns, startMinutes, endMinutes, minuteTableMaxBytes, filterIndex);
+    }
+
+    /**
+     * Builds a segment holding {@code deals.get(i)} of {@code restaurants.get(i)} for every i,
+     * numbered in that order. The minute table is only built if it fits in
+     * {@code minuteTableMaxBytes}.
+     */
+    static DealSegment build(List<Restaurant> restaurants, List<List<Deal>> deals, long minuteTableMaxBytes) {
+        int dealCount = 0;
+        for (List<Deal> restaurantDeals : deals) {
+            dealCount += restaurantDeals.size();
+        }
+
+        DealColumns.Builder columns = new DealColumns.Builder(restaurants.size(), dealCount);
+        int[] startMinutes = new int[dealCount];
+        int[] endMinutes = new int[dealCount];
+        for (int r = 0; r < restaurants.size(); r++) {
+            Restaurant restaurant = restaurants.get(r);
+            int restaurantIndex = columns.addRestaurant(restaurant);
+            for (Deal deal : deals.get(r)) {
+                int id = columns.addDeal(restaurantIndex, deal);
+                resolveActiveWindow(restaurant, deal, startMinutes, endMinutes, id);
+            }
+        }
+        return new DealSegment(columns.build(), IntBuffer.wrap(startMinutes), IntBuffer.wrap(endMinutes),
+                minuteTableMaxBytes, DealFilterIndex.build(restaurants, deals));
+    }
+
+    /**
+     * The window columns as an array: the backing array of a heap buffer, otherwise a copy
+     * that only lives while the indexes are built.
+     */
+    private static int[] toArray(IntBuffer column) {
+        if (column.hasArray() && column.arrayOffset() == 0 && column.array().length == column.limit()) {
+            return column.array();
+        }
+        int[] values = new int[column.limit()];
+        column.get(0, values);
+        return values;
+    }
+
+    /**
+     * Resolves the effective window of {@code deal} into {@code startMinutes[id]} and
+     * {@code endMinutes[id]}, both {@link DealSnapshot#INACTIVE} if it can never be active.
+     */
+    static void resolveActiveWindow(Restaurant restaurant, Deal deal, int[] startMinutes, int[] endMinutes, int id) {
+        startMinutes[id] = INACTIVE;
+        endMinutes[id] = INACTIVE;
+        if (restaurant.getOpen() == null || restaurant.getClose() == null) {
+            return;
+        }
+
+        // Use deal-specific times if available, otherwise use restaurant's operating hours
+        LocalTime dealStartTime = deal.getOpen() != null ? deal.getOpen() : deal.getStart();
+        LocalTime dealEndTime = deal.getClose() != null ? deal.getClose() : deal.getEnd();
+        if (dealStartTime == null || dealEndTime == null) {
+            dealStartTime = restaurant.getOpen();
+            dealEndTime = restaurant.getClose();
+        }
+
+        int restOpenMin = toMinuteOfDay(restaurant.getOpen());
+        int restCloseMin = toMinuteOfDay(restaurant.getClose());
+        int dealStartMin = toMinuteOfDay(dealStartTime);
+        int dealEndMin = toMinuteOfDay(dealEndTime);
+
+        // Not handling overnight hours i-e restaurant/deal finishes next day
+        if (dealStartMin > restCloseMin || dealEndMin < restOpenMin) {
+            return;
+        }
+
+        // Adjust for restaurant hours
+        dealStartMin = Math.max(dealStartMin, restOpenMin);
+        dealEndMin = Math.min(dealEndMin, restCloseMin);
+        if (dealStartMin <= dealEndMin) {
+            startMinutes[id] = dealStartMin;
+            endMinutes[id] = dealEndMin;
+        }
+    }
+
+    /**
+     * Ascending local ids of the deals active at {@code minute}.
+     */
+    int[] dealIdsAt(int minute) {
+        return minuteTable != null ? minuteTable.dealIdsAt(minute) : intervalIndex.stab(minute);
+    }
+
+    /**
+     * Ascending local ids of the deals active at any point of {@code [from, to]}.
+     */
+    int[] dealIdsOverlapping(int from, int to) {
+        return intervalIndex.overlapping(from, to);
+    }
+
+    /**
+     * Number of this segment's deals active at each minute of the day.
+     */
+    int[] minuteCounts() {
+        return PeakTimeEngine.minuteCounts(toArray(startMinutes), toArray(endMinutes));
+    }
+
+    int size() {
+        return startMinutes.limit();
+    }
+
+    int startMinute(int id) {
+        return startMinutes.get(id);
+    }
+
+    int endMinute(int id) {
+        return endMinutes.get(id);
+    }
+
+    /**
+     * Columns of this segment's deals, by local id.
+     */
+    DealColumns columns() {
+        return columns;
+    }
+
+    /**
+     * Bitset of the local ids in {@code slotIds} that match {@code filter}, computed as the AND
+     * of the filter's bitsets with the bitset of the slot.
+     */
+    BitSet matching(int[] slotIds, DealFilter filter) {
+        if (slotIds.length == 0) {
+            return new BitSet();
+        }
+        BitSet slot = new BitSet(size());
+        for (int id : slotIds) {
+            slot.set(id);
+        }
+        BitSet matching = filterIndex.matching(filter);
+        matching.and(slot);
+        return matching;
+    }
+
+    /**
+     * New bitset of the local ids of every deal matching {@code filter}.
+     */
+    BitSet matching(DealFilter filter) {
+        return filterIndex.matching(filter);
+    }
+
+    /**
+     * In-stock deals active at each minute, best discount first.
+     */
+    RankedDealTable rankedTable() {
+        return rankedTable;
+    }
+
+    long rankedTableFootprintBytes() {
+        return rankedTable.footprintBytes();
+    }
+
+    long filterIndexFootprintBytes() {
+        return filterIndex.footprintBytes();
+    }
+
+    boolean hasMinuteTable() {
+        return minuteTable != null;
+    }
+
+    long minuteTableFootprintBytes() {
+        return minuteTable != null ? minuteTable.footprintBytes() : 0;
+    }
+}
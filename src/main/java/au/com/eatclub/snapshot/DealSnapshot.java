@@ -0,0 +1,771 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.ActiveDeal;
+import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.DealPeakTime;
+import au.com.eatclub.model.Restaurant;
+import au.com.eatclub.serialization.TimeOfDayParser;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable, query-ready view of one version of the restaurant feed.
+ *
+ * <p>Every deal is flattened into a dense id (in feed order) and its effective active window is
+ * resolved once into primitive start/end minute columns when the snapshot is built:
+ * <ul>
+ *   <li>deal {@code open}/{@code close} take precedence over {@code start}/{@code end}</li>
+ *   <li>if either bound is missing, the restaurant's operating hours are used</li>
+ *   <li>the window is clamped to the restaurant's operating hours</li>
+ * </ul>
+ * Deals whose window does not overlap the operating hours (or whose restaurant has no hours) can
+ * never be active and are left out of the indexes. Overnight hours are not handled.
+ *
+ * <p>The attributes returned to clients are copied into {@link DealColumns}, so the snapshot
+ * keeps no reference to the feed's objects beyond the feed list itself (for
+ * {@link #isBuiltFrom(List)} and {@link #refresh(List)}), and {@link ActiveDeal}s are only
+ * created for query results. A {@link MappedFeed} already holds those columns and the effective
+ * windows, so a snapshot of one reads them in place instead; only the indexes are built.
+ *
+ * <p>Queries can be narrowed with a {@link DealFilter}, answered by ANDing the time slot's ids,
+ * as a bitset, with the per-value bitsets of each segment's {@link DealFilterIndex}.
+ *
+ * <p>The best in-stock deals at a time are read from each segment's {@link RankedDealTable}, in
+ * discount order, without ranking every active deal.
+ *
+ * <p>Point lookups are answered from a {@link MinuteDealTable} when its footprint fits the
+ * {@value #MINUTE_TABLE_MAX_BYTES_ENV} budget (64 MiB by default), and from the
+ * {@link DealIntervalIndex} otherwise.
+ *
+ * <p>A snapshot is made of a large base {@link DealSegment} and a small delta segment.
+ * {@link #refresh(List)} diffs a new feed against this one by restaurant and deal
+ * {@code objectId}: unchanged deals keep their ids in the base, removed or changed base deals are
+ * marked as removed, and new or changed deals go into a freshly built delta (ids after the base).
+ * The per-minute counts are patched with the removed and inserted windows only, so a refresh
+ * costs one hashing pass over the feed plus index work proportional to the churn. Once the delta
+ * or the removed deals outgrow a fraction of the base, the next refresh rebuilds from scratch,
+ * which also restores feed order for results.
+ *
+ * <p>Each snapshot gets a process-wide, strictly increasing {@linkplain #version() version}, so
+ * anything derived from a snapshot can be cached against it.
+ */
+@Immutable
+public final class DealSnapshot {
+    public static final int MINUTES_IN_HOUR = 60;
+    public static final int DAY_TOTAL_MINUTES = 24 * MINUTES_IN_HOUR;
+    public static final int INACTIVE = -1;
+    private static final int SECONDS_IN_MINUTE = 60;
+    public static final String MINUTE_TABLE_MAX_BYTES_ENV = "MINUTE_TABLE_MAX_BYTES";
+    static final long DEFAULT_MINUTE_TABLE_MAX_BYTES = 64L * 1024 * 1024;
+    /**
+     * Never used by a snapshot; stands for "no snapshot" wherever a version is expected.
+     */
+    public static final long NO_VERSION = 0;
+
+    // The delta may hold up to max(MIN_DELTA_DEALS, base / DELTA_RATIO) deals, and as many base
+    // deals may be removed, before a refresh rebuilds from scratch
+    static final int MIN_DELTA_DEALS = 1024;
+    private static final int DELTA_RATIO = 8;
+
+    private static final AtomicLong VERSIONS = new AtomicLong(NO_VERSION);
+
+    private final long version = VERSIONS.incrementAndGet();
+    private final List<Restaurant> source;
+    private final long minuteTableMaxBytes;
+    private final DealSegment base;
+    // Base ids of deals that have since been removed or changed
+    private final BitSet removed;
+    private final int removedCount;
+    // Ids base.size() + i
+    private final DealSegment delta;
+    // Feed restaurants and their deal ids by restaurant objectId, or null if the ids are not unique
+    private final Map<String, FeedEntry> entries;
+    private final int[] minuteCounts;
+    private final OccupancyProfile occupancy;
+    private final boolean incremental;
+    private final int insertedDealCount;
+    private final int removedDealCount;
+
+    private DealSnapshot(List<Restaurant> source, long minuteTableMaxBytes, DealSegment base, BitSet removed,
+                         int removedCount, DealSegment delta, Map<String, FeedEntry> entries, int[] minuteCounts,
+                         boolean incremental, int insertedDealCount, int removedDealCount) {
+        this.source = source;
+        this.minuteTableMaxBytes = minuteTableMaxBytes;
+        this.base = base;
+        this.removed = removed;
+        this.removedCount = removedCount;
+        this.delta = delta;
+        this.entries = entries;
+        this.minuteCounts = minuteCounts;
+        this.occupancy = new OccupancyProfile(minuteCounts);
+        this.incremental = incremental;
+        this.insertedDealCount = insertedDealCount;
+        this.removedDealCount = removedDealCount;
+    }
+
+    /**
+     * Builds a snapshot from the restaurants returned by the repository.
+     */
+    public static DealSnapshot of(List<Restaurant> source) {
+        return of(source, minuteTableMaxBytesFromEnvironment());
+    }
+
+    /**
+     * Builds a snapshot, only precomputing the per-minute table if it fits in
+     * {@code minuteTableMaxBytes}.
+     */
+    public static DealSnapshot of(List<Restaurant> source, long minuteTableMaxBytes) {
+        if (source instanceof MappedFeed) {
+            // No feed objects to diff against, so the first refresh rebuilds from scratch
+            DealSegment base = ((MappedFeed) source).segment(minuteTableMaxBytes);
+            return new DealSnapshot(source, minuteTableMaxBytes, base, new BitSet(), 0, DealSegment.EMPTY, null,
+                    base.minuteCounts(), false, base.size(), 0);
+        }
+        List<Restaurant> dealRestaurants = new ArrayList<>();
+        List<List<Deal>> deals = new ArrayList<>();
+        Map<String, FeedEntry> entries = new HashMap<>();
+        int nextId = 0;
+        for (Restaurant restaurant : source) {
+            List<Deal> restaurantDeals = dealsOf(restaurant);
+            int[] ids = new int[restaurantDeals.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = nextId++;
+            }
+            if (restaurant.getDeals() != null) {
+                dealRestaurants.add(restaurant);
+                deals.add(restaurantDeals);
+            }
+            if (entries != null && (restaurant.getObjectId() == null
+                    || entries.putIfAbsent(restaurant.getObjectId(), new FeedEntry(restaurant, ids)) != null)) {
+                // Without unique restaurant ids the feed cannot be diffed, so every refresh rebuilds
+                entries = null;
+            }
+        }
+
+        DealSegment base = DealSegment.build(dealRestaurants, deals, minuteTableMaxBytes);
+        return new DealSnapshot(source, minuteTableMaxBytes, base, new BitSet(), 0, DealSegment.EMPTY, entries,
+                base.minuteCounts(), false, base.size(), 0);
+    }
+
+    /**
+     * Snapshot of {@code next}, derived from this one by applying only the inserted, removed and
+     * changed deals, or rebuilt from scratch when that is not possible or no longer worthwhile.
+     */
+    public DealSnapshot refresh(List<Restaurant> next) {
+        if (entries != null && !(next instanceof MappedFeed)) {
+            DealSnapshot refreshed = new Refresh().apply(next);
+            if (refreshed != null) {
+                return refreshed;
+            }
+        }
+        return of(next, minuteTableMaxBytes);
+    }
+
+    private static long minuteTableMaxBytesFromEnvironment() {
+        String maxBytes = System.getenv(MINUTE_TABLE_MAX_BYTES_ENV);
+        if (maxBytes == null || maxBytes.isBlank()) {
+            return DEFAULT_MINUTE_TABLE_MAX_BYTES;
+        }
+        try {
+            return Long.parseLong(maxBytes.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + MINUTE_TABLE_MAX_BYTES_ENV + ": " + maxBytes, e);
+        }
+    }
+
+    private static List<Deal> dealsOf(Restaurant restaurant) {
+        return restaurant.getDeals() != null ? restaurant.getDeals() : Collections.emptyList();
+    }
+
+    public static int toMinuteOfDay(LocalTime time) {
+        return time.getHour() * MINUTES_IN_HOUR + time.getMinute();
+    }
+
+    /**
+     * Version of this snapshot; later snapshots have higher versions.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Whether this snapshot was built from exactly this feed instance.
+     */
+    public boolean isBuiltFrom(List<Restaurant> restaurants) {
+        return source == restaurants;
+    }
+
+    /**
+     * Returns the ids of all deals active at {@code time}, in ascending id order. Both ends of a
+     * deal's window are inclusive; a time between two whole minutes is only covered if the window
+     * extends past it.
+     */
+    public int[] activeDealIdsAt(LocalTime time) {
+        return activeDealIdsAt(time, DealFilter.NONE);
+    }
+
+    /**
+     * Same as {@link #activeDealIdsAt(LocalTime)}, keeping only the deals matching
+     * {@code filter}.
+     */
+    public int[] activeDealIdsAt(LocalTime time, DealFilter filter) {
+        int minute = toMinuteOfDay(time);
+        int[] ids = combine(base.dealIdsAt(minute), delta.dealIdsAt(minute), filter);
+        if (time.getSecond() == 0 && time.getNano() == 0) {
+            return ids;
+        }
+
+        int count = 0;
+        for (int id : ids) {
+            if (endMinute(id) > minute) {
+                ids[count++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Returns the ids of all deals active at any point of the inclusive window
+     * {@code [from, to]}, in ascending id order. Both bounds are truncated to whole minutes.
+     *
+     * @throws IllegalArgumentException if {@code from} is after {@code to}
+     */
+    public int[] activeDealIdsBetween(LocalTime from, LocalTime to) {
+        return activeDealIdsBetween(from, to, DealFilter.NONE);
+    }
+
+    /**
+     * Same as {@link #activeDealIdsBetween(LocalTime, LocalTime)}, keeping only the deals
+     * matching {@code filter}.
+     */
+    public int[] activeDealIdsBetween(LocalTime from, LocalTime to, DealFilter filter) {
+        int fromMinute = toMinuteOfDay(from);
+        int toMinute = toMinuteOfDay(to);
+        return combine(base.dealIdsOverlapping(fromMinute, toMinute), delta.dealIdsOverlapping(fromMinute, toMinute),
+                filter);
+    }
+
+    /**
+     * Live base ids followed by the delta ids matching {@code filter}, both given as ascending
+     * local ids. With a filter, each segment's ids are intersected with its filter bitsets (and
+     * the base's with the complement of the removed ids) word by word.
+     */
+    private int[] combine(int[] baseIds, int[] deltaIds, DealFilter filter) {
+        if (filter.isEmpty()) {
+            return combine(baseIds, deltaIds);
+        }
+        BitSet baseMatches = base.matching(baseIds, filter);
+        baseMatches.andNot(removed);
+        BitSet deltaMatches = delta.matching(deltaIds, filter);
+
+        int[] ids = new int[baseMatches.cardinality() + deltaMatches.cardinality()];
+        int count = 0;
+        for (int id = baseMatches.nextSetBit(0); id >= 0; id = baseMatches.nextSetBit(id + 1)) {
+            ids[count++] = id;
+        }
+        for (int id = deltaMatches.nextSetBit(0); id >= 0; id = deltaMatches.nextSetBit(id + 1)) {
+            ids[count++] = base.size() + id;
+        }
+        return ids;
+    }
+
+    private int[] combine(int[] baseIds, int[] deltaIds) {
+        if (removedCount == 0 && deltaIds.length == 0) {
+            return baseIds;
+        }
+        int[] ids = new int[baseIds.length + deltaIds.length];
+        int count = 0;
+        for (int id : baseIds) {
+            if (!removed.get(id)) {
+                ids[count++] = id;
+            }
+        }
+        for (int id : deltaIds) {
+            ids[count++] = base.size() + id;
+        }
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Returns the ids of up to {@code limit} in-stock ({@code qtyLeft > 0}) deals active at
+     * {@code time} and matching {@code filter}, best first: highest discount, deals with an
+     * unknown discount last, ties in ascending id order.
+     *
+     * <p>The base and delta segments' {@link RankedDealTable} slices for the minute are merged,
+     * so the cost grows with {@code limit} (plus removed or filtered-out deals skipped on the
+     * way), not with the number of active deals. Only if {@code limit} exceeds
+     * {@link RankedDealTable#DEPTH} or a cut-short slice runs out are all matching active deals
+     * ranked instead.
+     *
+     * @throws IllegalArgumentException if {@code limit} is not positive
+     */
+    public int[] bestDealIdsAt(LocalTime time, int limit, DealFilter filter) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        if (limit > RankedDealTable.DEPTH) {
+            return rankActiveDeals(time, limit, filter);
+        }
+        int minute = toMinuteOfDay(time);
+        boolean betweenMinutes = time.getSecond() != 0 || time.getNano() != 0;
+        BitSet baseMatches = filter.isEmpty() ? null : base.matching(filter);
+        BitSet deltaMatches = filter.isEmpty() ? null : delta.matching(filter);
+        RankedDealTable baseRanked = base.rankedTable();
+        RankedDealTable deltaRanked = delta.rankedTable();
+        int baseIndex = baseRanked.start(minute);
+        int baseEnd = baseRanked.end(minute);
+        int deltaIndex = deltaRanked.start(minute);
+        int deltaEnd = deltaRanked.end(minute);
+
+        int[] ids = new int[limit];
+        int count = 0;
+        while (count < limit) {
+            while (baseIndex < baseEnd && !isCandidate(base, baseRanked.dealId(baseIndex), removed, baseMatches,
+                    minute, betweenMinutes)) {
+                baseIndex++;
+            }
+            while (deltaIndex < deltaEnd && !isCandidate(delta, deltaRanked.dealId(deltaIndex), null, deltaMatches,
+                    minute, betweenMinutes)) {
+                deltaIndex++;
+            }
+            if (baseIndex == baseEnd && baseRanked.isTruncated(minute)
+                    || deltaIndex == deltaEnd && deltaRanked.isTruncated(minute)) {
+                // Deals ranked past the end of the slice may still belong in the result
+                return rankActiveDeals(time, limit, filter);
+            }
+            if (baseIndex == baseEnd && deltaIndex == deltaEnd) {
+                break;
+            }
+            // On equal discounts the base deal has the lower id
+            if (deltaIndex == deltaEnd || baseIndex < baseEnd
+                    && base.columns().discount(baseRanked.dealId(baseIndex))
+                    >= delta.columns().discount(deltaRanked.dealId(deltaIndex))) {
+                ids[count++] = baseRanked.dealId(baseIndex++);
+            } else {
+                ids[count++] = base.size() + deltaRanked.dealId(deltaIndex++);
+            }
+        }
+        return count == limit ? ids : Arrays.copyOf(ids, count);
+    }
+
+    private static boolean isCandidate(DealSegment segment, int id, BitSet removed, BitSet matches, int minute,
+                                       boolean betweenMinutes) {
+        return (removed == null || !removed.get(id))
+                && (matches == null || matches.get(id))
+                && (!betweenMinutes || segment.endMinute(id) > minute);
+    }
+
+    /**
+     * {@link #bestDealIdsAt} by ranking every matching active deal.
+     */
+    private int[] rankActiveDeals(LocalTime time, int limit, DealFilter filter) {
+        int[] activeIds = activeDealIdsAt(time, filter);
+        long[] ranked = new long[activeIds.length];
+        int eligible = 0;
+        for (int id : activeIds) {
+            if (qtyLeft(id) > 0) {
+                ranked[eligible++] = RankedDealTable.rankKey(discount(id), id);
+            }
+        }
+        Arrays.sort(ranked, 0, eligible);
+        int[] ids = new int[Math.min(limit, eligible)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = RankedDealTable.idOf(ranked[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * Peak time ranges at the given resolution, either {@link ChronoUnit#MINUTES} (served from the
+     * occupancy computed when the snapshot was built) or {@link ChronoUnit#SECONDS}.
+     */
+    public List<DealPeakTime> peakTimes(ChronoUnit resolution) {
+        switch (resolution) {
+            case MINUTES:
+                return PeakTimeEngine.peakRanges(minuteCounts);
+            case SECONDS:
+                int ids = base.size() + delta.size();
+                int[] startSeconds = new int[ids];
+                int[] endSeconds = new int[ids];
+                for (int id = 0; id < ids; id++) {
+                    int start = startMinute(id);
+                    int end = endMinute(id);
+                    startSeconds[id] = start < 0 ? INACTIVE : start * SECONDS_IN_MINUTE;
+                    endSeconds[id] = end < 0 ? INACTIVE : end * SECONDS_IN_MINUTE;
+                }
+                return PeakTimeEngine.peakRangesBySecond(startSeconds, endSeconds);
+            default:
+                throw new IllegalArgumentException("Unsupported peak time resolution: " + resolution);
+        }
+    }
+
+    /**
+     * Occupancy curve, top windows and threshold windows, derived once from the per-minute counts
+     * computed when the snapshot was built.
+     */
+    public OccupancyProfile occupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Whether point lookups of the base deals are served from the precomputed per-minute table.
+     */
+    public boolean hasMinuteTable() {
+        return base.hasMinuteTable();
+    }
+
+    /**
+     * Approximate heap footprint of the per-minute tables in bytes, or 0 if none was built.
+     */
+    public long minuteTableFootprintBytes() {
+        return base.minuteTableFootprintBytes() + delta.minuteTableFootprintBytes();
+    }
+
+    /**
+     * Approximate heap footprint of the deal columns and their string dictionaries in bytes.
+     */
+    public long columnFootprintBytes() {
+        return base.columns().footprintBytes() + delta.columns().footprintBytes();
+    }
+
+    /**
+     * Approximate heap footprint of the ranked best-deal tables in bytes.
+     */
+    public long rankedTableFootprintBytes() {
+        return base.rankedTableFootprintBytes() + delta.rankedTableFootprintBytes();
+    }
+
+    /**
+     * Approximate heap footprint of the suburb, cuisine, dine-in and lightning bitsets in bytes.
+     */
+    public long filterIndexFootprintBytes() {
+        return base.filterIndexFootprintBytes() + delta.filterIndexFootprintBytes();
+    }
+
+    /**
+     * Number of deals in the feed this snapshot was built from.
+     */
+    public int dealCount() {
+        return base.size() - removedCount + delta.size();
+    }
+
+    /**
+     * Whether this snapshot was derived from a previous one rather than rebuilt from scratch.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Deals inserted (new or changed) by the refresh that produced this snapshot, or every deal
+     * if it was rebuilt from scratch.
+     */
+    public int insertedDealCount() {
+        return insertedDealCount;
+    }
+
+    /**
+     * Deals removed (deleted or changed) by the refresh that produced this snapshot.
+     */
+    public int removedDealCount() {
+        return removedDealCount;
+    }
+
+    /**
+     * Materialises the client view of deal {@code dealId}.
+     */
+    public ActiveDeal activeDeal(int dealId) {
+        return dealId < base.size()
+                ? base.columns().activeDeal(dealId)
+                : delta.columns().activeDeal(dealId - base.size());
+    }
+
+    /**
+     * Materialises the client view of each of {@code dealIds}, in order.
+     */
+    public List<ActiveDeal> activeDeals(int[] dealIds) {
+        List<ActiveDeal> activeDeals = new ArrayList<>(dealIds.length);
+        for (int dealId : dealIds) {
+            activeDeals.add(activeDeal(dealId));
+        }
+        return activeDeals;
+    }
+
+    /**
+     * Same as {@link #activeDeals(int[])}, with each deal's effective active window set as
+     * {@code activeFrom}/{@code activeTo}.
+     */
+    public List<ActiveDeal> activeDealsWithWindows(int[] dealIds) {
+        List<ActiveDeal> activeDeals = new ArrayList<>(dealIds.length);
+        for (int dealId : dealIds) {
+            ActiveDeal activeDeal = activeDeal(dealId);
+            activeDeal.setActiveFrom(TimeOfDayParser.toLocalTime(startMinute(dealId)));
+            activeDeal.setActiveTo(TimeOfDayParser.toLocalTime(endMinute(dealId)));
+            activeDeals.add(activeDeal);
+        }
+        return activeDeals;
+    }
+
+    /**
+     * Writes deal {@code dealId} as the JSON object {@link #activeDeal(int)} serializes to,
+     * with its effective active window if {@code withWindow} is set.
+     */
+    public void writeActiveDeal(int dealId, boolean withWindow, JsonGenerator generator) throws IOException {
+        int activeFrom = withWindow ? startMinute(dealId) : INACTIVE;
+        int activeTo = withWindow ? endMinute(dealId) : INACTIVE;
+        if (dealId < base.size()) {
+            base.columns().writeActiveDeal(dealId, activeFrom, activeTo, generator);
+        } else {
+            delta.columns().writeActiveDeal(dealId - base.size(), activeFrom, activeTo, generator);
+        }
+    }
+
+    /**
+     * Discount of the deal parsed as a whole number, or {@link DealColumns#UNKNOWN}.
+     */
+    public int discount(int dealId) {
+        return dealId < base.size()
+                ? base.columns().discount(dealId)
+                : delta.columns().discount(dealId - base.size());
+    }
+
+    /**
+     * Quantity left of the deal parsed as a whole number, or {@link DealColumns#UNKNOWN}.
+     */
+    public int qtyLeft(int dealId) {
+        return dealId < base.size()
+                ? base.columns().qtyLeft(dealId)
+                : delta.columns().qtyLeft(dealId - base.size());
+    }
+
+    /**
+     * Effective start minute of the deal, or {@link #INACTIVE} if it is never active.
+     */
+    public int startMinute(int dealId) {
+        if (dealId < base.size()) {
+            return removed.get(dealId) ? INACTIVE : base.startMinute(dealId);
+        }
+        return delta.startMinute(dealId - base.size());
+    }
+
+    /**
+     * Effective (inclusive) end minute of the deal, or {@link #INACTIVE} if it is never active.
+     */
+    public int endMinute(int dealId) {
+        if (dealId < base.size()) {
+            return removed.get(dealId) ? INACTIVE : base.endMinute(dealId);
+        }
+        return delta.endMinute(dealId - base.size());
+    }
+
+    /**
+     * A feed restaurant and the ids of its deals, in feed order.
+     */
+    private static final class FeedEntry {
+        private final Restaurant restaurant;
+        private final int[] dealIds;
+
+        private FeedEntry(Restaurant restaurant, int[] dealIds) {
+            this.restaurant = restaurant;
+            this.dealIds = dealIds;
+        }
+    }
+
+    /**
+     * Diff of a new feed against this snapshot, collecting the delta segment, the removed base
+     * ids and the changes to the per-minute counts.
+     */
+    private final class Refresh {
+        private final BitSet nextRemoved = (BitSet) removed.clone();
+        private int nextRemovedCount = removedCount;
+        private final int[] countChanges = new int[DAY_TOTAL_MINUTES + 1];
+        private final Map<String, FeedEntry> nextEntries = new HashMap<>();
+        private final List<Restaurant> deltaRestaurants = new ArrayList<>();
+        private final List<List<Deal>> deltaDeals = new ArrayList<>();
+        private final BitSet insertedDeltaIds = new BitSet();
+        private int deltaSize;
+        private int inserted;
+        private int dropped;
+
+        /**
+         * Returns the refreshed snapshot, or {@code null} if it has to be rebuilt from scratch.
+         */
+        private DealSnapshot apply(List<Restaurant> next) {
+            for (Restaurant restaurant : next) {
+                String objectId = restaurant.getObjectId();
+                if (objectId == null || nextEntries.containsKey(objectId)) {
+                    return null;
+                }
+                FeedEntry previous = entries.get(objectId);
+                int[] ids;
+                if (previous == null) {
+                    ids = insertAll(restaurant);
+                } else if (previous.restaurant.equals(restaurant)) {
+                    ids = keepAll(restaurant, previous.dealIds);
+                } else if (sameRestaurantFields(previous.restaurant, restaurant)
+                        && hasUniqueDealIds(previous.restaurant) && hasUniqueDealIds(restaurant)) {
+                    ids = diffDeals(previous, restaurant);
+                } else {
+                    removeAll(previous.dealIds);
+                    ids = insertAll(restaurant);
+                }
+                nextEntries.put(objectId, new FeedEntry(restaurant, ids));
+            }
+            for (Map.Entry<String, FeedEntry> entry : entries.entrySet()) {
+                if (!nextEntries.containsKey(entry.getKey())) {
+                    removeAll(entry.getValue().dealIds);
+                }
+            }
+
+            int limit = Math.max(MIN_DELTA_DEALS, base.size() / DELTA_RATIO);
+            if (deltaSize > limit || nextRemovedCount > limit) {
+                return null;
+            }
+
+            long deltaTableBytes = Math.max(0, minuteTableMaxBytes - base.minuteTableFootprintBytes());
+            DealSegment nextDelta = DealSegment.build(deltaRestaurants, deltaDeals, deltaTableBytes);
+            for (int id = insertedDeltaIds.nextSetBit(0); id >= 0; id = insertedDeltaIds.nextSetBit(id + 1)) {
+                changeCount(nextDelta.startMinute(id), nextDelta.endMinute(id), 1);
+            }
+
+            int[] nextMinuteCounts = minuteCounts.clone();
+            int running = 0;
+            for (int minute = 0; minute < DAY_TOTAL_MINUTES; minute++) {
+                running += countChanges[minute];
+                nextMinuteCounts[minute] += running;
+            }
+            return new DealSnapshot(next, minuteTableMaxBytes, base, nextRemoved, nextRemovedCount, nextDelta,
+                    nextEntries, nextMinuteCounts, true, inserted, dropped);
+        }
+
+        private int[] insertAll(Restaurant restaurant) {
+            List<Deal> deals = dealsOf(restaurant);
+            int[] ids = new int[deals.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = addToDelta(restaurant, deals.get(i), true);
+            }
+            return ids;
+        }
+
+        /**
+         * Unchanged restaurant: base deals keep their ids, delta deals move to the new delta.
+         */
+        private int[] keepAll(Restaurant restaurant, int[] previousIds) {
+            List<Deal> deals = dealsOf(restaurant);
+            int[] ids = new int[previousIds.length];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = keep(restaurant, deals.get(i), previousIds[i]);
+            }
+            return ids;
+        }
+
+        /**
+         * Changed deals only: deals equal to the previous deal with the same objectId are kept,
+         * all others are removed or inserted.
+         */
+        private int[] diffDeals(FeedEntry previous, Restaurant restaurant) {
+            List<Deal> previousDeals = dealsOf(previous.restaurant);
+            Map<String, Integer> previousIndexes = new HashMap<>();
+            for (int i = 0; i < previousDeals.size(); i++) {
+                previousIndexes.put(previousDeals.get(i).getObjectId(), i);
+            }
+
+            List<Deal> deals = dealsOf(restaurant);
+            boolean[] kept = new boolean[previousDeals.size()];
+            int[] ids = new int[deals.size()];
+            for (int i = 0; i < ids.length; i++) {
+                Deal deal = deals.get(i);
+                Integer previousIndex = previousIndexes.get(deal.getObjectId());
+                if (previousIndex != null && previousDeals.get(previousIndex).equals(deal)) {
+                    kept[previousIndex] = true;
+                    ids[i] = keep(restaurant, deal, previous.dealIds[previousIndex]);
+                } else {
+                    ids[i] = addToDelta(restaurant, deal, true);
+                }
+            }
+            for (int i = 0; i < kept.length; i++) {
+                if (!kept[i]) {
+                    remove(previous.dealIds[i]);
+                }
+            }
+            return ids;
+        }
+
+        private int keep(Restaurant restaurant, Deal deal, int previousId) {
+            return previousId < base.size() ? previousId : addToDelta(restaurant, deal, false);
+        }
+
+        private int addToDelta(Restaurant restaurant, Deal deal, boolean insert) {
+            int last = deltaRestaurants.size() - 1;
+            if (last < 0 || deltaRestaurants.get(last) != restaurant) {
+                deltaRestaurants.add(restaurant);
+                deltaDeals.add(new ArrayList<>());
+                last++;
+            }
+            deltaDeals.get(last).add(deal);
+            if (insert) {
+                insertedDeltaIds.set(deltaSize);
+                inserted++;
+            }
+            return base.size() + deltaSize++;
+        }
+
+        private void removeAll(int[] ids) {
+            for (int id : ids) {
+                remove(id);
+            }
+        }
+
+        private void remove(int id) {
+            changeCount(startMinute(id), endMinute(id), -1);
+            if (id < base.size()) {
+                nextRemoved.set(id);
+                nextRemovedCount++;
+            }
+            dropped++;
+        }
+
+        private void changeCount(int start, int end, int change) {
+            if (start >= 0 && start <= end) {
+                countChanges[start] += change;
+                countChanges[end + 1] -= change;
+            }
+        }
+    }
+
+    private static boolean sameRestaurantFields(Restaurant previous, Restaurant next) {
+        return Objects.equals(previous.getObjectId(), next.getObjectId())
+                && Objects.equals(previous.getName(), next.getName())
+                && Objects.equals(previous.getAddress1(), next.getAddress1())
+                && Objects.equals(previous.getSuburb(), next.getSuburb())
+                && Objects.equals(previous.getCuisines(), next.getCuisines())
+                && Objects.equals(previous.getImageLink(), next.getImageLink())
+                && Objects.equals(previous.getOpen(), next.getOpen())
+                && Objects.equals(previous.getClose(), next.getClose());
+    }
+
+    private static boolean hasUniqueDealIds(Restaurant restaurant) {
+        List<Deal> deals = dealsOf(restaurant);
+        Map<String, Boolean> seen = new HashMap<>();
+        for (Deal deal : deals) {
+            if (deal.getObjectId() == null || seen.put(deal.getObjectId(), Boolean.TRUE) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
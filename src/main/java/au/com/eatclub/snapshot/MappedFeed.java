@@ -0,0 +1,454 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.Restaurant;
+
+import javax.annotation.concurrent.Immutable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Restaurant feed stored as columns in a buffer, typically a memory-mapped file, from which a
+ * {@link DealSnapshot} is built without creating {@link Restaurant} or {@link Deal} objects.
+ *
+ * <p>Besides the feed as received, the columns hold what the snapshot would otherwise derive from
+ * it: string codes into one string table, {@code discount}/{@code qtyLeft} parsed into ints,
+ * restaurant hours in minutes and each deal's effective start/end minute, resolved as in
+ * {@link DealSnapshot}. {@link DealSnapshot#of(List)} reads these in place through
+ * {@link IntBuffer} views as the snapshot's {@link DealColumns}, {@link StringDictionary} and
+ * windows, and only builds the indexes. As a list, restaurants are decoded on every
+ * {@link #get(int)}, for callers that need the feed itself; the snapshot never does so.
+ *
+ * <p>Layout, all little-endian, long columns 8-byte aligned and other sections 4-byte aligned:
+ * <pre>
+ * strings      int count, int offsets (count + 1) into the UTF-8 bytes, UTF-8 bytes
+ * restaurants  int count, then columns: string codes for objectId, name, address1, suburb,
+ *              imageLink; int open and close minute; int offsets (count + 1) into the cuisine
+ *              and deal columns; long nano-of-day open and close; byte flags
+ * cuisines     int count, string codes
+ * deals        int count, then columns: int restaurant index; string codes for objectId,
+ *              discount, qtyLeft; int parsed discount and qtyLeft; int effective start and end
+ *              minute; long nano-of-day open, close, start and end; byte flags
+ * </pre>
+ * Missing strings and times are stored as -1. Only absolute reads are made, so one instance can
+ * be shared by every thread.
+ */
+@Immutable
+public final class MappedFeed extends AbstractList<Restaurant> implements RandomAccess {
+    private static final int NONE = -1;
+    private static final byte DEALS_MISSING = 1;
+    private static final byte CUISINES_MISSING = 1 << 1;
+
+    private final StringDictionary strings;
+
+    // Restaurant columns, indexed by restaurant index
+    private final IntBuffer restaurantObjectIds;
+    private final IntBuffer restaurantNames;
+    private final IntBuffer restaurantAddresses;
+    private final IntBuffer restaurantSuburbs;
+    private final IntBuffer restaurantImageLinks;
+    private final IntBuffer restaurantOpenMinutes;
+    private final IntBuffer restaurantCloseMinutes;
+    private final IntBuffer cuisineOffsets;
+    private final IntBuffer dealOffsets;
+    private final LongBuffer restaurantOpens;
+    private final LongBuffer restaurantCloses;
+    private final ByteBuffer restaurantFlags;
+
+    private final IntBuffer cuisines;
+
+    // Deal columns, indexed by deal id
+    private final IntBuffer dealRestaurants;
+    private final IntBuffer dealObjectIds;
+    private final IntBuffer dealDiscounts;
+    private final IntBuffer dealQtyLeft;
+    private final IntBuffer dealDiscountValues;
+    private final IntBuffer dealQtyLeftValues;
+    private final IntBuffer dealStartMinutes;
+    private final IntBuffer dealEndMinutes;
+    private final LongBuffer dealOpens;
+    private final LongBuffer dealCloses;
+    private final LongBuffer dealStarts;
+    private final LongBuffer dealEnds;
+    private final ByteBuffer dealFlags;
+
+    private MappedFeed(ByteBuffer in) {
+        int stringCount = count(in);
+        IntBuffer stringOffsets = ints(in, stringCount + 1);
+        strings = StringDictionary.map(stringOffsets, bytes(in, stringOffsets.get(stringCount)));
+
+        int restaurantCount = count(in);
+        restaurantObjectIds = ints(in, restaurantCount);
+        restaurantNames = ints(in, restaurantCount);
+        restaurantAddresses = ints(in, restaurantCount);
+        restaurantSuburbs = ints(in, restaurantCount);
+        restaurantImageLinks = ints(in, restaurantCount);
+        restaurantOpenMinutes = ints(in, restaurantCount);
+        restaurantCloseMinutes = ints(in, restaurantCount);
+        cuisineOffsets = ints(in, restaurantCount + 1);
+        dealOffsets = ints(in, restaurantCount + 1);
+        restaurantOpens = longs(in, restaurantCount);
+        restaurantCloses = longs(in, restaurantCount);
+        restaurantFlags = bytes(in, restaurantCount);
+
+        cuisines = ints(in, count(in));
+
+        int dealCount = count(in);
+        dealRestaurants = ints(in, dealCount);
+        dealObjectIds = ints(in, dealCount);
+        dealDiscounts = ints(in, dealCount);
+        dealQtyLeft = ints(in, dealCount);
+        dealDiscountValues = ints(in, dealCount);
+        dealQtyLeftValues = ints(in, dealCount);
+        dealStartMinutes = ints(in, dealCount);
+        dealEndMinutes = ints(in, dealCount);
+        dealOpens = longs(in, dealCount);
+        dealCloses = longs(in, dealCount);
+        dealStarts = longs(in, dealCount);
+        dealEnds = longs(in, dealCount);
+        dealFlags = bytes(in, dealCount);
+        if (cuisineOffsets.get(restaurantCount) != cuisines.limit() || dealOffsets.get(restaurantCount) != dealCount) {
+            throw new IllegalArgumentException("Feed columns do not match their offsets");
+        }
+    }
+
+    /**
+     * Wraps the columns {@link #encode encoded} from {@code buffer}'s position to its limit,
+     * without copying them. The buffer must not change afterwards.
+     *
+     * @throws IllegalArgumentException if the columns are truncated or inconsistent
+     */
+    public static MappedFeed map(ByteBuffer buffer) {
+        return new MappedFeed(buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * Encodes {@code restaurants} into the layout read by {@link #map(ByteBuffer)}.
+     */
+    public static byte[] encode(List<Restaurant> restaurants) {
+        StringDictionary.Builder strings = new StringDictionary.Builder();
+        int restaurantCount = restaurants.size();
+        int cuisineCount = 0;
+        int dealCount = 0;
+        for (Restaurant restaurant : restaurants) {
+            cuisineCount += restaurant.getCuisines() != null ? restaurant.getCuisines().size() : 0;
+            dealCount += restaurant.getDeals() != null ? restaurant.getDeals().size() : 0;
+        }
+
+        int[] restaurantObjectIds = new int[restaurantCount];
+        int[] restaurantNames = new int[restaurantCount];
+        int[] restaurantAddresses = new int[restaurantCount];
+        int[] restaurantSuburbs = new int[restaurantCount];
+        int[] restaurantImageLinks = new int[restaurantCount];
+        int[] restaurantOpenMinutes = new int[restaurantCount];
+        int[] restaurantCloseMinutes = new int[restaurantCount];
+        int[] cuisineOffsets = new int[restaurantCount + 1];
+        int[] dealOffsets = new int[restaurantCount + 1];
+        long[] restaurantOpens = new long[restaurantCount];
+        long[] restaurantCloses = new long[restaurantCount];
+        byte[] restaurantFlags = new byte[restaurantCount];
+        int[] cuisines = new int[cuisineCount];
+        int[] dealRestaurants = new int[dealCount];
+        int[] dealObjectIds = new int[dealCount];
+        int[] dealDiscounts = new int[dealCount];
+        int[] dealQtyLeft = new int[dealCount];
+        int[] dealDiscountValues = new int[dealCount];
+        int[] dealQtyLeftValues = new int[dealCount];
+        int[] dealStartMinutes = new int[dealCount];
+        int[] dealEndMinutes = new int[dealCount];
+        long[] dealOpens = new long[dealCount];
+        long[] dealCloses = new long[dealCount];
+        long[] dealStarts = new long[dealCount];
+        long[] dealEnds = new long[dealCount];
+        byte[] dealFlags = new byte[dealCount];
+
+        int cuisine = 0;
+        int id = 0;
+        for (int r = 0; r < restaurantCount; r++) {
+            Restaurant restaurant = restaurants.get(r);
+            restaurantObjectIds[r] = strings.encode(restaurant.getObjectId());
+            restaurantNames[r] = strings.encode(restaurant.getName());
+            restaurantAddresses[r] = strings.encode(restaurant.getAddress1());
+            restaurantSuburbs[r] = strings.encode(restaurant.getSuburb());
+            restaurantImageLinks[r] = strings.encode(restaurant.getImageLink());
+            restaurantOpenMinutes[r] = DealColumns.toMinuteOfDay(restaurant.getOpen());
+            restaurantCloseMinutes[r] = DealColumns.toMinuteOfDay(restaurant.getClose());
+            restaurantOpens[r] = nanoOfDay(restaurant.getOpen());
+            restaurantCloses[r] = nanoOfDay(restaurant.getClose());
+            if (restaurant.getCuisines() == null) {
+                restaurantFlags[r] |= CUISINES_MISSING;
+            } else {
+                for (String name : restaurant.getCuisines()) {
+                    cuisines[cuisine++] = strings.encode(name);
+                }
+            }
+            if (restaurant.getDeals() == null) {
+                restaurantFlags[r] |= DEALS_MISSING;
+            } else {
+                for (Deal deal : restaurant.getDeals()) {
+                    dealRestaurants[id] = r;
+                    dealObjectIds[id] = strings.encode(deal.getObjectId());
+                    dealDiscounts[id] = strings.encode(deal.getDiscount());
+                    dealQtyLeft[id] = strings.encode(deal.getQtyLeft());
+                    dealDiscountValues[id] = DealColumns.parseWholeNumber(deal.getDiscount());
+                    dealQtyLeftValues[id] = DealColumns.parseWholeNumber(deal.getQtyLeft());
+                    DealSegment.resolveActiveWindow(restaurant, deal, dealStartMinutes, dealEndMinutes, id);
+                    dealOpens[id] = nanoOfDay(deal.getOpen());
+                    dealCloses[id] = nanoOfDay(deal.getClose());
+                    dealStarts[id] = nanoOfDay(deal.getStart());
+                    dealEnds[id] = nanoOfDay(deal.getEnd());
+                    dealFlags[id] = DealColumns.flags(deal);
+                    id++;
+                }
+            }
+            cuisineOffsets[r + 1] = cuisine;
+            dealOffsets[r + 1] = id;
+        }
+
+        StringDictionary dictionary = strings.build();
+        byte[][] utf8 = new byte[dictionary.size()][];
+        int[] stringOffsets = new int[utf8.length + 1];
+        for (int i = 0; i < utf8.length; i++) {
+            utf8[i] = dictionary.decode(i).getBytes(StandardCharsets.UTF_8);
+            stringOffsets[i + 1] = stringOffsets[i] + utf8[i].length;
+        }
+
+        Writer out = new Writer();
+        out.putInt(utf8.length);
+        out.putInts(stringOffsets);
+        for (byte[] value : utf8) {
+            out.putBytes(value);
+        }
+        out.align(Integer.BYTES);
+
+        out.putInt(restaurantCount);
+        out.putInts(restaurantObjectIds);
+        out.putInts(restaurantNames);
+        out.putInts(restaurantAddresses);
+        out.putInts(restaurantSuburbs);
+        out.putInts(restaurantImageLinks);
+        out.putInts(restaurantOpenMinutes);
+        out.putInts(restaurantCloseMinutes);
+        out.putInts(cuisineOffsets);
+        out.putInts(dealOffsets);
+        out.putLongs(restaurantOpens);
+        out.putLongs(restaurantCloses);
+        out.putBytes(restaurantFlags);
+        out.align(Integer.BYTES);
+
+        out.putInt(cuisineCount);
+        out.putInts(cuisines);
+
+        out.putInt(dealCount);
+        out.putInts(dealRestaurants);
+        out.putInts(dealObjectIds);
+        out.putInts(dealDiscounts);
+        out.putInts(dealQtyLeft);
+        out.putInts(dealDiscountValues);
+        out.putInts(dealQtyLeftValues);
+        out.putInts(dealStartMinutes);
+        out.putInts(dealEndMinutes);
+        out.putLongs(dealOpens);
+        out.putLongs(dealCloses);
+        out.putLongs(dealStarts);
+        out.putLongs(dealEnds);
+        out.putBytes(dealFlags);
+        out.align(Integer.BYTES);
+        return out.toByteArray();
+    }
+
+    /**
+     * Segment over the mapped columns and windows, with the filter bitsets built from the mapped
+     * suburbs and cuisines. The minute table is only built if it fits in
+     * {@code minuteTableMaxBytes}.
+     */
+    DealSegment segment(long minuteTableMaxBytes) {
+        DealColumns columns = new DealColumns(strings, restaurantObjectIds, restaurantNames, restaurantAddresses,
+                restaurantSuburbs, restaurantOpenMinutes, restaurantCloseMinutes, dealRestaurants, dealObjectIds,
+                dealDiscounts, dealQtyLeft, dealDiscountValues, dealQtyLeftValues, dealFlags);
+        DealFilterIndex.Builder filters = new DealFilterIndex.Builder();
+        for (int r = 0; r < size(); r++) {
+            int first = dealOffsets.get(r);
+            int end = dealOffsets.get(r + 1);
+            if (first == end) {
+                continue;
+            }
+            filters.addSuburb(strings.decode(restaurantSuburbs.get(r)), first, end);
+            for (int c = cuisineOffsets.get(r); c < cuisineOffsets.get(r + 1); c++) {
+                filters.addCuisine(strings.decode(cuisines.get(c)), first, end);
+            }
+            for (int id = first; id < end; id++) {
+                byte flags = dealFlags.get(id);
+                filters.addDeal(id, (flags & DealColumns.DINE_IN) != 0, (flags & DealColumns.LIGHTNING) != 0);
+            }
+        }
+        return DealSegment.of(columns, dealStartMinutes, dealEndMinutes, filters.build(dealRestaurants.limit()),
+                minuteTableMaxBytes);
+    }
+
+    /**
+     * Decodes restaurant {@code index}, with its cuisines and deals, into new objects.
+     */
+    @Override
+    public Restaurant get(int index) {
+        Objects.checkIndex(index, size());
+        byte flags = restaurantFlags.get(index);
+        List<String> restaurantCuisines = null;
+        if ((flags & CUISINES_MISSING) == 0) {
+            restaurantCuisines = new ArrayList<>(cuisineOffsets.get(index + 1) - cuisineOffsets.get(index));
+            for (int c = cuisineOffsets.get(index); c < cuisineOffsets.get(index + 1); c++) {
+                restaurantCuisines.add(strings.decode(cuisines.get(c)));
+            }
+        }
+        List<Deal> deals = null;
+        if ((flags & DEALS_MISSING) == 0) {
+            deals = new ArrayList<>(dealOffsets.get(index + 1) - dealOffsets.get(index));
+            for (int id = dealOffsets.get(index); id < dealOffsets.get(index + 1); id++) {
+                Deal deal = new Deal();
+                deal.setObjectId(strings.decode(dealObjectIds.get(id)));
+                deal.setDiscount(strings.decode(dealDiscounts.get(id)));
+                deal.setQtyLeft(strings.decode(dealQtyLeft.get(id)));
+                deal.setOpen(time(dealOpens.get(id)));
+                deal.setClose(time(dealCloses.get(id)));
+                deal.setStart(time(dealStarts.get(id)));
+                deal.setEnd(time(dealEnds.get(id)));
+                deal.setDineIn((dealFlags.get(id) & DealColumns.DINE_IN) != 0);
+                deal.setLightning((dealFlags.get(id) & DealColumns.LIGHTNING) != 0);
+                deals.add(deal);
+            }
+        }
+        return Restaurant.builder()
+                .objectId(strings.decode(restaurantObjectIds.get(index)))
+                .name(strings.decode(restaurantNames.get(index)))
+                .address1(strings.decode(restaurantAddresses.get(index)))
+                .suburb(strings.decode(restaurantSuburbs.get(index)))
+                .imageLink(strings.decode(restaurantImageLinks.get(index)))
+                .open(time(restaurantOpens.get(index)))
+                .close(time(restaurantCloses.get(index)))
+                .cuisines(restaurantCuisines)
+                .deals(deals)
+                .build();
+    }
+
+    @Override
+    public int size() {
+        return restaurantObjectIds.limit();
+    }
+
+    private static long nanoOfDay(LocalTime time) {
+        return time != null ? time.toNanoOfDay() : NONE;
+    }
+
+    private static LocalTime time(long nanoOfDay) {
+        return nanoOfDay != NONE ? LocalTime.ofNanoOfDay(nanoOfDay) : null;
+    }
+
+    private static int count(ByteBuffer in) {
+        int count = section(in, 1, Integer.BYTES).getInt(0);
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count " + count);
+        }
+        return count;
+    }
+
+    private static IntBuffer ints(ByteBuffer in, int count) {
+        return section(in, count, Integer.BYTES).asIntBuffer();
+    }
+
+    private static LongBuffer longs(ByteBuffer in, int count) {
+        return section(in, count, Long.BYTES).asLongBuffer();
+    }
+
+    private static ByteBuffer bytes(ByteBuffer in, int count) {
+        return section(in, count, Byte.BYTES);
+    }
+
+    /**
+     * View of the next {@code count} values of {@code width} bytes, starting at the next multiple
+     * of {@code width} (4 for bytes, which only pad at their end), after which {@code in} is
+     * positioned.
+     */
+    private static ByteBuffer section(ByteBuffer in, int count, int width) {
+        int alignment = Math.max(width, Integer.BYTES);
+        if (width != Byte.BYTES) {
+            in.position(align(in.position(), alignment));
+        }
+        if (count < 0 || count > in.remaining() / width) {
+            throw new IllegalArgumentException(count + " values of " + width + " bytes exceed the "
+                    + in.remaining() + " bytes left");
+        }
+        ByteBuffer section = in.slice(in.position(), count * width).order(ByteOrder.LITTLE_ENDIAN);
+        in.position(width == Byte.BYTES ? Math.min(in.limit(), align(in.position() + count, alignment))
+                : in.position() + count * width);
+        return section;
+    }
+
+    private static int align(int position, int alignment) {
+        return (position + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * Growable little-endian output that pads every section like {@link #section} expects.
+     */
+    private static final class Writer {
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        void putInt(int value) {
+            align(Integer.BYTES);
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putInts(int[] values) {
+            align(Integer.BYTES);
+            ensureRemaining((long) values.length * Integer.BYTES);
+            buffer.asIntBuffer().put(values);
+            buffer.position(buffer.position() + values.length * Integer.BYTES);
+        }
+
+        void putLongs(long[] values) {
+            align(Long.BYTES);
+            ensureRemaining((long) values.length * Long.BYTES);
+            buffer.asLongBuffer().put(values);
+            buffer.position(buffer.position() + values.length * Long.BYTES);
+        }
+
+        void putBytes(byte[] values) {
+            ensureRemaining(values.length);
+            buffer.put(values);
+        }
+
+        void align(int alignment) {
+            int padding = MappedFeed.align(buffer.position(), alignment) - buffer.position();
+            ensureRemaining(padding);
+            buffer.put(new byte[padding]);
+        }
+
+        private void ensureRemaining(long bytes) {
+            if (bytes <= buffer.remaining()) {
+                return;
+            }
+            long capacity = Math.max(2L * buffer.capacity(), buffer.position() + bytes);
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Feed is too large to encode");
+            }
+            ByteBuffer grown = ByteBuffer.allocate((int) capacity).order(ByteOrder.LITTLE_ENDIAN);
+            grown.put(buffer.flip());
+            buffer = grown;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package au.com.eatclub.snapshot;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+import static au.com.eatclub.snapshot.DealSnapshot.DAY_TOTAL_MINUTES;
+
+/**
+ * Immutable table mapping every minute of the day to the deals active during it.
+ *
+ * <p>The table is stored in compressed-row form: {@code offsets[m]..offsets[m + 1]} is the slice
+ * of {@code dealIds} holding the (ascending) ids of the deals active at minute {@code m}. A point
+ * lookup is therefore two array reads plus a copy of the k matching ids.
+ *
+ * <p>The footprint grows with the total number of active deal-minutes, so callers should check
+ * {@link #estimateBytes(int[], int[])} against their memory budget before building one.
+ */
+@Immutable
+public final class MinuteDealTable {
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    private final int[] offsets;
+    private final int[] dealIds;
+
+    private MinuteDealTable(int[] offsets, int[] dealIds) {
+        this.offsets = offsets;
+        this.dealIds = dealIds;
+    }
+
+    /**
+     * Builds the table for inclusive {@code [starts[i], ends[i]]} windows; windows with a negative
+     * start or {@code start > end} are never active.
+     */
+    public static MinuteDealTable build(int[] starts, int[] ends) {
+        // Difference array of deals starting/ending at each minute, then prefix sums into offsets
+        int[] offsets = new int[DAY_TOTAL_MINUTES + 1];
+        int[] delta = new int[DAY_TOTAL_MINUTES + 1];
+        for (int i = 0; i < starts.length; i++) {
+            if (isActive(starts[i], ends[i])) {
+                delta[starts[i]]++;
+                delta[ends[i] + 1]--;
+            }
+        }
+        int running = 0;
+        for (int minute = 0; minute < DAY_TOTAL_MINUTES; minute++) {
+            running += delta[minute];
+            offsets[minute + 1] = offsets[minute] + running;
+        }
+
+        // Filling in id order keeps each minute's slice sorted
+        int[] dealIds = new int[offsets[DAY_TOTAL_MINUTES]];
+        int[] cursor = Arrays.copyOf(offsets, DAY_TOTAL_MINUTES);
+        for (int i = 0; i < starts.length; i++) {
+            if (isActive(starts[i], ends[i])) {
+                for (int minute = starts[i]; minute <= ends[i]; minute++) {
+                    dealIds[cursor[minute]++] = i;
+                }
+            }
+        }
+        return new MinuteDealTable(offsets, dealIds);
+    }
+
+    /**
+     * Bytes a table built from these windows would occupy, without building it.
+     */
+    public static long estimateBytes(int[] starts, int[] ends) {
+        long entries = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (isActive(starts[i], ends[i])) {
+                entries += ends[i] - starts[i] + 1;
+            }
+        }
+        return bytesFor(entries);
+    }
+
+    private static long bytesFor(long entries) {
+        return 2 * ARRAY_HEADER_BYTES + (DAY_TOTAL_MINUTES + 1L) * Integer.BYTES + entries * Integer.BYTES;
+    }
+
+    private static boolean isActive(int start, int end) {
+        return start >= 0 && start <= end && end < DAY_TOTAL_MINUTES;
+    }
+
+    /**
+     * Ascending ids of the deals active at {@code minute}.
+     */
+    public int[] dealIdsAt(int minute) {
+        return Arrays.copyOfRange(dealIds, offsets[minute], offsets[minute + 1]);
+    }
+
+    /**
+     * Number of deals active at {@code minute}.
+     */
+    public int countAt(int minute) {
+        return offsets[minute + 1] - offsets[minute];
+    }
+
+    /**
+     * Approximate heap footprint of the table in bytes.
+     */
+    public long footprintBytes() {
+        return bytesFor(dealIds.length);
+    }
+}
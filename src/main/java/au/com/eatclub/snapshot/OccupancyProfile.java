@@ -0,0 +1,152 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.DealWindow;
+import au.com.eatclub.serialization.TimeOfDayParser;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static au.com.eatclub.snapshot.DealSnapshot.DAY_TOTAL_MINUTES;
+
+/**
+ * Immutable view of a snapshot's per-minute occupancy curve.
+ *
+ * <p>One pass over the minute counts splits the day into runs of minutes with the same non-zero
+ * count, and the runs are ranked by count once. The top-K windows are then the first K ranked
+ * runs, and the windows at or above a threshold are the merged consecutive runs reaching it, both
+ * without rescanning the day. Downsampled curves are memoised per bucket size.
+ */
+@Immutable
+public final class OccupancyProfile {
+    private final int[] minuteCounts;
+
+    // Maximal runs of minutes with the same non-zero count, in time order
+    private final int[] runStarts;
+    private final int[] runEnds;
+    private final int[] runCounts;
+    // Run indexes by count descending, then start ascending
+    private final int[] ranking;
+    private final ConcurrentMap<Integer, int[]> bucketCounts = new ConcurrentHashMap<>();
+
+    OccupancyProfile(int[] minuteCounts) {
+        this.minuteCounts = minuteCounts;
+
+        int[] starts = new int[DAY_TOTAL_MINUTES];
+        int[] ends = new int[DAY_TOTAL_MINUTES];
+        int[] counts = new int[DAY_TOTAL_MINUTES];
+        int runCount = 0;
+        for (int minute = 0; minute < minuteCounts.length; minute++) {
+            int count = minuteCounts[minute];
+            if (count == 0) {
+                continue;
+            }
+            if (runCount > 0 && ends[runCount - 1] == minute - 1 && counts[runCount - 1] == count) {
+                ends[runCount - 1] = minute;
+            } else {
+                starts[runCount] = minute;
+                ends[runCount] = minute;
+                counts[runCount] = count;
+                runCount++;
+            }
+        }
+        this.runStarts = Arrays.copyOf(starts, runCount);
+        this.runEnds = Arrays.copyOf(ends, runCount);
+        this.runCounts = Arrays.copyOf(counts, runCount);
+
+        Integer[] ranked = new Integer[runCount];
+        for (int i = 0; i < runCount; i++) {
+            ranked[i] = i;
+        }
+        Arrays.sort(ranked, (a, b) -> runCounts[a] != runCounts[b]
+                ? Integer.compare(runCounts[b], runCounts[a])
+                : Integer.compare(runStarts[a], runStarts[b]));
+        this.ranking = Arrays.stream(ranked).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Highest number of concurrently active deals within each {@code bucketMinutes}-minute bucket
+     * of the day, starting at midnight; the last bucket is shorter if the size does not divide
+     * the day.
+     *
+     * @throws IllegalArgumentException if {@code bucketMinutes} is not between 1 and 1440
+     */
+    public int[] bucketCounts(int bucketMinutes) {
+        if (bucketMinutes < 1 || bucketMinutes > DAY_TOTAL_MINUTES) {
+            throw new IllegalArgumentException("bucketMinutes must be between 1 and " + DAY_TOTAL_MINUTES);
+        }
+        return bucketCounts.computeIfAbsent(bucketMinutes, this::computeBucketCounts).clone();
+    }
+
+    private int[] computeBucketCounts(int bucketMinutes) {
+        int[] buckets = new int[(DAY_TOTAL_MINUTES + bucketMinutes - 1) / bucketMinutes];
+        for (int minute = 0; minute < minuteCounts.length; minute++) {
+            int bucket = minute / bucketMinutes;
+            buckets[bucket] = Math.max(buckets[bucket], minuteCounts[minute]);
+        }
+        return buckets;
+    }
+
+    /**
+     * The {@code k} windows with the most concurrently active deals, highest first (earliest first
+     * on ties). Each window is a maximal run of minutes with the same count, so windows never
+     * overlap.
+     *
+     * @throws IllegalArgumentException if {@code k} is less than 1
+     */
+    public List<DealWindow> topWindows(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        int size = Math.min(k, ranking.length);
+        List<DealWindow> windows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int run = ranking[i];
+            windows.add(window(runStarts[run], runEnds[run], runCounts[run]));
+        }
+        return windows;
+    }
+
+    /**
+     * Maximal windows in which at least {@code minDeals} deals are active at every minute, in time
+     * order, each with the highest count reached inside it.
+     *
+     * @throws IllegalArgumentException if {@code minDeals} is less than 1
+     */
+    public List<DealWindow> windowsWithAtLeast(int minDeals) {
+        if (minDeals < 1) {
+            throw new IllegalArgumentException("minDeals must be at least 1");
+        }
+        List<DealWindow> windows = new ArrayList<>();
+        int start = -1;
+        int end = -1;
+        int highest = 0;
+        for (int run = 0; run < runCounts.length; run++) {
+            if (runCounts[run] < minDeals) {
+                continue;
+            }
+            if (start >= 0 && runStarts[run] == end + 1) {
+                end = runEnds[run];
+                highest = Math.max(highest, runCounts[run]);
+            } else {
+                if (start >= 0) {
+                    windows.add(window(start, end, highest));
+                }
+                start = runStarts[run];
+                end = runEnds[run];
+                highest = runCounts[run];
+            }
+        }
+        if (start >= 0) {
+            windows.add(window(start, end, highest));
+        }
+        return windows;
+    }
+
+    private static DealWindow window(int startMinute, int endMinute, int dealCount) {
+        return new DealWindow(TimeOfDayParser.toLocalTime(startMinute), TimeOfDayParser.toLocalTime(endMinute), dealCount);
+    }
+}
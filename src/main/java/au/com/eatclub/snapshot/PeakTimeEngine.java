@@ -0,0 +1,122 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.DealPeakTime;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static au.com.eatclub.snapshot.DealSnapshot.DAY_TOTAL_MINUTES;
+
+/**
+ * Sweep-line computation of deal occupancy and peak time ranges.
+ *
+ * <p>Each inclusive window {@code [start, end]} contributes a {@code +1} event at {@code start}
+ * and a {@code -1} event right after {@code end}. At minute resolution the events go into a
+ * difference array that is prefix-summed, costing O(n + 1440). At second resolution the events are
+ * sorted and scanned instead, costing O(n log n) without allocating a slot per second of the day.
+ *
+ * <p>Windows with a negative start or {@code start > end} are ignored.
+ */
+public final class PeakTimeEngine {
+    private static final int SECONDS_IN_MINUTE = 60;
+
+    private PeakTimeEngine() {
+    }
+
+    /**
+     * Number of concurrently active windows at every minute of the day.
+     */
+    public static int[] minuteCounts(int[] startMinutes, int[] endMinutes) {
+        int[] counts = new int[DAY_TOTAL_MINUTES + 1];
+        for (int i = 0; i < startMinutes.length; i++) {
+            if (startMinutes[i] >= 0 && startMinutes[i] <= endMinutes[i]) {
+                counts[startMinutes[i]]++;
+                counts[endMinutes[i] + 1]--;
+            }
+        }
+        for (int minute = 1; minute < DAY_TOTAL_MINUTES; minute++) {
+            counts[minute] += counts[minute - 1];
+        }
+        return Arrays.copyOf(counts, DAY_TOTAL_MINUTES);
+    }
+
+    /**
+     * All maximal runs of minutes whose count equals the highest count, or an empty list if no
+     * window is ever active.
+     */
+    public static List<DealPeakTime> peakRanges(int[] minuteCounts) {
+        List<DealPeakTime> peakTimes = new ArrayList<>();
+        int maxDeals = Arrays.stream(minuteCounts).max().orElse(0);
+        if (maxDeals == 0) {
+            return peakTimes;
+        }
+
+        int rangeStart = -1;
+        for (int minute = 0; minute <= minuteCounts.length; minute++) {
+            boolean atPeak = minute < minuteCounts.length && minuteCounts[minute] == maxDeals;
+            if (atPeak && rangeStart < 0) {
+                rangeStart = minute;
+            } else if (!atPeak && rangeStart >= 0) {
+                peakTimes.add(new DealPeakTime(toLocalTime(rangeStart * SECONDS_IN_MINUTE),
+                        toLocalTime((minute - 1) * SECONDS_IN_MINUTE)));
+                rangeStart = -1;
+            }
+        }
+        return peakTimes;
+    }
+
+    /**
+     * Peak ranges at second resolution for inclusive {@code [start, end]} windows given in
+     * seconds of the day.
+     */
+    public static List<DealPeakTime> peakRangesBySecond(int[] startSeconds, int[] endSeconds) {
+        // Encode each event as (time << 1 | kind) so that a single primitive sort orders them by
+        // time; at equal times the -1 (kind 0) of a window ending just before sorts first
+        long[] events = new long[startSeconds.length * 2];
+        int eventCount = 0;
+        for (int i = 0; i < startSeconds.length; i++) {
+            if (startSeconds[i] >= 0 && startSeconds[i] <= endSeconds[i]) {
+                events[eventCount++] = ((long) startSeconds[i] << 1) | 1;
+                events[eventCount++] = ((long) endSeconds[i] + 1) << 1;
+            }
+        }
+        Arrays.sort(events, 0, eventCount);
+
+        // First pass: find the highest concurrency; second pass: collect the runs reaching it
+        int maxDeals = 0;
+        int running = 0;
+        for (int i = 0; i < eventCount; i++) {
+            running += (events[i] & 1) == 1 ? 1 : -1;
+            maxDeals = Math.max(maxDeals, running);
+        }
+
+        List<DealPeakTime> peakTimes = new ArrayList<>();
+        if (maxDeals == 0) {
+            return peakTimes;
+        }
+
+        running = 0;
+        long rangeStart = -1;
+        for (int i = 0; i < eventCount; i++) {
+            long time = events[i] >> 1;
+            running += (events[i] & 1) == 1 ? 1 : -1;
+            // Only the count after the last event at a given time is observable
+            if (i + 1 < eventCount && (events[i + 1] >> 1) == time) {
+                continue;
+            }
+            if (running == maxDeals && rangeStart < 0) {
+                rangeStart = time;
+            } else if (running != maxDeals && rangeStart >= 0) {
+                peakTimes.add(new DealPeakTime(toLocalTime(rangeStart), toLocalTime(time - 1)));
+                rangeStart = -1;
+            }
+        }
+        return peakTimes;
+    }
+
+    private static LocalTime toLocalTime(long secondOfDay) {
+        return LocalTime.ofSecondOfDay(secondOfDay);
+    }
+}
@@ -0,0 +1,148 @@
+package au.com.eatclub.snapshot;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+import static au.com.eatclub.snapshot.DealSnapshot.DAY_TOTAL_MINUTES;
+
+/**
+ * Immutable table of the best deals active at every minute of the day, ranked by discount.
+ *
+ * <p>Like {@link MinuteDealTable}, it is stored in compressed-row form, but each minute's slice
+ * only holds the in-stock ({@code qtyLeft > 0}) deals in rank order (highest discount first,
+ * deals with an unknown discount last, ties by ascending id), and at most {@link #DEPTH} of them.
+ * A top-N lookup for {@code N <= DEPTH} is therefore a read of the first N entries of one slice,
+ * however many deals are active; the footprint is bounded by {@code 1440 * DEPTH} ids whatever
+ * the feed size. Besides ranking the deals, building it costs {@code O(n + 1440 * DEPTH)}, not
+ * the deals' total active minutes, as minutes already holding {@code DEPTH} deals are skipped.
+ *
+ * <p>A slice holding exactly {@code DEPTH} deals may have been cut short; callers that skip
+ * entries (removed or filtered deals) and run past its end have to fall back to ranking the
+ * active deals themselves.
+ */
+@Immutable
+final class RankedDealTable {
+    /**
+     * Most deals kept per minute, and so the largest N answered from the table alone.
+     */
+    static final int DEPTH = 100;
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final int ID_BITS = Integer.SIZE - 1;
+
+    private final int[] offsets;
+    private final int[] dealIds;
+
+    private RankedDealTable(int[] offsets, int[] dealIds) {
+        this.offsets = offsets;
+        this.dealIds = dealIds;
+    }
+
+    /**
+     * Builds the table for inclusive {@code [starts[i], ends[i]]} windows, ranking deal i by
+     * {@code discounts[i]} and leaving it out unless {@code quantities[i] > 0}.
+     */
+    static RankedDealTable build(int[] starts, int[] ends, int[] discounts, int[] quantities) {
+        long[] ranked = new long[starts.length];
+        int eligible = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (quantities[i] > 0 && starts[i] >= 0 && starts[i] <= ends[i] && ends[i] < DAY_TOTAL_MINUTES) {
+                ranked[eligible++] = rankKey(discounts[i], i);
+            }
+        }
+        Arrays.sort(ranked, 0, eligible);
+
+        // Deal in rank order into fixed-width rows. Full minutes are skipped through a "next unfilled
+        // minute" forest, so each minute is visited at most DEPTH times plus one lookup per deal,
+        // however long the windows are and whether or not some minutes never fill up
+        int width = Math.min(DEPTH, eligible);
+        int[] counts = new int[DAY_TOTAL_MINUTES];
+        int[] rows = new int[DAY_TOTAL_MINUTES * width];
+        int[] nextUnfilled = new int[DAY_TOTAL_MINUTES + 1];
+        for (int minute = 0; minute <= DAY_TOTAL_MINUTES; minute++) {
+            nextUnfilled[minute] = minute;
+        }
+        for (int r = 0; r < eligible && nextUnfilled(nextUnfilled, 0) < DAY_TOTAL_MINUTES; r++) {
+            int id = idOf(ranked[r]);
+            for (int minute = nextUnfilled(nextUnfilled, starts[id]); minute <= ends[id];
+                    minute = nextUnfilled(nextUnfilled, minute + 1)) {
+                rows[minute * width + counts[minute]++] = id;
+                if (counts[minute] == DEPTH) {
+                    nextUnfilled[minute] = minute + 1;
+                }
+            }
+        }
+
+        int[] offsets = new int[DAY_TOTAL_MINUTES + 1];
+        for (int minute = 0; minute < DAY_TOTAL_MINUTES; minute++) {
+            offsets[minute + 1] = offsets[minute] + counts[minute];
+        }
+        int[] dealIds = new int[offsets[DAY_TOTAL_MINUTES]];
+        for (int minute = 0; minute < DAY_TOTAL_MINUTES; minute++) {
+            System.arraycopy(rows, minute * width, dealIds, offsets[minute], counts[minute]);
+        }
+        return new RankedDealTable(offsets, dealIds);
+    }
+
+    /**
+     * First minute from {@code minute} on that holds fewer than {@link #DEPTH} deals, or
+     * {@code DAY_TOTAL_MINUTES} if there is none, halving the paths it follows.
+     */
+    private static int nextUnfilled(int[] nextUnfilled, int minute) {
+        while (nextUnfilled[minute] != minute) {
+            nextUnfilled[minute] = nextUnfilled[nextUnfilled[minute]];
+            minute = nextUnfilled[minute];
+        }
+        return minute;
+    }
+
+    /**
+     * Key sorting deals in rank order: descending discount ({@link DealColumns#UNKNOWN} last),
+     * then ascending id.
+     */
+    static long rankKey(int discount, int id) {
+        // Ids need 31 bits and the inverted discount at most 32
+        return ((long) Integer.MAX_VALUE - discount) << ID_BITS | id;
+    }
+
+    /**
+     * Deal id of a {@link #rankKey(int, int)}.
+     */
+    static int idOf(long rankKey) {
+        return (int) (rankKey & Integer.MAX_VALUE);
+    }
+
+    /**
+     * Index of the first (best) entry of {@code minute}'s slice.
+     */
+    int start(int minute) {
+        return offsets[minute];
+    }
+
+    /**
+     * Index just past the last entry of {@code minute}'s slice.
+     */
+    int end(int minute) {
+        return offsets[minute + 1];
+    }
+
+    /**
+     * Deal id of entry {@code index}.
+     */
+    int dealId(int index) {
+        return dealIds[index];
+    }
+
+    /**
+     * Whether {@code minute}'s slice may leave out lower ranked in-stock deals.
+     */
+    boolean isTruncated(int minute) {
+        return offsets[minute + 1] - offsets[minute] == DEPTH;
+    }
+
+    /**
+     * Approximate heap footprint of the table in bytes.
+     */
+    long footprintBytes() {
+        return 2 * ARRAY_HEADER_BYTES + (DAY_TOTAL_MINUTES + 1L) * Integer.BYTES + (long) dealIds.length * Integer.BYTES;
+    }
+}
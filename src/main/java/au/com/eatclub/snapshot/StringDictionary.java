@@ -0,0 +1,104 @@
+package au.com.eatclub.snapshot;
+
+import javax.annotation.concurrent.Immutable;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable dictionary of the distinct strings of a snapshot, addressed by dense int codes.
+ *
+ * <p>Columns store codes instead of references, so repeated values (suburbs, discounts,
+ * quantities) are held once and equal values can be compared as ints. {@link #NULL} encodes a
+ * missing value.
+ *
+ * <p>A dictionary {@linkplain #map mapped} over UTF-8 bytes in a buffer decodes each string the
+ * first time it is asked for and keeps it. Threads racing on the same code may each decode it,
+ * but always to an equal string.
+ */
+@Immutable
+public final class StringDictionary {
+    public static final int NULL = -1;
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long STRING_OVERHEAD_BYTES = 56;
+
+    private final String[] values;
+    // UTF-8 bytes of string i are utf8[offsets[i], offsets[i + 1]); both null unless mapped
+    private final IntBuffer offsets;
+    private final ByteBuffer utf8;
+
+    private StringDictionary(String[] values, IntBuffer offsets, ByteBuffer utf8) {
+        this.values = values;
+        this.offsets = offsets;
+        this.utf8 = utf8;
+    }
+
+    /**
+     * Dictionary of the {@code offsets.limit() - 1} strings whose UTF-8 bytes are
+     * {@code utf8[offsets[i], offsets[i + 1])}, decoded on first use.
+     */
+    static StringDictionary map(IntBuffer offsets, ByteBuffer utf8) {
+        return new StringDictionary(new String[offsets.limit() - 1], offsets, utf8);
+    }
+
+    /**
+     * The string for {@code code}, or {@code null} for {@link #NULL}.
+     */
+    public String decode(int code) {
+        if (code == NULL) {
+            return null;
+        }
+        String value = values[code];
+        if (value == null) {
+            byte[] bytes = new byte[offsets.get(code + 1) - offsets.get(code)];
+            utf8.get(offsets.get(code), bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            values[code] = value;
+        }
+        return value;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Approximate heap footprint in bytes, counting two bytes per character of each string
+     * decoded so far.
+     */
+    public long footprintBytes() {
+        long bytes = ARRAY_HEADER_BYTES + 4L * values.length;
+        for (String value : values) {
+            if (value != null) {
+                bytes += STRING_OVERHEAD_BYTES + 2L * value.length();
+            }
+        }
+        return bytes;
+    }
+
+    static final class Builder {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return NULL;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        StringDictionary build() {
+            return new StringDictionary(values.toArray(new String[0]), null, null);
+        }
+    }
+}
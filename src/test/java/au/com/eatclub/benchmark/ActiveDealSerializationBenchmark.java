@@ -0,0 +1,53 @@
+package au.com.eatclub.benchmark;
+
+import au.com.eatclub.model.ActiveDeal;
+import au.com.eatclub.service.RestaurantDealService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serializing an active-deals response, including the {@code TimeSerializer} used for
+ * the restaurant hours, for the deals active at 6:30pm in a synthetic feed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ActiveDealSerializationBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int dealCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<ActiveDeal> activeDeals;
+
+    @Setup
+    public void setUp() throws IOException {
+        RestaurantDealService service = new RestaurantDealService(
+                SyntheticFeed.repositoryFor(SyntheticFeed.restaurants(dealCount)));
+        activeDeals = service.getAllActiveDealsAtTime(LocalTime.of(18, 30));
+    }
+
+    @Benchmark
+    public String writeActiveDeals() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(activeDeals);
+    }
+}
@@ -0,0 +1,62 @@
+package au.com.eatclub.benchmark;
+
+import au.com.eatclub.model.ActiveDeal;
+import au.com.eatclub.serialization.TimeOfDayParser;
+import au.com.eatclub.service.RestaurantDealService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link RestaurantDealService#getAllActiveDealsAtTime(LocalTime)} and
+ * {@link RestaurantDealService#getBestActiveDealsAtTime(LocalTime, int)} against a warm snapshot
+ * of a synthetic feed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ActiveDealsBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int dealCount;
+
+    @Param({"7:00am", "6:30pm"})
+    public String timeOfDay;
+
+    private RestaurantDealService service;
+    private LocalTime time;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = new RestaurantDealService(SyntheticFeed.repositoryFor(SyntheticFeed.restaurants(dealCount)));
+        time = TimeOfDayParser.parse(timeOfDay);
+        // Build the snapshot outside the measurement
+        service.getAllActiveDealsAtTime(time);
+    }
+
+    @Benchmark
+    public List<ActiveDeal> getAllActiveDealsAtTime() throws IOException {
+        return service.getAllActiveDealsAtTime(time);
+    }
+
+    @Benchmark
+    public List<ActiveDeal> getBestActiveDealsAtTime() throws IOException {
+        return service.getBestActiveDealsAtTime(time, 10);
+    }
+}
@@ -0,0 +1,58 @@
+package au.com.eatclub.benchmark;
+
+import au.com.eatclub.model.Restaurant;
+import au.com.eatclub.repository.RestaurantFeedParser;
+import au.com.eatclub.snapshot.DealSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning a raw feed into something queryable: streaming JSON ingestion and building the
+ * {@link DealSnapshot}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FeedIngestionBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int dealCount;
+
+    private final RestaurantFeedParser parser = new RestaurantFeedParser(new ObjectMapper());
+    private byte[] feed;
+    private List<Restaurant> restaurants;
+
+    @Setup
+    public void setUp() throws IOException {
+        feed = SyntheticFeed.generate(dealCount);
+        restaurants = SyntheticFeed.parse(feed);
+    }
+
+    @Benchmark
+    public List<Restaurant> parseFeed() throws IOException {
+        return parser.parse(new ByteArrayInputStream(feed));
+    }
+
+    @Benchmark
+    public DealSnapshot buildSnapshot() {
+        return DealSnapshot.of(restaurants);
+    }
+}
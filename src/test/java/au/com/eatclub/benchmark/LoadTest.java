@@ -0,0 +1,452 @@
+package au.com.eatclub.benchmark;
+
+import au.com.eatclub.lambda.GetActiveDealsHandler;
+import au.com.eatclub.lambda.GetPeakTimeForDealsHandler;
+import au.com.eatclub.metrics.Histogram;
+import au.com.eatclub.repository.RestaurantRepository;
+import au.com.eatclub.server.DealsServer;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * End-to-end load test of both Lambda handlers against a stubbed upstream feed, runnable offline.
+ *
+ * <p>An OkHttp {@link MockWebServer} listens on the {@value RestaurantRepository#FEED_URL_ENV}
+ * URL and serves a {@link SyntheticFeed} of {@code dealCount} deals after
+ * {@code upstreamLatencyMs}, answering revalidations with {@code 304 Not Modified} unless the feed
+ * has changed (every {@code feedChangeSeconds}, if set). The handlers are then driven
+ * concurrently, each at a fixed arrival rate of {@code rate} requests per second on a pool of
+ * {@code threads} threads, first for {@code warmupSeconds} and then for {@code durationSeconds}
+ * of measurement.
+ *
+ * <p>Unless {@code server=0}, the same routes are then load tested over HTTP against a
+ * {@link DealsServer} started on a free local port, with the same rate, threads, warm-up and
+ * duration. The two runs are measured one after the other, so they do not compete for the CPU,
+ * and reported in one table.
+ *
+ * <p>The load is open-loop: requests are issued on schedule whether or not earlier ones have
+ * completed, and latency is measured from the scheduled time, so queueing behind slow requests
+ * is counted rather than hidden. The report gives per-route throughput and p50/p99/p99.9/max
+ * latency, the upstream requests served and the GC pauses seen during measurement.
+ *
+ * <p>The handlers read the feed URL and TTL from the environment when their runtime is
+ * initialised, so run it through the {@code loadtest} profile, which sets them:
+ * {@code mvn -P loadtest test -Dloadtest.args="dealCount=100000 rate=500"}. Arguments are
+ * {@code name=value} pairs; see {@link Options} for the defaults.
+ */
+public final class LoadTest {
+    private static final DateTimeFormatter TIME_OF_DAY = DateTimeFormatter.ofPattern("h:mma", Locale.ENGLISH);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        String feedUrl = System.getenv(RestaurantRepository.FEED_URL_ENV);
+        if (feedUrl == null || feedUrl.isBlank()) {
+            throw new IllegalStateException("Set " + RestaurantRepository.FEED_URL_ENV
+                    + " to a local URL such as http://127.0.0.1:18081/challengedata.json, or run through the loadtest profile");
+        }
+        // Per-request handler logging would dominate the measurements
+        Configurator.setLevel("au.com.eatclub", Level.WARN);
+
+        HttpUrl url = HttpUrl.get(feedUrl.trim());
+        byte[] feed = SyntheticFeed.generate(options.dealCount);
+        FeedDispatcher upstream = new FeedDispatcher(url.encodedPath(), feed, options.upstreamLatencyMs,
+                options.feedChangeSeconds);
+        GcPauses gcPauses = new GcPauses();
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(upstream);
+            server.start(InetAddress.getByName(url.host()), url.port());
+            System.out.printf("Upstream: %,d deals (%,d KB) at %s, %d ms latency%n",
+                    options.dealCount, feed.length / 1024, url, options.upstreamLatencyMs);
+
+            List<Route> handlerRoutes = List.of(
+                    Route.inProcess("GetActiveDealsHandler", new GetActiveDealsHandler(), LoadTest::activeDealsRequest),
+                    Route.inProcess("GetPeakTimeForDealsHandler", new GetPeakTimeForDealsHandler(), LoadTest::peakTimesRequest));
+            long handlerElapsedNanos = measure("in-process handlers", handlerRoutes, options, upstream, gcPauses);
+            long upstreamFull = upstream.fullResponses.get();
+            long upstreamNotModified = upstream.notModifiedResponses.get();
+
+            List<Route> serverRoutes = List.of();
+            long serverElapsedNanos = 0;
+            if (options.server) {
+                try (DealsServer dealsServer = DealsServer.start(0)) {
+                    HttpClient client = HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_1_1)
+                            .connectTimeout(Duration.ofSeconds(5))
+                            .build();
+                    String baseUrl = "http://127.0.0.1:" + dealsServer.port();
+                    serverRoutes = List.of(
+                            Route.overHttp("HTTP GetActiveDealsHandler", client, baseUrl, LoadTest::activeDealsRequest),
+                            Route.overHttp("HTTP GetPeakTimeForDealsHandler", client, baseUrl, LoadTest::peakTimesRequest));
+                    serverElapsedNanos = measure("DealsServer on port " + dealsServer.port(), serverRoutes, options,
+                            upstream, gcPauses);
+                    upstreamFull += upstream.fullResponses.get();
+                    upstreamNotModified += upstream.notModifiedResponses.get();
+                }
+            }
+
+            System.out.println();
+            System.out.printf("%-34s %9s %7s %12s %9s %9s %9s %9s%n",
+                    "Route", "Requests", "Errors", "Requests/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (Route route : handlerRoutes) {
+                route.report(handlerElapsedNanos);
+            }
+            for (Route route : serverRoutes) {
+                route.report(serverElapsedNanos);
+            }
+            System.out.printf("Upstream: %d full feeds and %d not modified served%n", upstreamFull, upstreamNotModified);
+            gcPauses.report();
+        }
+    }
+
+    /**
+     * Warms {@code routes} up, then measures them, counting upstream responses and GC pauses for
+     * the measurement only. Returns the measured nanoseconds.
+     */
+    private static long measure(String target, List<Route> routes, Options options, FeedDispatcher upstream,
+                                GcPauses gcPauses) throws InterruptedException {
+        System.out.printf("Warming up %s for %d s at %d requests/s per route%n", target, options.warmupSeconds, options.rate);
+        run(routes, options, options.warmupSeconds);
+        routes.forEach(Route::reset);
+        upstream.reset();
+        gcPauses.start();
+
+        System.out.printf("Measuring %s for %d s at %d requests/s per route%n", target, options.durationSeconds, options.rate);
+        long elapsedNanos = run(routes, options, options.durationSeconds);
+        gcPauses.stop();
+        return elapsedNanos;
+    }
+
+    /**
+     * Drives every route at the fixed rate for {@code seconds} and waits for the requests to
+     * complete, returning the nanoseconds from the first scheduled request to the last completion.
+     */
+    private static long run(List<Route> routes, Options options, int seconds) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(options.threads, daemonThreads("load-worker"));
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / options.rate;
+        long requests = (long) seconds * options.rate;
+        long started = System.nanoTime();
+        Thread[] schedulers = new Thread[routes.size()];
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            schedulers[i] = new Thread(() -> {
+                for (long n = 0; n < requests; n++) {
+                    long scheduled = started + n * periodNanos;
+                    long wait = scheduled - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    long sequence = n;
+                    workers.execute(() -> route.call(sequence, scheduled));
+                }
+            }, "load-scheduler-" + route.name);
+            schedulers[i].start();
+        }
+        for (Thread scheduler : schedulers) {
+            scheduler.join();
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        return System.nanoTime() - started;
+    }
+
+    private static APIGatewayProxyRequestEvent activeDealsRequest(long sequence) {
+        // Walk through the day so the responses are not all served from one cached minute
+        LocalTime time = LocalTime.MIN.plusMinutes(sequence * 7 % (24 * 60));
+        return request("/v1/restaurants/deals", Map.of("timeOfDay", TIME_OF_DAY.format(time)));
+    }
+
+    private static APIGatewayProxyRequestEvent peakTimesRequest(long sequence) {
+        return request("/v1/restaurants/deals/peak-times",
+                sequence % 2 == 0 ? Map.of() : Map.of("bucketMinutes", "15"));
+    }
+
+    private static APIGatewayProxyRequestEvent request(String path, Map<String, String> parameters) {
+        return new APIGatewayProxyRequestEvent()
+                .withHttpMethod("GET")
+                .withPath(path)
+                .withQueryStringParameters(new HashMap<>(parameters));
+    }
+
+    private static String query(APIGatewayProxyRequestEvent request) {
+        Map<String, String> parameters = request.getQueryStringParameters();
+        if (parameters == null || parameters.isEmpty()) {
+            return "";
+        }
+        return parameters.entrySet().stream()
+                .map(parameter -> URLEncoder.encode(parameter.getKey(), StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(parameter.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&", "?", ""));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger created = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + "-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * Load test settings, parsed from {@code name=value} arguments.
+     */
+    static final class Options {
+        int dealCount = 10_000;
+        int upstreamLatencyMs = 50;
+        int feedChangeSeconds = 0;
+        int rate = 200;
+        int warmupSeconds = 10;
+        int durationSeconds = 30;
+        int threads = 64;
+        boolean server = true;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected name=value but got: " + arg);
+                }
+                String name = arg.substring(0, equals);
+                int value = Integer.parseInt(arg.substring(equals + 1).trim());
+                switch (name) {
+                    case "dealCount" -> options.dealCount = value;
+                    case "upstreamLatencyMs" -> options.upstreamLatencyMs = value;
+                    case "feedChangeSeconds" -> options.feedChangeSeconds = value;
+                    case "rate" -> options.rate = value;
+                    case "warmupSeconds" -> options.warmupSeconds = value;
+                    case "durationSeconds" -> options.durationSeconds = value;
+                    case "threads" -> options.threads = value;
+                    case "server" -> options.server = value != 0;
+                    default -> throw new IllegalArgumentException("Unknown option: " + name);
+                }
+            }
+            if (options.rate <= 0 || options.threads <= 0 || options.durationSeconds <= 0) {
+                throw new IllegalArgumentException("rate, threads and durationSeconds must be positive");
+            }
+            return options;
+        }
+    }
+
+    /**
+     * One route under load, called in process or over HTTP, with the latencies and outcomes of its
+     * requests.
+     */
+    private static final class Route {
+        private final String name;
+        private final Call call;
+        private volatile Histogram latencies = new Histogram();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+
+        private Route(String name, Call call) {
+            this.name = name;
+            this.call = call;
+        }
+
+        /**
+         * Calls {@code handler} directly, as the Lambda runtime does.
+         */
+        static Route inProcess(String name, RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler,
+                               LongFunction<APIGatewayProxyRequestEvent> requests) {
+            return new Route(name, sequence -> handler.handleRequest(requests.apply(sequence), null).getStatusCode());
+        }
+
+        /**
+         * Sends each request as a GET to its path under {@code baseUrl}.
+         */
+        static Route overHttp(String name, HttpClient client, String baseUrl, LongFunction<APIGatewayProxyRequestEvent> requests) {
+            return new Route(name, sequence -> {
+                APIGatewayProxyRequestEvent request = requests.apply(sequence);
+                HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(baseUrl + request.getPath() + query(request)))
+                        .timeout(Duration.ofSeconds(30))
+                        .GET()
+                        .build();
+                return client.send(httpRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+            });
+        }
+
+        void call(long sequence, long scheduledNanos) {
+            boolean ok;
+            try {
+                ok = call.statusCode(sequence) == 200;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ok = false;
+            } catch (IOException | RuntimeException e) {
+                ok = false;
+            }
+            latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledNanos));
+            completed.incrementAndGet();
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+
+        void reset() {
+            latencies = new Histogram();
+            completed.set(0);
+            errors.set(0);
+        }
+
+        void report(long elapsedNanos) {
+            Histogram.Snapshot snapshot = latencies.drain();
+            System.out.printf("%-34s %9d %7d %12.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    name, completed.get(), errors.get(), completed.get() * 1e9 / elapsedNanos,
+                    millis(snapshot.valueAtQuantile(0.5)), millis(snapshot.valueAtQuantile(0.99)),
+                    millis(snapshot.valueAtQuantile(0.999)), millis(snapshot.max()));
+        }
+    }
+
+    /**
+     * Sends one request of a route and returns its status code.
+     */
+    @FunctionalInterface
+    private interface Call {
+        int statusCode(long sequence) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Serves the feed at {@code path} with an ETag, after the configured latency.
+     */
+    private static final class FeedDispatcher extends Dispatcher {
+        private final String path;
+        private final byte[] feed;
+        private final int latencyMs;
+        private final long changeNanos;
+        private final long startedNanos = System.nanoTime();
+        // Differs between runs, so a feed cached on disk by an earlier run is never revalidated as current
+        private final String run = Long.toHexString(startedNanos);
+        private final AtomicLong fullResponses = new AtomicLong();
+        private final AtomicLong notModifiedResponses = new AtomicLong();
+
+        private FeedDispatcher(String path, byte[] feed, int latencyMs, int changeSeconds) {
+            this.path = path;
+            this.feed = feed;
+            this.latencyMs = latencyMs;
+            this.changeNanos = TimeUnit.SECONDS.toNanos(changeSeconds);
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            if (!path.equals(request.getRequestUrl().encodedPath())) {
+                return new MockResponse().setResponseCode(404);
+            }
+            String etag = "\"feed-" + run + "-" + version() + "\"";
+            MockResponse response = new MockResponse().setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS);
+            if (etag.equals(request.getHeader("If-None-Match"))) {
+                notModifiedResponses.incrementAndGet();
+                return response.setResponseCode(304).setHeader("ETag", etag);
+            }
+            fullResponses.incrementAndGet();
+            return response.setResponseCode(200)
+                    .setHeader("Content-Type", "application/json")
+                    .setHeader("ETag", etag)
+                    .setBody(new Buffer().write(feed));
+        }
+
+        private long version() {
+            return changeNanos == 0 ? 0 : (System.nanoTime() - startedNanos) / changeNanos;
+        }
+
+        void reset() {
+            fullResponses.set(0);
+            notModifiedResponses.set(0);
+        }
+    }
+
+    /**
+     * Collects the stop-the-world GC pauses reported by the JVM while started.
+     */
+    private static final class GcPauses {
+        private final Histogram pausesMillis = new Histogram();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private volatile boolean recording;
+
+        private GcPauses() {
+            NotificationListener listener = (notification, handback) -> {
+                if (!recording || !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                // Concurrent collectors also report their background cycles, which are not pauses
+                if (info.getGcName().contains("Concurrent") || info.getGcName().contains("Cycles")) {
+                    return;
+                }
+                long duration = info.getGcInfo().getDuration();
+                pausesMillis.record(duration);
+                totalMillis.addAndGet(duration);
+            };
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter) {
+                    ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+                }
+            }
+        }
+
+        /**
+         * Records pauses until {@link #stop()}, adding to those of earlier measurements.
+         */
+        void start() {
+            recording = true;
+        }
+
+        void stop() {
+            recording = false;
+        }
+
+        void report() {
+            Histogram.Snapshot snapshot = pausesMillis.drain();
+            System.out.printf("GC: %d pauses, %d ms total, p99 %d ms, max %d ms%n",
+                    snapshot.count(), totalMillis.get(), snapshot.valueAtQuantile(0.99), snapshot.max());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package au.com.eatclub.benchmark;
+
+import au.com.eatclub.model.DealPeakTime;
+import au.com.eatclub.service.RestaurantDealService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link RestaurantDealService#findPeakTimeRange(ChronoUnit)} against a warm snapshot of
+ * a synthetic feed, at minute and second resolution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PeakTimeBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int dealCount;
+
+    private RestaurantDealService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = new RestaurantDealService(SyntheticFeed.repositoryFor(SyntheticFeed.restaurants(dealCount)));
+        // Build the snapshot outside the measurement
+        service.findPeakTimeRange();
+    }
+
+    @Benchmark
+    public List<DealPeakTime> findPeakTimeRangeByMinute() throws IOException {
+        return service.findPeakTimeRange(ChronoUnit.MINUTES);
+    }
+
+    @Benchmark
+    public List<DealPeakTime> findPeakTimeRangeBySecond() throws IOException {
+        return service.findPeakTimeRange(ChronoUnit.SECONDS);
+    }
+}
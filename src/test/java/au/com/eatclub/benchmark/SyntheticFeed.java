@@ -0,0 +1,160 @@
+package au.com.eatclub.benchmark;
+
+import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.Restaurant;
+import au.com.eatclub.repository.RestaurantFeedParser;
+import au.com.eatclub.repository.RestaurantRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic restaurant feeds with the shape of {@code src/test/resources/data.json}.
+ *
+ * <p>Restaurants are cloned round-robin from the test data with fresh object ids, randomised
+ * operating hours and one to four deals each. Deals use {@code open}/{@code close},
+ * {@code start}/{@code end} or no times at all (falling back to the restaurant hours) in the same
+ * mix as the real feed. The generator is seeded, so a given deal count always produces the same
+ * feed.
+ */
+public final class SyntheticFeed {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("h:mma", Locale.ENGLISH);
+    private static final int MINUTES_IN_HOUR = 60;
+    private static final long SEED = 20240701L;
+
+    private SyntheticFeed() {
+    }
+
+    /**
+     * Serialized feed JSON containing exactly {@code dealCount} deals.
+     */
+    public static byte[] generate(int dealCount) {
+        List<Restaurant> templates = templates();
+        Random random = new Random(SEED);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(dealCount * 256);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("restaurants");
+            int remaining = dealCount;
+            for (int r = 0; remaining > 0; r++) {
+                Restaurant template = templates.get(r % templates.size());
+                int deals = Math.min(remaining, 1 + random.nextInt(4));
+                writeRestaurant(generator, template, r, deals, random);
+                remaining -= deals;
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Parsed restaurants of a synthetic feed containing exactly {@code dealCount} deals.
+     */
+    public static List<Restaurant> restaurants(int dealCount) {
+        try {
+            return parse(generate(dealCount));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<Restaurant> parse(byte[] feed) throws IOException {
+        return new RestaurantFeedParser(new ObjectMapper()).parse(new ByteArrayInputStream(feed));
+    }
+
+    /**
+     * Repository serving a fixed feed, so benchmarks measure the service and not the network.
+     */
+    public static RestaurantRepository repositoryFor(List<Restaurant> restaurants) {
+        return new RestaurantRepository() {
+            @Override
+            public List<Restaurant> getRestaurantDataFromApi() {
+                return restaurants;
+            }
+        };
+    }
+
+    private static void writeRestaurant(JsonGenerator generator, Restaurant template, int index, int deals,
+                                        Random random) throws IOException {
+        int openMinute = 6 * MINUTES_IN_HOUR + random.nextInt(8 * MINUTES_IN_HOUR);
+        int closeMinute = Math.min(openMinute + 4 * MINUTES_IN_HOUR + random.nextInt(10 * MINUTES_IN_HOUR),
+                24 * MINUTES_IN_HOUR - 1);
+
+        generator.writeStartObject();
+        generator.writeStringField("objectId", String.format("R%08d-%s", index, template.getObjectId()));
+        generator.writeStringField("name", template.getName() + " #" + index);
+        generator.writeStringField("address1", template.getAddress1());
+        generator.writeStringField("suburb", template.getSuburb());
+        generator.writeArrayFieldStart("cuisines");
+        for (String cuisine : template.getCuisines()) {
+            generator.writeString(cuisine);
+        }
+        generator.writeEndArray();
+        generator.writeStringField("imageLink", template.getImageLink());
+        generator.writeStringField("open", format(openMinute));
+        generator.writeStringField("close", format(closeMinute));
+        generator.writeArrayFieldStart("deals");
+        for (int d = 0; d < deals; d++) {
+            Deal dealTemplate = template.getDeals().get(d % template.getDeals().size());
+            writeDeal(generator, dealTemplate, index, d, openMinute, closeMinute, random);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeDeal(JsonGenerator generator, Deal template, int restaurantIndex, int index,
+                                  int openMinute, int closeMinute, Random random) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("objectId", String.format("D%08d-%d-%s", restaurantIndex, index, template.getObjectId()));
+        generator.writeStringField("discount", String.valueOf(10 + 5 * random.nextInt(11)));
+        generator.writeStringField("dineIn", String.valueOf(random.nextBoolean()));
+        generator.writeStringField("lightning", String.valueOf(random.nextInt(4) == 0));
+
+        int start = openMinute + random.nextInt(closeMinute - openMinute + 1);
+        int end = start + random.nextInt(closeMinute - start + 1);
+        switch (random.nextInt(3)) {
+            case 0:
+                generator.writeStringField("open", format(start));
+                generator.writeStringField("close", format(end));
+                break;
+            case 1:
+                generator.writeStringField("start", format(start));
+                generator.writeStringField("end", format(end));
+                break;
+            default:
+                break;
+        }
+        generator.writeStringField("qtyLeft", String.valueOf(random.nextInt(10)));
+        generator.writeEndObject();
+    }
+
+    private static String format(int minuteOfDay) {
+        return LocalTime.of(minuteOfDay / MINUTES_IN_HOUR, minuteOfDay % MINUTES_IN_HOUR).format(FORMATTER).toLowerCase(Locale.ROOT);
+    }
+
+    private static List<Restaurant> templates() {
+        try (InputStream inputStream = SyntheticFeed.class.getResourceAsStream("/data.json")) {
+            if (inputStream == null) {
+                throw new IllegalStateException("data.json not found on the test classpath");
+            }
+            return new RestaurantFeedParser(new ObjectMapper()).parse(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package au.com.eatclub.benchmark;
+
+import au.com.eatclub.serialization.TimeOfDayParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TimeOfDayParser} with the {@link SimpleDateFormat} conversion previously used by
+ * {@code TimeDeserializer} and {@code GetActiveDealsHandler}.
+ *
+ * <p>Run with {@code mvn -P benchmark test -Djmh.args="TimeParsingBenchmark -prof gc"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeParsingBenchmark {
+
+    @Param({"9:05am", "12:00PM", "11:59pm"})
+    public String time;
+
+    private final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("h:mma");
+
+    @Benchmark
+    public LocalTime simpleDateFormat() throws ParseException {
+        return simpleDateFormat.parse(time).toInstant().atZone(ZoneId.systemDefault()).toLocalTime();
+    }
+
+    @Benchmark
+    public LocalTime timeOfDayParser() {
+        return TimeOfDayParser.parse(time);
+    }
+
+    @Benchmark
+    public int timeOfDayParserMinuteOfDay() {
+        return TimeOfDayParser.parseMinuteOfDay(time);
+    }
+}
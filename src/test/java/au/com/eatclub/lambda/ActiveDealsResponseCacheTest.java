@@ -0,0 +1,67 @@
+package au.com.eatclub.lambda;
+
+import au.com.eatclub.snapshot.DealSnapshot;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link ActiveDealsResponseCache}.
+ */
+class ActiveDealsResponseCacheTest {
+    private static final String BODY = "[{\"dealObjectId\":\"1\"}]";
+
+    private final ActiveDealsResponseCache cache = new ActiveDealsResponseCache(1024);
+
+    @Test
+    void shouldServeBodyForSameVersionAndMinute() {
+        cache.put(1, 600, BODY);
+
+        assertEquals(BODY, cache.get(1, 600));
+        assertNull(cache.get(1, 601));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.size());
+        assertEquals(ActiveDealsResponseCache.estimateBytes(BODY), cache.footprintBytes());
+    }
+
+    @Test
+    void shouldDropOlderVersionWhenNewerIsStored() {
+        cache.put(1, 600, BODY);
+        cache.put(2, 601, BODY);
+
+        assertNull(cache.get(1, 600));
+        assertEquals(BODY, cache.get(2, 601));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void shouldIgnoreBodiesOfOlderVersion() {
+        cache.put(2, 600, BODY);
+        cache.put(1, 601, BODY);
+
+        assertNull(cache.get(1, 601));
+        assertEquals(BODY, cache.get(2, 600));
+    }
+
+    @Test
+    void shouldNeverCacheWithoutSnapshotVersion() {
+        cache.put(DealSnapshot.NO_VERSION, 600, BODY);
+
+        assertNull(cache.get(DealSnapshot.NO_VERSION, 600));
+        assertEquals(0, cache.footprintBytes());
+    }
+
+    @Test
+    void shouldStopCachingAtMemoryBudget() {
+        ActiveDealsResponseCache small = new ActiveDealsResponseCache(2 * ActiveDealsResponseCache.estimateBytes(BODY));
+        for (int minute = 0; minute < 10; minute++) {
+            small.put(1, minute, BODY);
+        }
+
+        assertEquals(2, small.size());
+        assertEquals(2 * ActiveDealsResponseCache.estimateBytes(BODY), small.footprintBytes());
+        assertNull(small.get(1, 2));
+    }
+}
@@ -1,11 +1,14 @@
 package au.com.eatclub.lambda;
 
 import au.com.eatclub.model.ActiveDeal;
+import au.com.eatclub.model.ActiveDealBatch;
 import au.com.eatclub.service.RestaurantDealService;
+import au.com.eatclub.snapshot.DealFilter;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -26,6 +29,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
 
@@ -127,6 +132,176 @@ class GetActiveDealHandlerTest {
         assertTrue(response.getBody().contains("Invalid time format. Use format: h:mma"));
     }
 
+    @Test
+    void testBatchTimesListEachDealOnce() throws Exception {
+        ActiveDeal early = new ActiveDeal();
+        early.setDealObjectId("1");
+        ActiveDeal late = new ActiveDeal();
+        late.setDealObjectId("2");
+        when(restaurantService.getAllActiveDealsAtTimes(any())).thenReturn(Map.of(
+                LocalTime.of(17, 0), List.of(early),
+                LocalTime.of(17, 30), List.of(early, late)));
+
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("timeOfDay", "5:00PM,5:30PM"));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+
+        assertEquals(200, response.getStatusCode());
+        ActiveDealBatch batch = objectMapper.readValue(response.getBody(), ActiveDealBatch.class);
+        assertEquals(2, batch.getDeals().size());
+        assertEquals(List.of(0), batch.getActiveAt().get("5:00PM"));
+        assertEquals(List.of(0, 1), batch.getActiveAt().get("5:30PM"));
+    }
+
+    @Test
+    void testBatchTimesKeepEqualButDistinctDeals() throws Exception {
+        ActiveDeal first = new ActiveDeal();
+        first.setRestaurantName("Twin");
+        ActiveDeal second = new ActiveDeal();
+        second.setRestaurantName("Twin");
+        when(restaurantService.getAllActiveDealsAtTimes(any())).thenReturn(Map.of(
+                LocalTime.of(17, 0), List.of(first, second)));
+
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("timeOfDay", "5:00PM,5:30PM"));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+
+        assertEquals(200, response.getStatusCode());
+        ActiveDealBatch batch = objectMapper.readValue(response.getBody(), ActiveDealBatch.class);
+        assertEquals(2, batch.getDeals().size(), "Two snapshot deals with equal fields are still two deals");
+        assertEquals(List.of(0, 1), batch.getActiveAt().get("5:00PM"));
+    }
+
+    @Test
+    void testBatchTimesWithInvalidTime() {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("timeOfDay", "5:00PM,17:30"));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+        assertEquals(400, response.getStatusCode());
+        assertTrue(response.getBody().contains("Invalid time format. Use format: h:mma"));
+    }
+
+    @Test
+    void testValidTimeWindow() throws Exception {
+        ActiveDeal mockDeal = new ActiveDeal();
+        mockDeal.setDealObjectId("456");
+        mockDeal.setActiveFrom(LocalTime.of(17, 0));
+        mockDeal.setActiveTo(LocalTime.of(21, 0));
+        when(restaurantService.getAllActiveDealsBetween(LocalTime.of(18, 0), LocalTime.of(19, 0)))
+                .thenReturn(Collections.singletonList(mockDeal));
+
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("from", "6:00pm", "to", "7:00pm"));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+
+        assertEquals(200, response.getStatusCode());
+        assertTrue(response.getBody().contains("\"activeFrom\":\"5:00PM\""));
+        assertTrue(response.getBody().contains("\"activeTo\":\"9:00PM\""));
+    }
+
+    @Test
+    void testTimeWindowMissingBound() {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("from", "6:00pm"));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+        assertEquals(400, response.getStatusCode());
+        assertTrue(response.getBody().contains("Missing required parameter: to"));
+    }
+
+    @Test
+    void testPageWrittenByService() throws Exception {
+        doAnswer(invocation -> {
+            JsonGenerator generator = invocation.getArgument(4);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("deals");
+            generator.writeEndArray();
+            generator.writeStringField("nextCursor", "abc");
+            generator.writeEndObject();
+            return null;
+        }).when(restaurantService).writeActiveDealsPageAt(eq(LocalTime.of(18, 30)), eq(DealFilter.NONE), eq("xyz"), eq(50), any(JsonGenerator.class));
+
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("timeOfDay", "6:30pm", "limit", "50", "cursor", "xyz"));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("{\"deals\":[],\"nextCursor\":\"abc\"}", response.getBody());
+    }
+
+    @Test
+    void testInvalidPageLimit() {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("timeOfDay", "6:30pm", "limit", "0"));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+        assertEquals(400, response.getStatusCode());
+        assertTrue(response.getBody().contains("Invalid limit"));
+    }
+
+    @Test
+    void testFilteredDeals() throws Exception {
+        ActiveDeal mockDeal = new ActiveDeal();
+        mockDeal.setDealObjectId("789");
+        when(restaurantService.getAllActiveDealsAtTime(LocalTime.of(15, 0),
+                new DealFilter("Richmond", null, true, null)))
+                .thenReturn(Collections.singletonList(mockDeal));
+
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("timeOfDay", "3:00pm", "suburb", "richmond", "dineIn", "true"));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+
+        assertEquals(200, response.getStatusCode());
+        assertTrue(response.getBody().contains("\"dealObjectId\":\"789\""));
+    }
+
+    @Test
+    void testInvalidBooleanFilter() {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("timeOfDay", "3:00pm", "lightning", "yes"));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+        assertEquals(400, response.getStatusCode());
+        assertTrue(response.getBody().contains("Invalid lightning. Use true or false"));
+    }
+
+    @Test
+    void testBestDeals() throws Exception {
+        ActiveDeal mockDeal = new ActiveDeal();
+        mockDeal.setDealObjectId("best");
+        mockDeal.setDiscount("50");
+        when(restaurantService.getBestActiveDealsAtTime(LocalTime.of(18, 30), 5, DealFilter.NONE))
+                .thenReturn(Collections.singletonList(mockDeal));
+
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("timeOfDay", "6:30pm", "top", "5"));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+
+        assertEquals(200, response.getStatusCode());
+        assertTrue(response.getBody().contains("\"dealObjectId\":\"best\""));
+    }
+
+    @Test
+    void testInvalidBestDeals() {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("timeOfDay", "6:30pm", "top", "101"));
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+        assertEquals(400, response.getStatusCode());
+        assertTrue(response.getBody().contains("Invalid top"));
+
+        request.setQueryStringParameters(Map.of("from", "6:00pm", "to", "7:00pm", "top", "5"));
+        response = handler.handleRequest(request, mockContext);
+        assertEquals(400, response.getStatusCode());
+        assertTrue(response.getBody().contains("top is only supported with a single timeOfDay"));
+    }
+
     @Test
     void testServiceException() throws Exception {
         when(restaurantService.getAllActiveDealsAtTime(any(LocalTime.class))).thenThrow(new RuntimeException("Test error"));
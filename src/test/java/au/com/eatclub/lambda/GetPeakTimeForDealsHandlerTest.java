@@ -1,6 +1,8 @@
 package au.com.eatclub.lambda;
 
+import au.com.eatclub.model.DealOccupancy;
 import au.com.eatclub.model.DealPeakTime;
+import au.com.eatclub.model.DealWindow;
 import au.com.eatclub.serialization.TimeDeserializer;
 import au.com.eatclub.serialization.TimeSerializer;
 import au.com.eatclub.service.RestaurantDealService;
@@ -19,9 +21,11 @@ import org.mockito.MockitoAnnotations;
 import java.time.LocalTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
@@ -85,4 +89,42 @@ class GetPeakTimeForDealsHandlerTest {
         assertEquals(LocalTime.of(11, 30), responseDeals.get(0).getPeakTimeEnd());
     }
 
+    @Test
+    void testTopPeakWindows() throws Exception {
+        when(restaurantService.findTopPeakWindows(2)).thenReturn(List.of(
+                new DealWindow(LocalTime.of(18, 0), LocalTime.of(21, 0), 9),
+                new DealWindow(LocalTime.of(17, 0), LocalTime.of(17, 59), 8)));
+
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("top", "2"));
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+
+        assertEquals(200, response.getStatusCode());
+        assertTrue(response.getBody().startsWith("[{\"windowStart\":\"6:00PM\",\"windowEnd\":\"9:00PM\",\"dealCount\":9}"));
+    }
+
+    @Test
+    void testOccupancyBuckets() throws Exception {
+        when(restaurantService.getOccupancy(720)).thenReturn(new DealOccupancy(720, new int[]{4, 9}));
+
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("bucketMinutes", "720"));
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("{\"bucketMinutes\":720,\"dealCounts\":[4,9]}", response.getBody());
+    }
+
+    @Test
+    void testInvalidPeakOptions() {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setQueryStringParameters(Map.of("minDeals", "zero"));
+        assertEquals(400, handler.handleRequest(request, mockContext).getStatusCode());
+
+        request.setQueryStringParameters(Map.of("top", "1", "minDeals", "2"));
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+        assertEquals(400, response.getStatusCode());
+        assertTrue(response.getBody().contains("Use only one of"));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package au.com.eatclub.lambda;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for {@link HandlerRuntime}.
+ */
+class HandlerRuntimeTest {
+
+    @Test
+    void shouldBundleSampleFeed() throws IOException {
+        try (InputStream inputStream = HandlerRuntime.class.getResourceAsStream(HandlerRuntime.SAMPLE_FEED)) {
+            assertNotNull(inputStream);
+        }
+    }
+
+    @Test
+    void shouldShareOneContextBetweenHandlers() {
+        HandlerRuntime runtime = HandlerRuntime.get();
+
+        assertSame(runtime, HandlerRuntime.get());
+        assertSame(runtime.service(), HandlerRuntime.get().service());
+        assertSame(runtime.objectMapper(), HandlerRuntime.get().objectMapper());
+    }
+
+    @Test
+    void shouldPrimeAgainstSampleFeedWithoutNetwork() {
+        assertDoesNotThrow(() -> HandlerRuntime.get().prime());
+    }
+}
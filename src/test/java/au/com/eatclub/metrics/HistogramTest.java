@@ -0,0 +1,87 @@
+package au.com.eatclub.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Histogram}.
+ */
+class HistogramTest {
+
+    @Test
+    void shouldReadBackValuesWithinOneThirtySecond() {
+        Random random = new Random(5);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> 1 + random.nextInt(Long.SIZE - 1);
+            int bucket = Histogram.bucketOf(value);
+
+            assertTrue(bucket >= 0 && bucket < Histogram.BUCKETS, "bucket of " + value);
+            assertTrue(Histogram.lowerBound(bucket) <= value, "lower bound of " + value);
+            assertTrue(bucket + 1 == Histogram.BUCKETS || value < Histogram.lowerBound(bucket + 1), "upper bound of " + value);
+            assertTrue(Math.abs(Histogram.midpoint(bucket) - value) <= value / 32.0, "midpoint of " + value);
+        }
+        assertEquals(Histogram.BUCKETS - 1, Histogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void shouldReportQuantilesOfRecordedValues() {
+        Histogram histogram = new Histogram();
+        long[] values = new long[10_000];
+        Random random = new Random(11);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 + random.nextInt(1_000_000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        Histogram.Snapshot snapshot = histogram.drain();
+
+        assertEquals(values.length, snapshot.count());
+        assertEquals(Arrays.stream(values).sum(), snapshot.sum());
+        assertEquals(values[0], snapshot.min());
+        assertEquals(values[values.length - 1], snapshot.max());
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            long expected = values[(int) Math.ceil(q * values.length) - 1];
+            assertTrue(Math.abs(snapshot.valueAtQuantile(q) - expected) <= expected / 32.0, "p" + q);
+        }
+    }
+
+    @Test
+    void shouldResetOnDrain() {
+        Histogram histogram = new Histogram();
+        histogram.record(42);
+        histogram.record(-1);
+
+        Histogram.Snapshot first = histogram.drain();
+        Histogram.Snapshot second = histogram.drain();
+
+        assertEquals(2, first.count());
+        assertEquals(0, first.min());
+        assertEquals(42, first.max());
+        assertEquals(0, second.count());
+        assertEquals(0, second.valuesAndCounts(100)[0].length);
+    }
+
+    @Test
+    void shouldMergeValuesToStayWithinLimit() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value < 1_000_000; value = value * 11 / 10 + 1) {
+            histogram.record(value);
+        }
+        Histogram.Snapshot snapshot = histogram.drain();
+
+        long[][] valuesAndCounts = snapshot.valuesAndCounts(100);
+
+        assertTrue(valuesAndCounts[0].length <= 100);
+        assertEquals(valuesAndCounts[0].length, valuesAndCounts[1].length);
+        assertEquals(snapshot.count(), Arrays.stream(valuesAndCounts[1]).sum());
+        for (int i = 1; i < valuesAndCounts[0].length; i++) {
+            assertTrue(valuesAndCounts[0][i - 1] < valuesAndCounts[0][i]);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package au.com.eatclub.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link MetricsRegistry}, reading its output back as EMF JSON.
+ */
+class MetricsRegistryTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void shouldDrainRecordedMetricsAsEmf() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry("Test/Namespace", "test-function", Duration.ofSeconds(60));
+        registry.record(Metric.QUERY, 10);
+        registry.record(Metric.QUERY, 30);
+        registry.record(Metric.REQUEST_ALLOCATED_BYTES, 4096);
+        registry.increment(Metric.RESPONSE_CACHE_HIT);
+        registry.increment(Metric.RESPONSE_CACHE_HIT);
+
+        JsonNode emf = objectMapper.readTree(registry.drain(1_700_000_000_000L));
+
+        JsonNode aws = emf.get("_aws");
+        assertEquals(1_700_000_000_000L, aws.get("Timestamp").asLong());
+        JsonNode directive = aws.get("CloudWatchMetrics").get(0);
+        assertEquals("Test/Namespace", directive.get("Namespace").asText());
+        assertEquals("FunctionName", directive.get("Dimensions").get(0).get(0).asText());
+        List<String> declared = new ArrayList<>();
+        for (JsonNode metric : directive.get("Metrics")) {
+            declared.add(metric.get("Name").asText() + "/" + metric.get("Unit").asText());
+        }
+        assertEquals(List.of("RequestAllocatedBytes/Bytes", "QueryLatency/Microseconds", "ResponseCacheHit/Count"), declared);
+
+        assertEquals("test-function", emf.get("FunctionName").asText());
+        JsonNode query = emf.get("QueryLatency");
+        assertEquals(2, query.get("Count").asLong());
+        assertEquals(40, query.get("Sum").asLong());
+        assertEquals(10, query.get("Min").asLong());
+        assertEquals(30, query.get("Max").asLong());
+        assertEquals(2, query.get("Values").size());
+        assertEquals(2, query.get("Counts").get(0).asLong() + query.get("Counts").get(1).asLong());
+        assertEquals(2, emf.get("ResponseCacheHit").asLong());
+        assertFalse(emf.has("ResponseCacheMiss"));
+        assertFalse(emf.has("RequestLatency"));
+    }
+
+    @Test
+    void shouldResetAfterDrain() {
+        MetricsRegistry registry = new MetricsRegistry("Test/Namespace", "test-function", Duration.ofSeconds(60));
+        assertNull(registry.drain(0));
+
+        registry.increment(Metric.UPSTREAM_OK);
+        assertTrue(registry.drain(0) != null);
+        assertNull(registry.drain(0));
+
+        registry.record(Metric.SERIALIZATION, 5);
+        registry.discard();
+        assertNull(registry.drain(0));
+    }
+
+    @Test
+    void shouldKeepAtMostOneHundredValuesPerHistogram() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry("Test/Namespace", "test-function", Duration.ZERO);
+        for (long value = 0; value < 1_000_000; value += 7) {
+            registry.record(Metric.REQUEST_LATENCY, value);
+        }
+
+        JsonNode latency = objectMapper.readTree(registry.drain(0)).get("RequestLatency");
+
+        assertTrue(latency.get("Values").size() <= MetricsRegistry.MAX_VALUES);
+        long counted = 0;
+        for (JsonNode count : latency.get("Counts")) {
+            counted += count.asLong();
+        }
+        assertEquals(latency.get("Count").asLong(), counted);
+    }
+}
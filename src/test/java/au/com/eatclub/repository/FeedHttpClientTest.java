@@ -0,0 +1,141 @@
+package au.com.eatclub.repository;
+
+import au.com.eatclub.model.Restaurant;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link FeedHttpClient} and the {@link FeedTransfer} it reports to, against a
+ * {@link MockWebServer}.
+ */
+class FeedHttpClientTest {
+    private static final String FEED = "{\"restaurants\": [{\"objectId\": \"1\", \"name\": \"Restaurant A\"}]}";
+
+    private final MockWebServer server = new MockWebServer();
+    @TempDir
+    Path cacheDir;
+    private OkHttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server.start();
+        client = FeedHttpClient.build(cacheDir, 1024 * 1024, Duration.ofSeconds(2), Duration.ofSeconds(2), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void shouldNegotiateCompressionAndCountCompressedBytes() throws Exception {
+        byte[] compressed = gzip(FEED);
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(new Buffer().write(compressed)));
+
+        FeedTransfer transfer = new FeedTransfer();
+        assertEquals(FEED, get(transfer));
+
+        assertEquals("br,gzip", server.takeRequest().getHeader("Accept-Encoding"));
+        assertEquals(compressed.length, transfer.bytesTransferred());
+        assertTrue(transfer.timeToFirstByteNanos() >= 0);
+        assertEquals(FeedTransfer.CacheUse.MISS, transfer.cacheUse());
+    }
+
+    @Test
+    void shouldServeFreshResponsesFromDiskCache() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody(FEED));
+
+        get(new FeedTransfer());
+        FeedTransfer cached = new FeedTransfer();
+        assertEquals(FEED, get(cached));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(FeedTransfer.CacheUse.HIT, cached.cacheUse());
+        assertEquals(0, cached.bytesTransferred());
+        assertEquals(-1, cached.timeToFirstByteNanos());
+    }
+
+    @Test
+    void shouldRevalidateWithCachedValidators() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-cache").setHeader("ETag", "\"v1\"").setBody(FEED));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+
+        get(new FeedTransfer());
+        FeedTransfer revalidated = new FeedTransfer();
+        assertEquals(FEED, get(revalidated));
+
+        server.takeRequest();
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+        assertEquals(FeedTransfer.CacheUse.VALIDATED, revalidated.cacheUse());
+    }
+
+    @Test
+    void shouldDisableCacheWithoutSize() {
+        assertNull(FeedHttpClient.build(null, 1024, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1)).cache());
+        assertNull(FeedHttpClient.build(Path.of("/tmp"), 0, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1)).cache());
+    }
+
+    @Test
+    void repositoryShouldKeepParsedFeedWhenHttpCacheRevalidates() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-cache").setHeader("ETag", "\"v1\"").setBody(FEED));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-cache").setHeader("ETag", "\"v2\"").setBody(FEED));
+        RestaurantRepository repository = new RestaurantRepository();
+        repository.setHttpClient(client);
+        repository.setFeedUrl(server.url("/feed.json").toString());
+        repository.setSnapshotFile(null);
+        repository.setCacheTtl(Duration.ZERO);
+        repository.setMaxStaleness(Duration.ZERO);
+
+        List<Restaurant> first = repository.getRestaurantDataFromApi();
+        List<Restaurant> revalidated = repository.getRestaurantDataFromApi();
+        List<Restaurant> changed = repository.getRestaurantDataFromApi();
+
+        assertSame(first, revalidated, "A revalidated cached feed should reuse the parsed snapshot");
+        assertTrue(first != changed, "A changed feed should be parsed again");
+        assertEquals(1, changed.size());
+        server.takeRequest();
+        RecordedRequest revalidation = server.takeRequest();
+        assertEquals("\"v1\"", revalidation.getHeader("If-None-Match"));
+        assertEquals("max-age=0", revalidation.getHeader("Cache-Control"));
+    }
+
+    private String get(FeedTransfer transfer) throws IOException {
+        Request request = new Request.Builder().url(server.url("/feed.json")).tag(FeedTransfer.class, transfer).build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package au.com.eatclub.repository;
+
+import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.Restaurant;
+import au.com.eatclub.snapshot.MappedFeed;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link FeedSnapshotFile}.
+ */
+class FeedSnapshotFileTest {
+    private static final String TEST_DATA = "src/test/resources/data.json";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRoundTripTestData() throws IOException {
+        List<Restaurant> restaurants;
+        try (InputStream inputStream = Files.newInputStream(Paths.get(TEST_DATA))) {
+            restaurants = new RestaurantFeedParser(new ObjectMapper()).parse(inputStream);
+        }
+        Path path = directory.resolve("feed.snapshot");
+
+        FeedSnapshotFile.write(path, restaurants, "\"v1\"", "Wed, 01 May 2024 10:00:00 GMT");
+        FeedSnapshotFile file = FeedSnapshotFile.read(path);
+
+        assertTrue(file.restaurants() instanceof MappedFeed);
+        assertEquals(restaurants, file.restaurants());
+        assertEquals("\"v1\"", file.etag());
+        assertEquals("Wed, 01 May 2024 10:00:00 GMT", file.lastModified());
+        assertTrue(Files.size(path) < Files.size(Paths.get(TEST_DATA)));
+    }
+
+    @Test
+    void shouldKeepMissingValues() throws IOException {
+        Deal deal = new Deal();
+        deal.setStart(LocalTime.of(9, 30, 15));
+        deal.setDineIn(true);
+        List<Restaurant> restaurants = List.of(
+                Restaurant.builder().objectId("r1").deals(List.of(deal)).cuisines(List.of()).build(),
+                Restaurant.builder().build());
+        Path path = directory.resolve("feed.snapshot");
+
+        FeedSnapshotFile.write(path, restaurants, null, null);
+        FeedSnapshotFile file = FeedSnapshotFile.read(path);
+
+        assertEquals(restaurants, file.restaurants());
+        assertNull(file.etag());
+        assertNull(file.restaurants().get(1).getDeals());
+    }
+
+    @Test
+    void shouldRejectCorruptFile() throws IOException {
+        Path path = directory.resolve("feed.snapshot");
+        FeedSnapshotFile.write(path, List.of(Restaurant.builder().objectId("r1").name("A").build()), null, null);
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 3] ^= 1;
+        Files.write(path, bytes);
+
+        IOException thrown = assertThrows(IOException.class, () -> FeedSnapshotFile.read(path));
+        assertTrue(thrown.getMessage().contains("checksum mismatch"));
+    }
+
+    @Test
+    void shouldRejectOtherFormatVersionAndTruncatedFile() throws IOException {
+        Path path = directory.resolve("feed.snapshot");
+        FeedSnapshotFile.write(path, List.of(Restaurant.builder().objectId("r1").build()), null, null);
+        byte[] bytes = Files.readAllBytes(path);
+
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+        assertTrue(assertThrows(IOException.class, () -> FeedSnapshotFile.read(path)).getMessage().contains("truncated"));
+
+        ByteBuffer.wrap(bytes).putInt(Integer.BYTES, FeedSnapshotFile.FORMAT_VERSION + 1);
+        Files.write(path, bytes);
+        assertTrue(assertThrows(IOException.class, () -> FeedSnapshotFile.read(path)).getMessage().contains("format version"));
+    }
+}
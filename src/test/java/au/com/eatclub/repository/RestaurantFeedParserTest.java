@@ -0,0 +1,84 @@
+package au.com.eatclub.repository;
+
+import au.com.eatclub.model.Restaurant;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link RestaurantFeedParser}.
+ */
+class RestaurantFeedParserTest {
+    private static final String TEST_DATA = "src/test/resources/data.json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RestaurantFeedParser parser = new RestaurantFeedParser(objectMapper);
+
+    @Test
+    void shouldMatchTreeBasedParsingOfTestData() throws IOException {
+        List<Restaurant> expected;
+        try (InputStream inputStream = Files.newInputStream(Paths.get(TEST_DATA))) {
+            JsonNode restaurantsNode = objectMapper.readTree(inputStream).get("restaurants");
+            expected = objectMapper.treeToValue(
+                    restaurantsNode,
+                    objectMapper.getTypeFactory().constructCollectionType(List.class, Restaurant.class)
+            );
+        }
+
+        try (InputStream inputStream = Files.newInputStream(Paths.get(TEST_DATA))) {
+            assertEquals(expected, parser.parse(inputStream));
+        }
+    }
+
+    @Test
+    void shouldHandEachRestaurantToConsumer() throws IOException {
+        List<String> objectIds = new ArrayList<>();
+
+        int count = parser.parse(streamOf("{\"restaurants\": [{\"objectId\": \"1\"}, {\"objectId\": \"2\"}]}"),
+                restaurant -> objectIds.add(restaurant.getObjectId()));
+
+        assertEquals(2, count);
+        assertEquals(List.of("1", "2"), objectIds);
+    }
+
+    @Test
+    void shouldSkipOtherTopLevelFields() throws IOException {
+        List<Restaurant> restaurants = parser.parse(streamOf("{\"meta\": {\"nested\": [1, 2, {\"restaurants\": 3}]},"
+                + " \"restaurants\": [{\"objectId\": \"1\"}], \"trailer\": true}"));
+
+        assertEquals(1, restaurants.size());
+        assertEquals("1", restaurants.get(0).getObjectId());
+    }
+
+    @Test
+    void shouldRejectFeedWithoutRestaurantsArray() {
+        IOException missing = assertThrows(IOException.class, () -> parser.parse(streamOf("{\"other\": []}")));
+        IOException notArray = assertThrows(IOException.class, () -> parser.parse(streamOf("{\"restaurants\": {}}")));
+        IOException notObject = assertThrows(IOException.class, () -> parser.parse(streamOf("[]")));
+
+        assertEquals(RestaurantFeedParser.INVALID_FORMAT_MESSAGE, missing.getMessage());
+        assertEquals(RestaurantFeedParser.INVALID_FORMAT_MESSAGE, notArray.getMessage());
+        assertEquals(RestaurantFeedParser.INVALID_FORMAT_MESSAGE, notObject.getMessage());
+    }
+
+    @Test
+    void shouldRejectTruncatedFeed() {
+        assertThrows(IOException.class, () -> parser.parse(streamOf("{\"restaurants\": [{\"objectId\": \"1\"}")));
+    }
+
+    private static InputStream streamOf(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
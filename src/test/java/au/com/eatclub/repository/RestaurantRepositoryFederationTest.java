@@ -0,0 +1,173 @@
+package au.com.eatclub.repository;
+
+import au.com.eatclub.model.Restaurant;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for a {@link RestaurantRepository} merging several feeds, each served by its own
+ * {@link MockWebServer}.
+ */
+class RestaurantRepositoryFederationTest {
+    private final List<MockWebServer> servers = new ArrayList<>();
+    private RestaurantRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new RestaurantRepository();
+        repository.setHttpClient(FeedHttpClient.build(null, 0, Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(10)));
+        repository.setSnapshotFile(null);
+        repository.setCacheTtl(Duration.ZERO);
+        repository.setMaxStaleness(Duration.ZERO);
+        repository.setFeedTimeout(Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (MockWebServer server : servers) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    void shouldMergeFeedsKeepingFirstRestaurantOfEachObjectId() throws Exception {
+        MockWebServer north = feed(feedResponse("\"n1\"", "1", "North A", "2", "North B"));
+        MockWebServer south = feed(feedResponse("\"s1\"", "2", "South B", "3", "South C"));
+        useFeeds(north, south);
+
+        List<Restaurant> restaurants = repository.getRestaurantDataFromApi();
+
+        assertEquals(List.of("North A", "North B", "South C"), names(restaurants));
+    }
+
+    @Test
+    void shouldReuseMergedFeedWhenNoFeedChanged() throws Exception {
+        MockWebServer north = feed(feedResponse("\"n1\"", "1", "North A"), notModified("\"n1\""));
+        MockWebServer south = feed(feedResponse("\"s1\"", "2", "South B"), notModified("\"s1\""));
+        useFeeds(north, south);
+
+        List<Restaurant> first = repository.getRestaurantDataFromApi();
+        List<Restaurant> revalidated = repository.getRestaurantDataFromApi();
+
+        assertSame(first, revalidated, "Feeds that all revalidated should reuse the merged list");
+        north.takeRequest();
+        assertEquals("\"n1\"", north.takeRequest().getHeader("If-None-Match"));
+        south.takeRequest();
+        assertEquals("\"s1\"", south.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    void shouldMergeLastGoodVersionOfFeedThatTimesOut() throws Exception {
+        MockWebServer north = feed(feedResponse("\"n1\"", "1", "North A"), feedResponse("\"n2\"", "1", "North A v2"));
+        MockWebServer south = feed(feedResponse("\"s1\"", "2", "South B"),
+                feedResponse("\"s2\"", "2", "South B v2").setHeadersDelay(3, TimeUnit.SECONDS));
+        useFeeds(north, south);
+        repository.setFeedTimeout(Duration.ofMillis(300));
+
+        repository.getRestaurantDataFromApi();
+        long started = System.nanoTime();
+        List<Restaurant> restaurants = repository.getRestaurantDataFromApi();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertEquals(List.of("North A v2", "South B"), names(restaurants));
+        assertTrue(elapsedMillis < 2000, "The slow feed should not hold up the refresh, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void shouldFetchFeedsInParallel() throws Exception {
+        List<MockWebServer> feeds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            feeds.add(feed(feedResponse("\"v1\"", String.valueOf(i), "Restaurant " + i)
+                    .setHeadersDelay(500, TimeUnit.MILLISECONDS)));
+        }
+        useFeeds(feeds.toArray(new MockWebServer[0]));
+
+        long started = System.nanoTime();
+        List<Restaurant> restaurants = repository.getRestaurantDataFromApi();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertEquals(4, restaurants.size());
+        assertTrue(elapsedMillis < 1500, "Four 500 ms feeds should take about 500 ms together, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void shouldLeaveOutFeedWithoutGoodVersionAndFailOnlyIfAllFeedsFail() throws Exception {
+        MockWebServer north = feed(feedResponse("\"n1\"", "1", "North A"), new MockResponse().setResponseCode(500));
+        MockWebServer south = feed(new MockResponse().setResponseCode(500), new MockResponse().setResponseCode(500));
+        useFeeds(north, south);
+
+        assertEquals(List.of("North A"), names(repository.getRestaurantDataFromApi()));
+        IOException failure = assertThrows(IOException.class, repository::getRestaurantDataFromApi);
+        assertEquals(1, failure.getSuppressed().length);
+    }
+
+    @Test
+    void shouldMergeInFeedOrder() {
+        Restaurant a = restaurant("1", "A");
+        Restaurant b = restaurant("2", "B");
+        Restaurant duplicateA = restaurant("1", "A again");
+        Restaurant withoutId = restaurant(null, "No id");
+
+        List<Restaurant> merged = RestaurantRepository.merge(List.of(List.of(a, withoutId), List.of(duplicateA, b, withoutId)));
+
+        assertEquals(List.of(a, withoutId, b, withoutId), merged);
+    }
+
+    private MockWebServer feed(MockResponse... responses) throws IOException {
+        MockWebServer server = new MockWebServer();
+        for (MockResponse response : responses) {
+            server.enqueue(response);
+        }
+        server.start();
+        servers.add(server);
+        return server;
+    }
+
+    private void useFeeds(MockWebServer... feeds) {
+        List<String> urls = new ArrayList<>();
+        for (MockWebServer feed : feeds) {
+            urls.add(feed.url("/challengedata.json").toString());
+        }
+        repository.setFeedUrls(urls);
+    }
+
+    private static MockResponse feedResponse(String etag, String... idsAndNames) {
+        StringBuilder body = new StringBuilder("{\"restaurants\": [");
+        for (int i = 0; i < idsAndNames.length; i += 2) {
+            body.append(i == 0 ? "" : ",")
+                    .append("{\"objectId\": \"").append(idsAndNames[i])
+                    .append("\", \"name\": \"").append(idsAndNames[i + 1]).append("\"}");
+        }
+        return new MockResponse().setHeader("ETag", etag).setBody(body.append("]}").toString());
+    }
+
+    private static MockResponse notModified(String etag) {
+        return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+    }
+
+    private static Restaurant restaurant(String objectId, String name) {
+        return Restaurant.builder().objectId(objectId).name(name).build();
+    }
+
+    private static List<String> names(List<Restaurant> restaurants) {
+        List<String> names = new ArrayList<>();
+        for (Restaurant restaurant : restaurants) {
+            names.add(restaurant.getName());
+        }
+        return names;
+    }
+}
@@ -2,6 +2,7 @@
 package au.com.eatclub.repository;
 
 import au.com.eatclub.model.Restaurant;
+import au.com.eatclub.snapshot.MappedFeed;
 import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -10,21 +11,41 @@ import okhttp3.ResponseBody;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -85,7 +106,7 @@ class RestaurantRepositoryTest {
     @Test
     void getRestaurantDataFromApi_success() throws IOException {
         when(mockResponse.isSuccessful()).thenReturn(true);
-        when(mockResponseBody.string()).thenReturn(SUCCESS_JSON_RESPONSE);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE));
 
         List<Restaurant> expectedRestaurants = List.of(
                  Restaurant.builder().objectId("1").name("Restaurant A").cuisines(List.of("Italian")).build(),
@@ -98,10 +119,32 @@ class RestaurantRepositoryTest {
         assertEquals(expectedRestaurants.size(), actualRestaurants.size(), "The number of restaurants should match");
     }
 
+    @Test
+    void getRestaurantDataFromApi_requestsConfiguredFeedUrl() throws IOException {
+        ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE));
+
+        restaurantRepository.getRestaurantDataFromApi();
+
+        verify(mockHttpClient).newCall(requests.capture());
+        assertEquals(RestaurantRepository.API_URL, requests.getValue().url().toString());
+
+        restaurantRepository.setFeedUrl("http://127.0.0.1:8081/feed.json");
+        restaurantRepository.setCacheTtl(Duration.ZERO);
+        restaurantRepository.setMaxStaleness(Duration.ZERO);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE));
+
+        restaurantRepository.getRestaurantDataFromApi();
+
+        verify(mockHttpClient, times(2)).newCall(requests.capture());
+        assertEquals("http://127.0.0.1:8081/feed.json", requests.getValue().url().toString());
+    }
+
     @Test
     void getRestaurantDataFromApi_emptyRestaurantsArray() throws IOException {
         when(mockResponse.isSuccessful()).thenReturn(true);
-        when(mockResponseBody.string()).thenReturn(EMPTY_RESTAURANTS_JSON_RESPONSE);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(EMPTY_RESTAURANTS_JSON_RESPONSE));
 
         List<Restaurant> actualRestaurants = restaurantRepository.getRestaurantDataFromApi();
 
@@ -132,11 +175,7 @@ class RestaurantRepositoryTest {
     @Test
     void getRestaurantDataFromApi_missingRestaurantsNode() {
         when(mockResponse.isSuccessful()).thenReturn(true);
-        try {
-            when(mockResponseBody.string()).thenReturn(MISSING_RESTAURANTS_JSON_RESPONSE);
-        } catch (IOException e) {
-            fail("IOException should not occur when setting mock response body string.");
-        }
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(MISSING_RESTAURANTS_JSON_RESPONSE));
 
         IOException thrown = assertThrows(IOException.class, () -> {
             restaurantRepository.getRestaurantDataFromApi();
@@ -149,11 +188,7 @@ class RestaurantRepositoryTest {
     @Test
     void getRestaurantDataFromApi_restaurantsNodeNotArray() {
         when(mockResponse.isSuccessful()).thenReturn(true);
-        try {
-            when(mockResponseBody.string()).thenReturn(NON_ARRAY_RESTAURANTS_JSON_RESPONSE);
-        } catch (IOException e) {
-            fail("IOException should not occur when setting mock response body string.");
-        }
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(NON_ARRAY_RESTAURANTS_JSON_RESPONSE));
 
         IOException thrown = assertThrows(IOException.class, restaurantRepository::getRestaurantDataFromApi, "IOException should be thrown when 'restaurants' node is not an array");
 
@@ -164,11 +199,7 @@ class RestaurantRepositoryTest {
     @Test
     void getRestaurantDataFromApi_malformedJson() {
         when(mockResponse.isSuccessful()).thenReturn(true);
-        try {
-            when(mockResponseBody.string()).thenReturn(MALFORMED_JSON_RESPONSE);
-        } catch (IOException e) {
-            fail("IOException should not occur when setting mock response body string.");
-        }
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(MALFORMED_JSON_RESPONSE));
 
         assertThrows(IOException.class, restaurantRepository::getRestaurantDataFromApi, "IOException should be thrown for malformed JSON response");
     }
@@ -181,4 +212,229 @@ class RestaurantRepositoryTest {
 
         assertEquals("Simulated network error", thrown.getMessage(), "Error message should match the simulated network error");
     }
+
+    @Test
+    void getRestaurantDataFromApi_servesCachedSnapshotWithinTtl() throws IOException {
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE));
+
+        List<Restaurant> first = restaurantRepository.getRestaurantDataFromApi();
+        List<Restaurant> second = restaurantRepository.getRestaurantDataFromApi();
+
+        assertSame(first, second, "Cached snapshot should be returned within the TTL");
+        verify(mockHttpClient, times(1)).newCall(any(Request.class));
+    }
+
+    @Test
+    void getRestaurantDataFromApi_notModifiedReusesParsedSnapshot() throws IOException {
+        restaurantRepository.setCacheTtl(Duration.ZERO);
+        restaurantRepository.setMaxStaleness(Duration.ZERO);
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponse.code()).thenReturn(200);
+        when(mockResponse.header("ETag")).thenReturn("\"v1\"");
+        when(mockResponse.header("Last-Modified")).thenReturn("Wed, 01 May 2024 10:00:00 GMT");
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE));
+
+        List<Restaurant> first = restaurantRepository.getRestaurantDataFromApi();
+
+        when(mockResponse.isSuccessful()).thenReturn(false);
+        when(mockResponse.code()).thenReturn(304);
+        List<Restaurant> second = restaurantRepository.getRestaurantDataFromApi();
+
+        assertSame(first, second, "A 304 response should reuse the parsed snapshot");
+        verify(mockResponseBody, times(1)).byteStream();
+
+        ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+        verify(mockHttpClient, times(2)).newCall(requests.capture());
+        assertNull(requests.getAllValues().get(0).header("If-None-Match"));
+        assertEquals("\"v1\"", requests.getAllValues().get(1).header("If-None-Match"));
+        assertEquals("Wed, 01 May 2024 10:00:00 GMT", requests.getAllValues().get(1).header("If-Modified-Since"));
+    }
+
+    @Test
+    void getRestaurantDataFromApi_changedFeedReplacesSnapshotAfterTtl() throws IOException {
+        restaurantRepository.setCacheTtl(Duration.ZERO);
+        restaurantRepository.setMaxStaleness(Duration.ZERO);
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponse.code()).thenReturn(200);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE), streamOf(EMPTY_RESTAURANTS_JSON_RESPONSE));
+
+        assertEquals(2, restaurantRepository.getRestaurantDataFromApi().size());
+        assertTrue(restaurantRepository.getRestaurantDataFromApi().isEmpty(), "A 200 response should replace the snapshot");
+    }
+
+    @Test
+    void getRestaurantDataFromApi_servesStaleSnapshotWhileRefreshingInBackground() throws Exception {
+        restaurantRepository.setCacheTtl(Duration.ZERO);
+        restaurantRepository.setMaxStaleness(Duration.ofHours(1));
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponse.code()).thenReturn(200);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE), streamOf(EMPTY_RESTAURANTS_JSON_RESPONSE));
+
+        List<Restaurant> first = restaurantRepository.getRestaurantDataFromApi();
+        List<Restaurant> stale = restaurantRepository.getRestaurantDataFromApi();
+
+        assertSame(first, stale, "A stale snapshot should be served while it is revalidated");
+        verify(mockResponse, timeout(5000).times(2)).close();
+        // The response is closed before the refreshed snapshot is published, so wait for it
+        restaurantRepository.setCacheTtl(Duration.ofHours(1));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!restaurantRepository.getRestaurantDataFromApi().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(restaurantRepository.getRestaurantDataFromApi().isEmpty(), "The background refresh should replace the snapshot");
+    }
+
+    @Test
+    void getRestaurantDataFromApi_failedBackgroundRefreshKeepsServingStaleSnapshot() throws IOException {
+        restaurantRepository.setCacheTtl(Duration.ZERO);
+        restaurantRepository.setMaxStaleness(Duration.ofHours(1));
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE));
+        List<Restaurant> first = restaurantRepository.getRestaurantDataFromApi();
+
+        when(mockCall.execute()).thenThrow(new IOException("Simulated network error"));
+
+        assertSame(first, restaurantRepository.getRestaurantDataFromApi());
+        verify(mockCall, timeout(5000).times(2)).execute();
+        assertSame(first, restaurantRepository.getRestaurantDataFromApi(), "Upstream failures should not reach callers within the max staleness");
+    }
+
+    @Test
+    void getRestaurantDataFromApi_failsOnceMaxStalenessIsExceeded() throws IOException {
+        restaurantRepository.setCacheTtl(Duration.ZERO);
+        restaurantRepository.setMaxStaleness(Duration.ZERO);
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE));
+        restaurantRepository.getRestaurantDataFromApi();
+
+        when(mockCall.execute()).thenThrow(new IOException("Simulated network error"));
+
+        IOException thrown = assertThrows(IOException.class, restaurantRepository::getRestaurantDataFromApi);
+        assertEquals("Simulated network error", thrown.getMessage());
+    }
+
+    @Test
+    void getRestaurantDataFromApi_concurrentCallersShareOneFetch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockCall.execute()).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return mockResponse;
+        });
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE));
+
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<List<Restaurant>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(restaurantRepository::getRestaurantDataFromApi));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (restaurantRepository.coalescedCallCount() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            List<Restaurant> first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<List<Restaurant>> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS), "Coalesced callers should share the same result");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(mockHttpClient, times(1)).newCall(any(Request.class));
+        assertEquals(1, restaurantRepository.fetchCount());
+        assertEquals(callers - 1, restaurantRepository.coalescedCallCount());
+    }
+
+    @Test
+    void getRestaurantDataFromApi_staleHitsDuringBackgroundRefreshAreNotCoalesced() throws Exception {
+        restaurantRepository.setCacheTtl(Duration.ZERO);
+        restaurantRepository.setMaxStaleness(Duration.ofHours(1));
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE), streamOf(SUCCESS_JSON_RESPONSE));
+        List<Restaurant> first = restaurantRepository.getRestaurantDataFromApi();
+
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockCall.execute()).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return mockResponse;
+        });
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertSame(first, restaurantRepository.getRestaurantDataFromApi());
+            }
+        } finally {
+            release.countDown();
+        }
+
+        verify(mockResponse, timeout(5000).times(2)).close();
+        assertEquals(2, restaurantRepository.fetchCount());
+        assertEquals(0, restaurantRepository.coalescedCallCount(), "Stale hits never waited on the fetch");
+    }
+
+    @Test
+    void getRestaurantDataFromApi_servesSnapshotFileWithoutUpstream(@TempDir Path directory) throws IOException {
+        Path snapshotFile = directory.resolve("feed.snapshot");
+        List<Restaurant> stored = List.of(Restaurant.builder().objectId("1").name("Restaurant A").build());
+        FeedSnapshotFile.write(snapshotFile, stored, "\"v1\"", null);
+        restaurantRepository.setSnapshotFile(snapshotFile);
+        when(mockCall.execute()).thenThrow(new IOException("Simulated network error"));
+
+        assertEquals(stored, restaurantRepository.getRestaurantDataFromApi());
+        verify(mockHttpClient, times(0)).newCall(any(Request.class));
+    }
+
+    @Test
+    void getCachedRestaurantData_mapsSnapshotFileWithoutUpstream(@TempDir Path directory) throws IOException {
+        Path snapshotFile = directory.resolve("feed.snapshot");
+        List<Restaurant> stored = List.of(Restaurant.builder().objectId("1").name("Restaurant A").build());
+        FeedSnapshotFile.write(snapshotFile, stored, "\"v1\"", null);
+        restaurantRepository.setSnapshotFile(snapshotFile);
+
+        List<Restaurant> cached = restaurantRepository.getCachedRestaurantData();
+
+        assertTrue(cached instanceof MappedFeed);
+        assertEquals(stored, cached);
+        assertSame(cached, restaurantRepository.getRestaurantDataFromApi());
+        verify(mockHttpClient, times(0)).newCall(any(Request.class));
+    }
+
+    @Test
+    void getCachedRestaurantData_skipsSnapshotFileOlderThanMaxStaleness(@TempDir Path directory) throws IOException {
+        Path snapshotFile = directory.resolve("feed.snapshot");
+        FeedSnapshotFile.write(snapshotFile, List.of(Restaurant.builder().objectId("1").build()), null, null);
+        Files.setLastModifiedTime(snapshotFile, FileTime.from(Instant.now().minus(Duration.ofHours(1))));
+        restaurantRepository.setSnapshotFile(snapshotFile);
+        restaurantRepository.setMaxStaleness(Duration.ofMinutes(10));
+
+        assertNull(restaurantRepository.getCachedRestaurantData());
+        verify(mockHttpClient, times(0)).newCall(any(Request.class));
+    }
+
+    @Test
+    void getRestaurantDataFromApi_writesFetchedFeedToSnapshotFile(@TempDir Path directory) throws Exception {
+        Path snapshotFile = directory.resolve("feed.snapshot");
+        restaurantRepository.setSnapshotFile(snapshotFile);
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponse.header("ETag")).thenReturn("\"v2\"");
+        when(mockResponseBody.byteStream()).thenReturn(streamOf(SUCCESS_JSON_RESPONSE));
+
+        List<Restaurant> fetched = restaurantRepository.getRestaurantDataFromApi();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Files.exists(snapshotFile) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        FeedSnapshotFile file = FeedSnapshotFile.read(snapshotFile);
+        assertEquals(fetched, file.restaurants());
+        assertEquals("\"v2\"", file.etag());
+    }
+
+    private static InputStream streamOf(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
 }
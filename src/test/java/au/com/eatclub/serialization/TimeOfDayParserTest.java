@@ -0,0 +1,63 @@
+package au.com.eatclub.serialization;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link TimeOfDayParser}, checked against the {@link SimpleDateFormat} conversion it
+ * replaced.
+ */
+class TimeOfDayParserTest {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("h:mma", Locale.ENGLISH);
+
+    @Test
+    void shouldMatchSimpleDateFormatForEveryMinuteOfTheDay() throws ParseException {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("h:mma");
+        for (int minuteOfDay = 0; minuteOfDay < 24 * 60; minuteOfDay++) {
+            LocalTime time = LocalTime.of(minuteOfDay / 60, minuteOfDay % 60);
+            for (String text : List.of(time.format(FORMATTER), time.format(FORMATTER).toLowerCase(Locale.ROOT))) {
+                LocalTime expected = simpleDateFormat.parse(text).toInstant().atZone(ZoneId.systemDefault()).toLocalTime();
+                assertEquals(expected, TimeOfDayParser.parse(text), "Failed to parse " + text);
+                assertEquals(minuteOfDay, TimeOfDayParser.parseMinuteOfDay(text));
+            }
+        }
+    }
+
+    @Test
+    void shouldParseLeadingZeroHour() {
+        assertEquals(LocalTime.of(16, 30), TimeOfDayParser.parse("04:30pm"));
+        assertEquals(LocalTime.of(0, 5), TimeOfDayParser.parse("12:05AM"));
+    }
+
+    @Test
+    void shouldParseFromCharacterBuffer() {
+        char[] buffer = "xx\"6:30pm\"".toCharArray();
+
+        assertEquals(18 * 60 + 30, TimeOfDayParser.parseMinuteOfDay(buffer, 3, 6));
+    }
+
+    @Test
+    void shouldReturnSharedInstances() {
+        assertSame(TimeOfDayParser.parse("9:05am"), TimeOfDayParser.parse("09:05AM"));
+    }
+
+    @Test
+    void shouldRejectInvalidTimes() {
+        for (String text : List.of("", " ", "12:00", "12pm", "12:00:00m", "12:00xpm", "12:00 AM", "13:00pm",
+                "0:30am", "10:60am", "1:5pm", "10:30amx", " 10:30am", "10:30a", "10-30am")) {
+            assertEquals(TimeOfDayParser.INVALID, TimeOfDayParser.parseMinuteOfDay(text), "Should reject '" + text + "'");
+            assertThrows(IllegalArgumentException.class, () -> TimeOfDayParser.parse(text));
+        }
+    }
+}
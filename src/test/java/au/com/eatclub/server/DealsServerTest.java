@@ -0,0 +1,129 @@
+package au.com.eatclub.server;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link DealsServer}, with stub handlers in place of the Lambda handlers.
+ */
+class DealsServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private DealsServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> activeDeals = (request, context) ->
+                new APIGatewayProxyResponseEvent()
+                        .withStatusCode("6:00pm".equals(request.getQueryStringParameters().get("timeOfDay")) ? 200 : 400)
+                        .withHeaders(Map.of("Content-Type", "application/json"))
+                        .withBody("{\"route\":\"deals\",\"parameters\":" + request.getQueryStringParameters().size() + "}");
+        RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> peakTimes = (request, context) -> {
+            if (request.getQueryStringParameters().containsKey("fail")) {
+                throw new IllegalStateException("handler failed");
+            }
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(200)
+                    .withHeaders(Map.of("Content-Type", "application/json"))
+                    .withBody("{\"route\":\"peak-times\"}");
+        };
+        server = new DealsServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                Map.of(DealsServer.ACTIVE_DEALS_PATH, activeDeals, DealsServer.PEAK_TIMES_PATH, peakTimes),
+                DealsServer.requestExecutor(4));
+        server.listen();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void shouldRouteRequestsToHandlers() throws Exception {
+        HttpResponse<String> deals = get("/v1/restaurants/deals?timeOfDay=6%3A00pm&suburb=");
+        HttpResponse<String> peakTimes = get("/v1/restaurants/deals/peak-times");
+
+        assertEquals(200, deals.statusCode());
+        assertEquals("{\"route\":\"deals\",\"parameters\":2}", deals.body());
+        assertEquals("application/json", deals.headers().firstValue("Content-Type").orElseThrow());
+        assertEquals(200, peakTimes.statusCode());
+        assertEquals("{\"route\":\"peak-times\"}", peakTimes.body());
+    }
+
+    @Test
+    void shouldPassHandlerStatusThrough() throws Exception {
+        assertEquals(400, get("/v1/restaurants/deals?timeOfDay=25:00").statusCode());
+    }
+
+    @Test
+    void shouldRejectUnknownPathsAndMethods() throws Exception {
+        HttpResponse<String> unknown = get("/v1/restaurants/deals/active/extra");
+        HttpResponse<String> post = client.send(HttpRequest.newBuilder(uri("/v1/restaurants/deals"))
+                .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(404, unknown.statusCode());
+        assertEquals(405, post.statusCode());
+        assertEquals("GET", post.headers().firstValue("Allow").orElseThrow());
+    }
+
+    @Test
+    void shouldAnswerInternalServerErrorWhenHandlerThrows() throws Exception {
+        HttpResponse<String> response = get("/v1/restaurants/deals/peak-times?fail");
+
+        assertEquals(500, response.statusCode());
+        assertTrue(response.body().contains("Internal server error"));
+    }
+
+    @Test
+    void shouldServeConcurrentRequests() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Integer>> requests = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                requests.add(() -> get("/v1/restaurants/deals?timeOfDay=6:00pm").statusCode());
+            }
+            for (Future<Integer> status : callers.invokeAll(requests)) {
+                assertEquals(200, status.get().intValue());
+            }
+        } finally {
+            callers.shutdown();
+        }
+    }
+
+    @Test
+    void shouldParseQueryLikeApiGateway() {
+        Map<String, String> parameters = DealsServer.parseQuery("timeOfDay=6%3A30PM&suburb=North+Melbourne&top=1&top=3&dineIn&&");
+
+        assertEquals(Map.of("timeOfDay", "6:30PM", "suburb", "North Melbourne", "top", "3", "dineIn", ""), parameters);
+        assertTrue(DealsServer.parseQuery(null).isEmpty());
+    }
+
+    private HttpResponse<String> get(String pathAndQuery) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(pathAndQuery)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String pathAndQuery) {
+        return URI.create("http://127.0.0.1:" + server.port() + pathAndQuery);
+    }
+}
@@ -4,6 +4,8 @@ import au.com.eatclub.model.ActiveDeal;
 import au.com.eatclub.model.DealPeakTime;
 import au.com.eatclub.model.Restaurant;
 import au.com.eatclub.repository.RestaurantRepository;
+import au.com.eatclub.snapshot.DealFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -20,14 +22,24 @@ import org.mockito.quality.Strictness;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
@@ -103,4 +115,161 @@ class RestaurantDealServiceTest {
         assertEquals(LocalTime.of(21, 0), peakTimes.get(0).getPeakTimeEnd());
     }
 
+    @Test
+    void getAllActiveDealsAtTimes_ShouldMatchPointQueriesAndShareDeals() throws IOException {
+        when(repository.getRestaurantDataFromApi()).thenReturn(testRestaurants);
+        List<LocalTime> times = List.of(LocalTime.of(18, 0), LocalTime.of(15, 0), LocalTime.of(18, 0), LocalTime.of(2, 0));
+
+        Map<LocalTime, List<ActiveDeal>> activeDeals = service.getAllActiveDealsAtTimes(times);
+
+        assertEquals(List.of(LocalTime.of(2, 0), LocalTime.of(15, 0), LocalTime.of(18, 0)), List.copyOf(activeDeals.keySet()));
+        for (Map.Entry<LocalTime, List<ActiveDeal>> entry : activeDeals.entrySet()) {
+            assertEquals(service.getAllActiveDealsAtTime(entry.getKey()), entry.getValue());
+        }
+        for (ActiveDeal deal : activeDeals.get(LocalTime.of(15, 0))) {
+            int index = activeDeals.get(LocalTime.of(18, 0)).indexOf(deal);
+            if (index >= 0) {
+                assertSame(deal, activeDeals.get(LocalTime.of(18, 0)).get(index));
+            }
+        }
+    }
+
+    @Test
+    void getAllActiveDealsBetween_ShouldMatchPointQueriesAcrossWindow() throws IOException {
+        when(repository.getRestaurantDataFromApi()).thenReturn(testRestaurants);
+        LocalTime from = LocalTime.of(14, 30);
+        LocalTime to = LocalTime.of(15, 30);
+
+        Set<String> expected = new HashSet<>();
+        for (LocalTime time = from; !time.isAfter(to); time = time.plusMinutes(1)) {
+            service.getAllActiveDealsAtTime(time).forEach(deal -> expected.add(deal.getDealObjectId()));
+        }
+
+        List<ActiveDeal> deals = service.getAllActiveDealsBetween(from, to);
+
+        assertEquals(expected.size(), deals.size());
+        for (ActiveDeal deal : deals) {
+            assertTrue(expected.contains(deal.getDealObjectId()));
+            assertFalse(deal.getActiveFrom().isAfter(to));
+            assertFalse(deal.getActiveTo().isBefore(from));
+        }
+    }
+
+    @Test
+    void getAllActiveDealsBetween_ShouldRejectReversedWindow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getAllActiveDealsBetween(LocalTime.of(15, 0), LocalTime.of(14, 0)));
+    }
+
+    @Test
+    void getSnapshotVersion_ShouldOnlyChangeWithFeed() throws IOException {
+        when(repository.getRestaurantDataFromApi()).thenReturn(testRestaurants);
+        long version = service.getSnapshotVersion();
+
+        assertEquals(version, service.getSnapshotVersion());
+
+        when(repository.getRestaurantDataFromApi()).thenReturn(List.copyOf(testRestaurants));
+        assertTrue(service.getSnapshotVersion() > version);
+    }
+
+    @Test
+    void getAllActiveDealsAtTime_ShouldOnlyReturnDealsMatchingFilter() throws IOException {
+        when(repository.getRestaurantDataFromApi()).thenReturn(testRestaurants);
+        LocalTime time = LocalTime.of(18, 0);
+        List<ActiveDeal> all = service.getAllActiveDealsAtTime(time);
+        String suburb = all.get(0).getRestaurantSuburb();
+
+        List<ActiveDeal> inSuburb = service.getAllActiveDealsAtTime(time,
+                new DealFilter(" " + suburb.toUpperCase() + " ", null, null, null));
+        assertEquals(all.stream().filter(deal -> suburb.equals(deal.getRestaurantSuburb())).count(), inSuburb.size());
+        assertTrue(inSuburb.stream().allMatch(deal -> suburb.equals(deal.getRestaurantSuburb())));
+
+        List<ActiveDeal> dineInOnly = service.getAllActiveDealsAtTime(time, new DealFilter(null, null, true, null));
+        assertEquals(all.stream().filter(ActiveDeal::isDineIn).count(), dineInOnly.size());
+
+        List<ActiveDeal> notLightning = service.getAllActiveDealsBetween(LocalTime.of(15, 0), LocalTime.of(21, 0),
+                new DealFilter(null, null, null, false));
+        assertTrue(notLightning.stream().noneMatch(ActiveDeal::isLightning));
+
+        assertTrue(service.getAllActiveDealsAtTime(time, new DealFilter("Nowhere", null, null, null)).isEmpty());
+        assertEquals(all, service.getAllActiveDealsAtTime(time, DealFilter.NONE));
+    }
+
+    @Test
+    void getBestActiveDealsAtTime_ShouldReturnHighestDiscountsInStock() throws IOException {
+        when(repository.getRestaurantDataFromApi()).thenReturn(testRestaurants);
+        LocalTime time = LocalTime.of(18, 0);
+        List<ActiveDeal> all = service.getAllActiveDealsAtTime(time);
+
+        List<ActiveDeal> best = service.getBestActiveDealsAtTime(time, 3);
+
+        List<Integer> expected = all.stream()
+                .filter(deal -> Integer.parseInt(deal.getQtyLeft()) > 0)
+                .map(deal -> Integer.parseInt(deal.getDiscount()))
+                .sorted(Comparator.reverseOrder())
+                .limit(3)
+                .collect(Collectors.toList());
+        assertEquals(expected, best.stream().map(deal -> Integer.parseInt(deal.getDiscount()))
+                .collect(Collectors.toList()));
+        assertEquals(all.size(), service.getBestActiveDealsAtTime(time, 100).size());
+        assertThrows(IllegalArgumentException.class, () -> service.getBestActiveDealsAtTime(time, 0));
+    }
+
+    @Test
+    void writeActiveDealsPageAt_ShouldPageThroughSameDealsAsFullQuery() throws IOException {
+        when(repository.getRestaurantDataFromApi()).thenReturn(testRestaurants);
+        LocalTime time = LocalTime.of(15, 0);
+
+        List<JsonNode> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String finalCursor = cursor;
+            JsonNode page = objectMapper.readTree(writePage(generator ->
+                    service.writeActiveDealsPageAt(time, DealFilter.NONE, finalCursor, 2, generator)));
+            page.get("deals").forEach(paged::add);
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+            pages++;
+        } while (cursor != null);
+
+        JsonNode expected = objectMapper.valueToTree(service.getAllActiveDealsAtTime(time));
+        assertEquals(expected.size(), paged.size());
+        assertEquals((expected.size() + 1) / 2, pages);
+        for (int i = 0; i < paged.size(); i++) {
+            assertEquals(expected.get(i), paged.get(i));
+        }
+    }
+
+    @Test
+    void writeActiveDealsPageAt_ShouldRejectExpiredOrForeignCursor() throws IOException {
+        when(repository.getRestaurantDataFromApi()).thenReturn(testRestaurants);
+        JsonNode first = objectMapper.readTree(writePage(generator ->
+                service.writeActiveDealsPageAt(LocalTime.of(15, 0), DealFilter.NONE, null, 1, generator)));
+        String cursor = first.get("nextCursor").asText();
+
+        IllegalArgumentException foreign = assertThrows(IllegalArgumentException.class, () -> writePage(generator ->
+                service.writeActiveDealsPageBetween(LocalTime.of(15, 0), LocalTime.of(16, 0), DealFilter.NONE, cursor, 1, generator)));
+        assertEquals("Cursor does not match the request", foreign.getMessage());
+
+        when(repository.getRestaurantDataFromApi()).thenReturn(List.copyOf(testRestaurants));
+        IllegalArgumentException expired = assertThrows(IllegalArgumentException.class, () -> writePage(generator ->
+                service.writeActiveDealsPageAt(LocalTime.of(15, 0), DealFilter.NONE, cursor, 1, generator)));
+        assertTrue(expired.getMessage().startsWith("Cursor has expired"));
+
+        assertThrows(IllegalArgumentException.class, () -> writePage(generator ->
+                service.writeActiveDealsPageAt(LocalTime.of(15, 0), DealFilter.NONE, "not a cursor", 1, generator)));
+    }
+
+    private String writePage(PageWriter page) throws IOException {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+            page.write(generator);
+        }
+        return json.toString();
+    }
+
+    private interface PageWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.ActiveDeal;
+import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.Restaurant;
+import au.com.eatclub.repository.RestaurantFeedParser;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link DealColumns}, checked against a field-by-field copy of the feed objects.
+ */
+class DealColumnsTest {
+
+    @Test
+    void shouldMaterialiseSameActiveDealsAsFeedObjects() throws IOException {
+        List<Restaurant> restaurants;
+        try (InputStream inputStream = Files.newInputStream(Paths.get("src/test/resources/data.json"))) {
+            restaurants = new RestaurantFeedParser(new ObjectMapper()).parse(inputStream);
+        }
+        List<ActiveDeal> expected = new ArrayList<>();
+        for (Restaurant restaurant : restaurants) {
+            for (Deal deal : restaurant.getDeals()) {
+                expected.add(copyOf(restaurant, deal));
+            }
+        }
+
+        DealSnapshot snapshot = DealSnapshot.of(restaurants);
+
+        assertEquals(expected.size(), snapshot.dealCount());
+        for (int id = 0; id < snapshot.dealCount(); id++) {
+            assertEquals(expected.get(id), snapshot.activeDeal(id));
+        }
+    }
+
+    @Test
+    void shouldWriteSameJsonAsSerializedActiveDeals() throws IOException {
+        List<Restaurant> restaurants;
+        try (InputStream inputStream = Files.newInputStream(Paths.get("src/test/resources/data.json"))) {
+            restaurants = new RestaurantFeedParser(new ObjectMapper()).parse(inputStream);
+        }
+        List<Restaurant> withMissingValues = new ArrayList<>(restaurants);
+        withMissingValues.add(Restaurant.builder().deals(List.of(new Deal())).build());
+        DealSnapshot snapshot = DealSnapshot.of(withMissingValues);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        for (int id = 0; id < snapshot.dealCount(); id++) {
+            assertEquals(objectMapper.writeValueAsString(snapshot.activeDeal(id)), write(snapshot, id, false));
+            if (snapshot.startMinute(id) != DealSnapshot.INACTIVE) {
+                assertEquals(objectMapper.writeValueAsString(snapshot.activeDealsWithWindows(new int[]{id}).get(0)),
+                        write(snapshot, id, true));
+            }
+        }
+    }
+
+    @Test
+    void shouldDeduplicateStrings() {
+        List<Restaurant> restaurants = List.of(
+                restaurant("r1", "Richmond", deal("d1", "20"), deal("d2", "20")),
+                restaurant("r2", "Richmond", deal("d3", "30")));
+
+        DealColumns columns = DealSegment.build(restaurants,
+                List.of(restaurants.get(0).getDeals(), restaurants.get(1).getDeals()), 0).columns();
+
+        // r1, r2, Richmond, d1, 20, d2, d3, 30
+        assertEquals(8, columns.strings().size());
+        assertEquals(2, columns.restaurantCount());
+        assertEquals(1, columns.restaurantIndex(2));
+    }
+
+    @Test
+    void shouldKeepMissingValuesAsNull() {
+        Deal deal = new Deal();
+        deal.setLightning(true);
+        Restaurant restaurant = Restaurant.builder().deals(List.of(deal)).build();
+
+        ActiveDeal activeDeal = DealSnapshot.of(List.of(restaurant)).activeDeal(0);
+
+        assertNull(activeDeal.getRestaurantObjectId());
+        assertNull(activeDeal.getRestaurantOpen());
+        assertNull(activeDeal.getDiscount());
+        assertEquals(false, activeDeal.isDineIn());
+        assertEquals(true, activeDeal.isLightning());
+    }
+
+    @Test
+    void shouldParseDiscountAndQtyLeftOnce() {
+        Deal deal = deal("d1", " 25% ");
+        deal.setQtyLeft("3");
+        Deal unparsable = deal("d2", "half");
+        unparsable.setQtyLeft("3.5");
+        List<Restaurant> restaurants = List.of(restaurant("r1", "Richmond", deal, unparsable, new Deal()));
+
+        DealColumns columns = DealSegment.build(restaurants, List.of(restaurants.get(0).getDeals()), 0).columns();
+
+        assertEquals(25, columns.discount(0));
+        assertEquals(3, columns.qtyLeft(0));
+        assertEquals(" 25% ", columns.activeDeal(0).getDiscount());
+        assertEquals(DealColumns.UNKNOWN, columns.discount(1));
+        assertEquals(DealColumns.UNKNOWN, columns.qtyLeft(1));
+        assertEquals(DealColumns.UNKNOWN, columns.discount(2));
+        assertEquals(DealColumns.UNKNOWN, columns.qtyLeft(2));
+        assertEquals(0, DealColumns.parseWholeNumber("0"));
+        assertEquals(DealColumns.UNKNOWN, DealColumns.parseWholeNumber("%"));
+        assertEquals(DealColumns.UNKNOWN, DealColumns.parseWholeNumber("-5"));
+        assertEquals(DealColumns.UNKNOWN, DealColumns.parseWholeNumber("99999999999"));
+    }
+
+    private static String write(DealSnapshot snapshot, int dealId, boolean withWindow) throws IOException {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(json)) {
+            snapshot.writeActiveDeal(dealId, withWindow, generator);
+        }
+        return json.toString();
+    }
+
+    private static Restaurant restaurant(String objectId, String suburb, Deal... deals) {
+        return Restaurant.builder().objectId(objectId).suburb(suburb)
+                .open(LocalTime.of(9, 0)).close(LocalTime.of(21, 0)).deals(List.of(deals)).build();
+    }
+
+    private static Deal deal(String objectId, String discount) {
+        Deal deal = new Deal();
+        deal.setObjectId(objectId);
+        deal.setDiscount(discount);
+        return deal;
+    }
+
+    private static ActiveDeal copyOf(Restaurant restaurant, Deal deal) {
+        ActiveDeal activeDeal = new ActiveDeal();
+        activeDeal.setRestaurantObjectId(restaurant.getObjectId());
+        activeDeal.setRestaurantName(restaurant.getName());
+        activeDeal.setRestaurantAddress1(restaurant.getAddress1());
+        activeDeal.setRestaurantSuburb(restaurant.getSuburb());
+        activeDeal.setRestaurantOpen(restaurant.getOpen());
+        activeDeal.setRestaurantClose(restaurant.getClose());
+        activeDeal.setDealObjectId(deal.getObjectId());
+        activeDeal.setDiscount(deal.getDiscount());
+        activeDeal.setDineIn(deal.isDineIn());
+        activeDeal.setLightning(deal.isLightning());
+        activeDeal.setQtyLeft(deal.getQtyLeft());
+        return activeDeal;
+    }
+}
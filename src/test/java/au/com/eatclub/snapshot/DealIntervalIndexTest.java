@@ -0,0 +1,101 @@
+package au.com.eatclub.snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static au.com.eatclub.snapshot.DealSnapshot.DAY_TOTAL_MINUTES;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link DealIntervalIndex}, checked against a brute force scan of the same intervals.
+ */
+class DealIntervalIndexTest {
+
+    @Test
+    void shouldTreatBothEndsAsInclusive() {
+        DealIntervalIndex index = new DealIntervalIndex(new int[]{720, 600}, new int[]{750, 719});
+
+        assertArrayEquals(new int[]{1}, index.stab(719));
+        assertArrayEquals(new int[]{0}, index.stab(720));
+        assertArrayEquals(new int[]{0}, index.stab(750));
+        assertArrayEquals(new int[]{}, index.stab(751));
+    }
+
+    @Test
+    void shouldIgnoreEmptyIntervals() {
+        DealIntervalIndex index = new DealIntervalIndex(new int[]{-1, 900, 100}, new int[]{-1, 800, 100});
+
+        assertEquals(1, index.size());
+        assertArrayEquals(new int[]{2}, index.stab(100));
+        assertArrayEquals(new int[]{}, index.stab(850));
+    }
+
+    @Test
+    void shouldHandleEmptyIndex() {
+        DealIntervalIndex index = new DealIntervalIndex(new int[0], new int[0]);
+
+        assertArrayEquals(new int[]{}, index.stab(0));
+    }
+
+    @Test
+    void shouldMatchLinearScanForRandomIntervals() {
+        Random random = new Random(42);
+        int count = 2_000;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = random.nextInt(DAY_TOTAL_MINUTES);
+            ends[i] = Math.min(DAY_TOTAL_MINUTES - 1, starts[i] + random.nextInt(600));
+        }
+
+        DealIntervalIndex index = new DealIntervalIndex(starts, ends);
+
+        for (int minute = 0; minute < DAY_TOTAL_MINUTES; minute++) {
+            int point = minute;
+            int[] expected = IntStream.range(0, count)
+                    .filter(i -> starts[i] <= point && point <= ends[i])
+                    .toArray();
+            assertArrayEquals(expected, index.stab(point), "Mismatch at minute " + minute);
+        }
+        assertEquals(count, index.size());
+        assertEquals(count, Arrays.stream(ends).filter(end -> end >= 0).count());
+    }
+    @Test
+    void shouldMatchLinearScanForRandomWindows() {
+        Random random = new Random(11);
+        int count = 2_000;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = random.nextInt(10) == 0 ? DealSnapshot.INACTIVE : random.nextInt(DAY_TOTAL_MINUTES);
+            ends[i] = starts[i] < 0 ? DealSnapshot.INACTIVE : Math.min(DAY_TOTAL_MINUTES - 1, starts[i] + random.nextInt(600));
+        }
+
+        DealIntervalIndex index = new DealIntervalIndex(starts, ends);
+
+        for (int query = 0; query < 2_000; query++) {
+            int from = random.nextInt(DAY_TOTAL_MINUTES);
+            int to = Math.min(DAY_TOTAL_MINUTES - 1, from + random.nextInt(180));
+            int[] expected = IntStream.range(0, count)
+                    .filter(i -> starts[i] >= 0 && starts[i] <= to && ends[i] >= from)
+                    .toArray();
+            assertArrayEquals(expected, index.overlapping(from, to), "Mismatch for [" + from + ", " + to + "]");
+        }
+    }
+
+    @Test
+    void shouldTreatWindowBoundsAsInclusive() {
+        DealIntervalIndex index = new DealIntervalIndex(new int[]{600, 700, 800}, new int[]{659, 759, 859});
+
+        assertArrayEquals(new int[]{0, 1}, index.overlapping(659, 700));
+        assertArrayEquals(new int[]{1}, index.overlapping(701, 799));
+        assertArrayEquals(new int[]{}, index.overlapping(860, 900));
+        assertArrayEquals(new int[]{1}, index.overlapping(750, 750));
+        assertThrows(IllegalArgumentException.class, () -> index.overlapping(700, 600));
+    }
+}
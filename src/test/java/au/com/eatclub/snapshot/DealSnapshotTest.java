@@ -0,0 +1,380 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.ActiveDeal;
+import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.Restaurant;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link DealSnapshot#refresh(List)}, checked against snapshots rebuilt from scratch,
+ * for filtered queries, checked against filtering the feed directly, and for snapshots of a
+ * {@link MappedFeed}, checked against snapshots of the parsed feed.
+ */
+class DealSnapshotTest {
+    private static final String[] SUBURBS = {"Richmond", "Fitzroy", "Carlton"};
+    private static final String[] CUISINES = {"Thai", "Pizza", "Cafe", "Vegan"};
+
+    @Test
+    void shouldMatchFullRebuildAcrossRandomChurn() {
+        Random random = new Random(11);
+        List<Restaurant> feed = new ArrayList<>();
+        for (int r = 0; r < 300; r++) {
+            feed.add(randomRestaurant(random, "r" + r));
+        }
+        DealSnapshot snapshot = DealSnapshot.of(feed, DealSnapshot.DEFAULT_MINUTE_TABLE_MAX_BYTES);
+
+        int incremental = 0;
+        for (int round = 0; round < 40; round++) {
+            feed = churn(random, feed, round);
+            snapshot = snapshot.refresh(feed);
+            incremental += snapshot.isIncremental() ? 1 : 0;
+
+            assertSameQueries(DealSnapshot.of(feed, DealSnapshot.DEFAULT_MINUTE_TABLE_MAX_BYTES), snapshot, random);
+        }
+        assertTrue(incremental > 0);
+    }
+
+    @Test
+    void shouldFilterLikeFeedAcrossRandomChurn() {
+        Random random = new Random(23);
+        List<Restaurant> feed = new ArrayList<>();
+        for (int r = 0; r < 300; r++) {
+            feed.add(randomRestaurant(random, "r" + r));
+        }
+        DealSnapshot snapshot = DealSnapshot.of(feed, DealSnapshot.DEFAULT_MINUTE_TABLE_MAX_BYTES);
+        List<DealFilter> filters = List.of(
+                new DealFilter("richmond", null, null, null),
+                new DealFilter(null, "THAI ", null, null),
+                new DealFilter(null, null, true, null),
+                new DealFilter(null, null, null, false),
+                new DealFilter("Fitzroy", "Cafe", false, true),
+                new DealFilter("Nowhere", null, null, null),
+                new DealFilter(null, "Burgers", true, null));
+
+        for (int round = 0; round < 20; round++) {
+            feed = churn(random, feed, round);
+            snapshot = snapshot.refresh(feed);
+            for (int i = 0; i < 10; i++) {
+                LocalTime time = LocalTime.of(random.nextInt(24), random.nextInt(60));
+                LocalTime from = LocalTime.of(random.nextInt(22), random.nextInt(60));
+                LocalTime to = from.plusMinutes(random.nextInt(120));
+                for (DealFilter filter : filters) {
+                    assertEquals(matching(snapshot.activeDeals(snapshot.activeDealIdsAt(time)), feed, filter),
+                            sorted(snapshot.activeDeals(snapshot.activeDealIdsAt(time, filter))),
+                            filter + " at " + time);
+                    assertEquals(matching(snapshot.activeDeals(snapshot.activeDealIdsBetween(from, to)), feed, filter),
+                            sorted(snapshot.activeDeals(snapshot.activeDealIdsBetween(from, to, filter))),
+                            filter + " between " + from + " and " + to);
+                }
+            }
+        }
+        assertTrue(snapshot.filterIndexFootprintBytes() > 0);
+    }
+
+    @Test
+    void shouldRankBestDealsLikeSortingActiveDealsAcrossRandomChurn() {
+        Random random = new Random(31);
+        List<Restaurant> feed = new ArrayList<>();
+        for (int r = 0; r < 400; r++) {
+            feed.add(randomRestaurant(random, "r" + r));
+        }
+        DealSnapshot snapshot = DealSnapshot.of(feed, DealSnapshot.DEFAULT_MINUTE_TABLE_MAX_BYTES);
+        List<DealFilter> filters = List.of(DealFilter.NONE, new DealFilter("Richmond", null, null, null),
+                new DealFilter(null, "Thai", true, null));
+
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 10; i++) {
+                LocalTime time = LocalTime.of(random.nextInt(24), random.nextInt(60), random.nextInt(2) * 30);
+                for (DealFilter filter : filters) {
+                    for (int limit : new int[]{1, 10, RankedDealTable.DEPTH, RankedDealTable.DEPTH + 50}) {
+                        assertArrayEquals(bestBySorting(snapshot, time, limit, filter),
+                                snapshot.bestDealIdsAt(time, limit, filter), filter + " top " + limit + " at " + time);
+                    }
+                }
+            }
+            feed = churn(random, feed, round);
+            snapshot = snapshot.refresh(feed);
+        }
+        assertTrue(snapshot.rankedTableFootprintBytes() > 0);
+    }
+
+    @Test
+    void shouldOnlyTouchChangedDeals() {
+        List<Restaurant> feed = List.of(
+                restaurant("r1", deal("d1", "20", 10, 12), deal("d2", "30", 14, 16)),
+                restaurant("r2", deal("d3", "40", 17, 19)));
+        DealSnapshot snapshot = DealSnapshot.of(feed);
+
+        List<Restaurant> next = List.of(
+                restaurant("r1", deal("d1", "20", 10, 12), deal("d2", "35", 14, 16)),
+                restaurant("r3", deal("d4", "50", 9, 11)));
+        DealSnapshot refreshed = snapshot.refresh(next);
+
+        assertTrue(refreshed.isIncremental());
+        // d2 changed, r3/d4 added; d2's old version and r2/d3 removed
+        assertEquals(2, refreshed.insertedDealCount());
+        assertEquals(2, refreshed.removedDealCount());
+        assertEquals(3, refreshed.dealCount());
+        assertEquals(List.of("d1", "d4"), dealIds(refreshed, refreshed.activeDealIdsAt(LocalTime.of(10, 30))));
+        assertEquals(List.of("d2"), dealIds(refreshed, refreshed.activeDealIdsAt(LocalTime.of(15, 0))));
+        assertEquals("35", refreshed.activeDeals(refreshed.activeDealIdsAt(LocalTime.of(15, 0))).get(0).getDiscount());
+        assertEquals(0, refreshed.activeDealIdsAt(LocalTime.of(18, 0)).length);
+    }
+
+    @Test
+    void shouldRebuildWhenDeltaOutgrowsBase() {
+        Random random = new Random(5);
+        List<Restaurant> feed = new ArrayList<>();
+        for (int r = 0; r < 50; r++) {
+            feed.add(randomRestaurant(random, "r" + r));
+        }
+        DealSnapshot snapshot = DealSnapshot.of(feed);
+
+        List<Restaurant> replaced = new ArrayList<>();
+        for (int r = 0; r < DealSnapshot.MIN_DELTA_DEALS + 1; r++) {
+            replaced.add(restaurant("n" + r, deal("d" + r, "10", 9, 10)));
+        }
+        DealSnapshot rebuilt = snapshot.refresh(replaced);
+
+        assertFalse(rebuilt.isIncremental());
+        assertEquals(DealSnapshot.MIN_DELTA_DEALS + 1, rebuilt.dealCount());
+        assertSameQueries(DealSnapshot.of(replaced), rebuilt, random);
+    }
+
+    @Test
+    void shouldRebuildWhenRestaurantIdsAreNotUnique() {
+        List<Restaurant> feed = List.of(restaurant("r1", deal("d1", "20", 10, 12)));
+        List<Restaurant> duplicated = List.of(
+                restaurant("r1", deal("d1", "20", 10, 12)),
+                restaurant("r1", deal("d2", "30", 10, 12)));
+
+        DealSnapshot refreshed = DealSnapshot.of(feed).refresh(duplicated);
+
+        assertFalse(refreshed.isIncremental());
+        assertEquals(2, refreshed.activeDealIdsAt(LocalTime.of(11, 0)).length);
+        assertFalse(refreshed.refresh(feed).isIncremental());
+    }
+
+    @Test
+    void shouldAnswerLikeParsedFeedWhenMapped() {
+        Random random = new Random(17);
+        List<Restaurant> feed = new ArrayList<>();
+        for (int r = 0; r < 300; r++) {
+            feed.add(randomRestaurant(random, "r" + r));
+        }
+        feed.add(Restaurant.builder().objectId("no-deals").suburb("Richmond").build());
+        feed.add(restaurant("no-hours", deal("d", "10", 9, 10)));
+        feed.get(feed.size() - 1).setOpen(null);
+        byte[] encoded = MappedFeed.encode(feed);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+
+        MappedFeed mapped = MappedFeed.map(buffer);
+        DealSnapshot expected = DealSnapshot.of(feed, DealSnapshot.DEFAULT_MINUTE_TABLE_MAX_BYTES);
+        DealSnapshot actual = DealSnapshot.of(mapped, DealSnapshot.DEFAULT_MINUTE_TABLE_MAX_BYTES);
+
+        assertEquals(feed, mapped);
+        assertTrue(actual.isBuiltFrom(mapped));
+        assertSameQueries(expected, actual, random);
+        for (int i = 0; i < 20; i++) {
+            LocalTime time = LocalTime.of(random.nextInt(24), random.nextInt(60));
+            for (DealFilter filter : List.of(DealFilter.NONE, new DealFilter("fitzroy", "Thai", null, null),
+                    new DealFilter(null, null, true, false))) {
+                assertArrayEquals(expected.activeDealIdsAt(time, filter), actual.activeDealIdsAt(time, filter));
+                assertArrayEquals(expected.bestDealIdsAt(time, 10, filter), actual.bestDealIdsAt(time, 10, filter));
+            }
+        }
+        // Only the columns' heap is counted: the mapped columns and undecoded strings take none
+        assertTrue(actual.columnFootprintBytes() < expected.columnFootprintBytes());
+
+        List<Restaurant> next = churn(random, feed.subList(0, 300), 0);
+        DealSnapshot refreshed = actual.refresh(next);
+        assertFalse(refreshed.isIncremental());
+        assertSameQueries(DealSnapshot.of(next, DealSnapshot.DEFAULT_MINUTE_TABLE_MAX_BYTES), refreshed, random);
+    }
+
+    /**
+     * Ids of the {@code limit} best in-stock active deals, by sorting all of them.
+     */
+    private static int[] bestBySorting(DealSnapshot snapshot, LocalTime time, int limit, DealFilter filter) {
+        return Arrays.stream(snapshot.activeDealIdsAt(time, filter))
+                .filter(id -> snapshot.qtyLeft(id) > 0)
+                .boxed()
+                .sorted(Comparator.<Integer>comparingInt(snapshot::discount).reversed()
+                        .thenComparingInt(Integer::intValue))
+                .mapToInt(Integer::intValue)
+                .limit(limit)
+                .toArray();
+    }
+
+    private static void assertSameQueries(DealSnapshot expected, DealSnapshot actual, Random random) {
+        assertEquals(expected.dealCount(), actual.dealCount());
+        assertArrayEquals(expected.occupancy().bucketCounts(1), actual.occupancy().bucketCounts(1));
+        assertEquals(expected.peakTimes(ChronoUnit.MINUTES), actual.peakTimes(ChronoUnit.MINUTES));
+        assertEquals(expected.peakTimes(ChronoUnit.SECONDS), actual.peakTimes(ChronoUnit.SECONDS));
+        for (int i = 0; i < 20; i++) {
+            LocalTime time = LocalTime.of(random.nextInt(24), random.nextInt(60), random.nextInt(2) * 30);
+            assertEquals(sorted(expected.activeDeals(expected.activeDealIdsAt(time))),
+                    sorted(actual.activeDeals(actual.activeDealIdsAt(time))), "at " + time);
+
+            LocalTime from = LocalTime.of(random.nextInt(24), random.nextInt(60));
+            LocalTime to = from.plusMinutes(random.nextInt(180));
+            if (!to.isBefore(from)) {
+                assertEquals(sorted(expected.activeDealsWithWindows(expected.activeDealIdsBetween(from, to))),
+                        sorted(actual.activeDealsWithWindows(actual.activeDealIdsBetween(from, to))));
+            }
+        }
+    }
+
+    /**
+     * The {@code deals} whose restaurant and deal in {@code feed} match {@code filter}, sorted.
+     */
+    private static List<ActiveDeal> matching(List<ActiveDeal> deals, List<Restaurant> feed, DealFilter filter) {
+        Map<String, Restaurant> restaurants = new HashMap<>();
+        Map<String, Deal> feedDeals = new HashMap<>();
+        for (Restaurant restaurant : feed) {
+            restaurants.put(restaurant.getObjectId(), restaurant);
+            for (Deal deal : restaurant.getDeals()) {
+                feedDeals.put(deal.getObjectId(), deal);
+            }
+        }
+        List<ActiveDeal> matching = new ArrayList<>();
+        for (ActiveDeal activeDeal : deals) {
+            Restaurant restaurant = restaurants.get(activeDeal.getRestaurantObjectId());
+            Deal deal = feedDeals.get(activeDeal.getDealObjectId());
+            if ((filter.suburb() == null || filter.suburb().equalsIgnoreCase(restaurant.getSuburb()))
+                    && (filter.cuisine() == null || restaurant.getCuisines().stream().anyMatch(filter.cuisine()::equalsIgnoreCase))
+                    && (filter.dineIn() == null || filter.dineIn() == deal.isDineIn())
+                    && (filter.lightning() == null || filter.lightning() == deal.isLightning())) {
+                matching.add(activeDeal);
+            }
+        }
+        return sorted(matching);
+    }
+
+    private static List<ActiveDeal> sorted(List<ActiveDeal> deals) {
+        List<ActiveDeal> sorted = new ArrayList<>(deals);
+        sorted.sort(Comparator.comparing(ActiveDeal::getRestaurantObjectId).thenComparing(ActiveDeal::getDealObjectId));
+        return sorted;
+    }
+
+    private static List<String> dealIds(DealSnapshot snapshot, int[] ids) {
+        List<String> dealIds = new ArrayList<>();
+        for (ActiveDeal deal : snapshot.activeDeals(ids)) {
+            dealIds.add(deal.getDealObjectId());
+        }
+        return dealIds;
+    }
+
+    /**
+     * Copy of {@code feed} with a few restaurants added, removed, renamed or with changed deals.
+     */
+    private static List<Restaurant> churn(Random random, List<Restaurant> feed, int round) {
+        List<Restaurant> next = new ArrayList<>();
+        for (Restaurant restaurant : feed) {
+            int change = random.nextInt(40);
+            if (change == 0) {
+                continue;
+            }
+            Restaurant copy = Restaurant.builder().objectId(restaurant.getObjectId()).name(restaurant.getName())
+                    .suburb(restaurant.getSuburb()).cuisines(restaurant.getCuisines())
+                    .open(restaurant.getOpen()).close(restaurant.getClose()).deals(new ArrayList<>()).build();
+            if (change == 1) {
+                copy.setName("renamed " + round);
+            }
+            for (Deal deal : restaurant.getDeals()) {
+                int dealChange = random.nextInt(30);
+                if (change == 2 && dealChange < 10) {
+                    continue;
+                }
+                Deal dealCopy = deal(deal.getObjectId(), deal.getDiscount(), deal.getStart(), deal.getEnd());
+                dealCopy.setQtyLeft(deal.getQtyLeft());
+                dealCopy.setDineIn(deal.isDineIn());
+                dealCopy.setLightning(deal.isLightning());
+                if (change == 3 && dealChange < 10) {
+                    dealCopy.setStart(LocalTime.of(random.nextInt(24), 0));
+                    dealCopy.setEnd(LocalTime.of(23, random.nextInt(60)));
+                } else if (change == 4 && dealChange < 10) {
+                    dealCopy.setDiscount(String.valueOf(random.nextInt(50)));
+                    dealCopy.setQtyLeft(String.valueOf(random.nextInt(3)));
+                }
+                copy.getDeals().add(dealCopy);
+            }
+            if (change == 5) {
+                copy.getDeals().add(randomDeal(random, copy.getObjectId() + "-" + round));
+            }
+            next.add(copy);
+        }
+        for (int r = 0; r < random.nextInt(5); r++) {
+            next.add(randomRestaurant(random, "r" + round + "-" + r));
+        }
+        return next;
+    }
+
+    private static Restaurant randomRestaurant(Random random, String objectId) {
+        List<Deal> deals = new ArrayList<>();
+        for (int d = 0; d < 1 + random.nextInt(4); d++) {
+            deals.add(randomDeal(random, objectId + "-d" + d));
+        }
+        List<String> cuisines = new ArrayList<>();
+        for (String cuisine : CUISINES) {
+            if (random.nextInt(3) == 0) {
+                cuisines.add(cuisine);
+            }
+        }
+        int open = random.nextInt(12);
+        return Restaurant.builder().objectId(objectId).name(objectId)
+                .suburb(SUBURBS[random.nextInt(SUBURBS.length)]).cuisines(cuisines)
+                .open(LocalTime.of(open, 0)).close(LocalTime.of(open + 1 + random.nextInt(11), 30))
+                .deals(deals).build();
+    }
+
+    private static Deal randomDeal(Random random, String objectId) {
+        Deal deal;
+        if (random.nextInt(4) == 0) {
+            deal = deal(objectId, "10", null, null);
+        } else {
+            int start = random.nextInt(23);
+            deal = deal(objectId, "20", LocalTime.of(start, random.nextInt(60)),
+                    LocalTime.of(start + 1 + random.nextInt(23 - start), random.nextInt(60)));
+        }
+        deal.setDiscount(random.nextInt(10) == 0 ? null : String.valueOf(5 * random.nextInt(11)));
+        deal.setQtyLeft(random.nextInt(5) == 0 ? "0" : String.valueOf(1 + random.nextInt(9)));
+        deal.setDineIn(random.nextBoolean());
+        deal.setLightning(random.nextInt(4) == 0);
+        return deal;
+    }
+
+    private static Restaurant restaurant(String objectId, Deal... deals) {
+        return Restaurant.builder().objectId(objectId)
+                .open(LocalTime.of(9, 0)).close(LocalTime.of(21, 0)).deals(List.of(deals)).build();
+    }
+
+    private static Deal deal(String objectId, String discount, int startHour, int endHour) {
+        return deal(objectId, discount, LocalTime.of(startHour, 0), LocalTime.of(endHour, 0));
+    }
+
+    private static Deal deal(String objectId, String discount, LocalTime start, LocalTime end) {
+        Deal deal = new Deal();
+        deal.setObjectId(objectId);
+        deal.setDiscount(discount);
+        deal.setStart(start);
+        deal.setEnd(end);
+        return deal;
+    }
+}
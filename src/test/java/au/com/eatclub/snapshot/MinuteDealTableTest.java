@@ -0,0 +1,52 @@
+package au.com.eatclub.snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static au.com.eatclub.snapshot.DealSnapshot.DAY_TOTAL_MINUTES;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for {@link MinuteDealTable}, checked against the {@link DealIntervalIndex} built from the
+ * same windows.
+ */
+class MinuteDealTableTest {
+
+    @Test
+    void shouldMatchIntervalIndexAtEveryMinute() {
+        Random random = new Random(7);
+        int count = 1_000;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = random.nextInt(DAY_TOTAL_MINUTES);
+            ends[i] = random.nextInt(10) == 0
+                    ? DealSnapshot.INACTIVE
+                    : Math.min(DAY_TOTAL_MINUTES - 1, starts[i] + random.nextInt(480));
+        }
+
+        MinuteDealTable table = MinuteDealTable.build(starts, ends);
+        DealIntervalIndex index = new DealIntervalIndex(starts, ends);
+
+        for (int minute = 0; minute < DAY_TOTAL_MINUTES; minute++) {
+            int[] expected = index.stab(minute);
+            assertArrayEquals(expected, table.dealIdsAt(minute), "Mismatch at minute " + minute);
+            assertEquals(expected.length, table.countAt(minute));
+        }
+    }
+
+    @Test
+    void shouldReportFootprintMatchingEstimate() {
+        int[] starts = {0, 600, 1439, DealSnapshot.INACTIVE};
+        int[] ends = {59, 659, 1439, DealSnapshot.INACTIVE};
+
+        MinuteDealTable table = MinuteDealTable.build(starts, ends);
+
+        // 121 active deal-minutes plus the 1441 offsets
+        assertEquals(MinuteDealTable.estimateBytes(starts, ends), table.footprintBytes());
+        assertEquals(32 + (1441 + 121) * 4L, table.footprintBytes());
+        assertArrayEquals(new int[]{2}, table.dealIdsAt(1439));
+    }
+}
@@ -0,0 +1,84 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.DealWindow;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Random;
+
+import static au.com.eatclub.snapshot.DealSnapshot.DAY_TOTAL_MINUTES;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link OccupancyProfile}.
+ */
+class OccupancyProfileTest {
+
+    // 2 deals 9:00-9:59, 3 deals 10:00-10:29, 1 deal 10:30-10:59, 3 deals 12:00-12:09
+    private final OccupancyProfile profile = new OccupancyProfile(PeakTimeEngine.minuteCounts(
+            new int[]{540, 540, 600, 600, 600, 630, 720, 720, 720},
+            new int[]{599, 599, 629, 629, 629, 659, 729, 729, 729}));
+
+    @Test
+    void shouldRankWindowsByDealCountThenTime() {
+        List<DealWindow> top = profile.topWindows(3);
+
+        assertEquals(List.of(
+                window(10, 0, 10, 29, 3),
+                window(12, 0, 12, 9, 3),
+                window(9, 0, 9, 59, 2)), top);
+        assertEquals(4, profile.topWindows(10).size());
+    }
+
+    @Test
+    void shouldMergeConsecutiveWindowsAtOrAboveThreshold() {
+        assertEquals(List.of(window(9, 0, 10, 29, 3), window(12, 0, 12, 9, 3)), profile.windowsWithAtLeast(2));
+        assertEquals(List.of(window(9, 0, 10, 59, 3), window(12, 0, 12, 9, 3)), profile.windowsWithAtLeast(1));
+        assertTrue(profile.windowsWithAtLeast(4).isEmpty());
+    }
+
+    @Test
+    void shouldKeepHighestCountPerBucket() {
+        int[] hourly = profile.bucketCounts(60);
+
+        assertEquals(24, hourly.length);
+        assertEquals(2, hourly[9]);
+        assertEquals(3, hourly[10]);
+        assertEquals(0, hourly[11]);
+        assertEquals(3, hourly[12]);
+        assertEquals(DAY_TOTAL_MINUTES / 7 + 1, profile.bucketCounts(7).length);
+    }
+
+    @Test
+    void shouldMatchMinuteCountsAtOneMinuteBuckets() {
+        Random random = new Random(3);
+        int[] starts = new int[500];
+        int[] ends = new int[500];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = random.nextInt(DAY_TOTAL_MINUTES);
+            ends[i] = Math.min(DAY_TOTAL_MINUTES - 1, starts[i] + random.nextInt(300));
+        }
+        int[] minuteCounts = PeakTimeEngine.minuteCounts(starts, ends);
+        OccupancyProfile randomProfile = new OccupancyProfile(minuteCounts);
+
+        assertArrayEquals(minuteCounts, randomProfile.bucketCounts(1));
+        int highest = randomProfile.topWindows(1).get(0).getDealCount();
+        assertEquals(PeakTimeEngine.peakRanges(minuteCounts).size(), randomProfile.windowsWithAtLeast(highest).size());
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> profile.bucketCounts(0));
+        assertThrows(IllegalArgumentException.class, () -> profile.bucketCounts(DAY_TOTAL_MINUTES + 1));
+        assertThrows(IllegalArgumentException.class, () -> profile.topWindows(0));
+        assertThrows(IllegalArgumentException.class, () -> profile.windowsWithAtLeast(0));
+    }
+
+    private static DealWindow window(int startHour, int startMinute, int endHour, int endMinute, int dealCount) {
+        return new DealWindow(LocalTime.of(startHour, startMinute), LocalTime.of(endHour, endMinute), dealCount);
+    }
+}
@@ -0,0 +1,209 @@
+package au.com.eatclub.snapshot;
+
+import au.com.eatclub.model.Deal;
+import au.com.eatclub.model.DealPeakTime;
+import au.com.eatclub.model.Restaurant;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static au.com.eatclub.snapshot.DealSnapshot.DAY_TOTAL_MINUTES;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link PeakTimeEngine}. The original per-minute marking implementation is kept here
+ * as a reference oracle for the sweep-line engine.
+ */
+class PeakTimeEngineTest {
+    private static final int MINUTES_IN_HOUR = 60;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void shouldMatchReferenceImplementationOnTestData() throws IOException {
+        List<Restaurant> restaurants = loadTestRestaurants();
+        DealSnapshot snapshot = DealSnapshot.of(restaurants);
+
+        List<DealPeakTime> expected = ReferencePeakTimes.findPeakTimeRange(restaurants);
+
+        assertEquals(List.of(new DealPeakTime(LocalTime.of(18, 0), LocalTime.of(21, 0))), expected);
+        assertEquals(expected, snapshot.peakTimes(ChronoUnit.MINUTES));
+        assertEquals(expected, snapshot.peakTimes(ChronoUnit.SECONDS));
+    }
+
+    @Test
+    void shouldMatchReferenceImplementationOnRandomFeeds() {
+        Random random = new Random(11);
+        for (int run = 0; run < 50; run++) {
+            List<Restaurant> restaurants = randomRestaurants(random, 1 + random.nextInt(40));
+            DealSnapshot snapshot = DealSnapshot.of(restaurants);
+
+            List<DealPeakTime> expected = ReferencePeakTimes.findPeakTimeRange(restaurants);
+
+            assertArrayEquals(ReferencePeakTimes.dealCounts(restaurants),
+                    PeakTimeEngine.minuteCounts(startMinutes(snapshot), endMinutes(snapshot)), "Counts differ in run " + run);
+            assertEquals(expected, snapshot.peakTimes(ChronoUnit.MINUTES), "Minute peaks differ in run " + run);
+            assertEquals(expected, snapshot.peakTimes(ChronoUnit.SECONDS), "Second peaks differ in run " + run);
+        }
+    }
+
+    @Test
+    void shouldResolvePeaksBySecond() {
+        // Three windows overlapping between 10:00:30 and 10:00:45 only
+        int[] starts = {36_000, 36_030, 35_000};
+        int[] ends = {36_045, 36_100, 36_060};
+
+        List<DealPeakTime> peakTimes = PeakTimeEngine.peakRangesBySecond(starts, ends);
+
+        assertEquals(List.of(new DealPeakTime(LocalTime.of(10, 0, 30), LocalTime.of(10, 0, 45))), peakTimes);
+    }
+
+    @Test
+    void shouldReturnNoPeaksWithoutActiveDeals() {
+        int[] inactive = {DealSnapshot.INACTIVE};
+
+        assertTrue(PeakTimeEngine.peakRanges(PeakTimeEngine.minuteCounts(inactive, inactive)).isEmpty());
+        assertTrue(PeakTimeEngine.peakRangesBySecond(inactive, inactive).isEmpty());
+    }
+
+    private List<Restaurant> loadTestRestaurants() throws IOException {
+        try (InputStream inputStream = Files.newInputStream(Paths.get("src/test/resources/data.json"))) {
+            JsonNode restaurantsNode = objectMapper.readTree(inputStream).get("restaurants");
+            return objectMapper.treeToValue(
+                    restaurantsNode,
+                    objectMapper.getTypeFactory().constructCollectionType(List.class, Restaurant.class)
+            );
+        }
+    }
+
+    private static List<Restaurant> randomRestaurants(Random random, int count) {
+        List<Restaurant> restaurants = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            LocalTime open = randomTime(random);
+            LocalTime close = random.nextBoolean() ? randomTime(random) : LocalTime.of(23, 59);
+            List<Deal> deals = new ArrayList<>();
+            for (int d = random.nextInt(4); d > 0; d--) {
+                Deal deal = new Deal();
+                switch (random.nextInt(3)) {
+                    case 0:
+                        deal.setOpen(randomTime(random));
+                        deal.setClose(randomTime(random));
+                        break;
+                    case 1:
+                        deal.setStart(randomTime(random));
+                        deal.setEnd(randomTime(random));
+                        break;
+                    default:
+                        break;
+                }
+                deals.add(deal);
+            }
+            restaurants.add(Restaurant.builder().objectId("r" + r).open(open).close(close).deals(deals).build());
+        }
+        return restaurants;
+    }
+
+    private static LocalTime randomTime(Random random) {
+        int minute = random.nextInt(DAY_TOTAL_MINUTES);
+        return LocalTime.of(minute / MINUTES_IN_HOUR, minute % MINUTES_IN_HOUR);
+    }
+
+    private static int[] startMinutes(DealSnapshot snapshot) {
+        int[] starts = new int[snapshot.dealCount()];
+        Arrays.setAll(starts, snapshot::startMinute);
+        return starts;
+    }
+
+    private static int[] endMinutes(DealSnapshot snapshot) {
+        int[] ends = new int[snapshot.dealCount()];
+        Arrays.setAll(ends, snapshot::endMinute);
+        return ends;
+    }
+
+    /**
+     * The original O(deals x duration) implementation, marking every active minute of every deal.
+     */
+    static final class ReferencePeakTimes {
+
+        static List<DealPeakTime> findPeakTimeRange(List<Restaurant> restaurants) {
+            int[] dealCounts = dealCounts(restaurants);
+            List<DealPeakTime> peakTimes = new ArrayList<>();
+
+            int maxDeals = Arrays.stream(dealCounts).max().orElse(0);
+            if (maxDeals == 0) {
+                return peakTimes;
+            }
+
+            boolean inPeak = false;
+            int rangeStart = -1;
+            for (int i = 0; i <= dealCounts.length; i++) {
+                int current = (i < dealCounts.length) ? dealCounts[i] : 0;
+                if ((current == maxDeals) && !inPeak) {
+                    inPeak = true;
+                    rangeStart = i;
+                } else if (current != maxDeals && inPeak) {
+                    int endMinute = i - 1;
+                    peakTimes.add(new DealPeakTime(
+                            LocalTime.of(rangeStart / MINUTES_IN_HOUR, rangeStart % MINUTES_IN_HOUR),
+                            LocalTime.of(endMinute / MINUTES_IN_HOUR, endMinute % MINUTES_IN_HOUR)
+                    ));
+                    inPeak = false;
+                }
+            }
+            return peakTimes;
+        }
+
+        static int[] dealCounts(List<Restaurant> restaurants) {
+            int[] dealCounts = new int[DAY_TOTAL_MINUTES];
+            for (Restaurant restaurant : restaurants) {
+                if (restaurant.getDeals() == null) {
+                    continue;
+                }
+                for (Deal deal : restaurant.getDeals()) {
+                    LocalTime dealStartTime = deal.getOpen() != null ? deal.getOpen() : deal.getStart();
+                    LocalTime dealEndTime = deal.getClose() != null ? deal.getClose() : deal.getEnd();
+                    if (dealStartTime == null || dealEndTime == null) {
+                        dealStartTime = restaurant.getOpen();
+                        dealEndTime = restaurant.getClose();
+                    }
+                    markDealTime(dealCounts, restaurant.getOpen(), restaurant.getClose(), dealStartTime, dealEndTime);
+                }
+            }
+            return dealCounts;
+        }
+
+        private static void markDealTime(int[] dealCounts, LocalTime restaurantOpenTime, LocalTime restaurantCloseTime,
+                                         LocalTime dealStartTime, LocalTime dealEndTime) {
+            int restOpenMin = restaurantOpenTime.getHour() * MINUTES_IN_HOUR + restaurantOpenTime.getMinute();
+            int restCloseMin = restaurantCloseTime.getHour() * MINUTES_IN_HOUR + restaurantCloseTime.getMinute();
+            int dealStartMin = dealStartTime.getHour() * MINUTES_IN_HOUR + dealStartTime.getMinute();
+            int dealEndMin = dealEndTime.getHour() * MINUTES_IN_HOUR + dealEndTime.getMinute();
+
+            if (!(dealStartMin <= restCloseMin && dealEndMin >= restOpenMin)) {
+                return;
+            }
+
+            dealStartMin = Math.max(dealStartMin, restOpenMin);
+            dealEndMin = Math.min(dealEndMin, restCloseMin);
+
+            if (dealStartMin <= dealEndMin) {
+                for (int i = dealStartMin; i <= dealEndMin; i++) {
+                    dealCounts[i]++;
+                }
+            }
+        }
+    }
+}
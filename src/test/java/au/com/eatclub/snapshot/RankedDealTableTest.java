@@ -0,0 +1,124 @@
+package au.com.eatclub.snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static au.com.eatclub.snapshot.DealSnapshot.DAY_TOTAL_MINUTES;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link RankedDealTable}, checked against sorting the in-stock deals of the
+ * {@link MinuteDealTable} built from the same windows.
+ */
+class RankedDealTableTest {
+
+    @Test
+    void shouldHoldBestInStockDealsAtEveryMinute() {
+        Random random = new Random(13);
+        int count = 2_000;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        int[] discounts = new int[count];
+        int[] quantities = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = random.nextInt(DAY_TOTAL_MINUTES);
+            ends[i] = random.nextInt(10) == 0
+                    ? DealSnapshot.INACTIVE
+                    : Math.min(DAY_TOTAL_MINUTES - 1, starts[i] + random.nextInt(480));
+            discounts[i] = random.nextInt(20) == 0 ? DealColumns.UNKNOWN : random.nextInt(60);
+            quantities[i] = random.nextInt(5) - 1;
+        }
+
+        RankedDealTable table = RankedDealTable.build(starts, ends, discounts, quantities);
+        MinuteDealTable minutes = MinuteDealTable.build(starts, ends);
+
+        for (int minute = 0; minute < DAY_TOTAL_MINUTES; minute++) {
+            int[] expected = Arrays.stream(minutes.dealIdsAt(minute))
+                    .filter(id -> quantities[id] > 0)
+                    .boxed()
+                    .sorted((a, b) -> discounts[a] != discounts[b]
+                            ? Integer.compare(discounts[b], discounts[a])
+                            : Integer.compare(a, b))
+                    .mapToInt(Integer::intValue)
+                    .limit(RankedDealTable.DEPTH)
+                    .toArray();
+            int[] actual = new int[table.end(minute) - table.start(minute)];
+            for (int i = 0; i < actual.length; i++) {
+                actual[i] = table.dealId(table.start(minute) + i);
+            }
+            assertArrayEquals(expected, actual, "Mismatch at minute " + minute);
+            assertEquals(expected.length == RankedDealTable.DEPTH, table.isTruncated(minute));
+        }
+    }
+
+    @Test
+    void shouldFillDaytimeMinutesOfLargeFeedAndLeaveNightEmpty() {
+        Random random = new Random(17);
+        int count = 200_000;
+        int opening = 10 * DealSnapshot.MINUTES_IN_HOUR;
+        int closing = 22 * DealSnapshot.MINUTES_IN_HOUR;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        int[] discounts = new int[count];
+        int[] quantities = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = opening + random.nextInt(60);
+            ends[i] = closing - 1 - random.nextInt(60);
+            discounts[i] = random.nextInt(60);
+            quantities[i] = 1;
+        }
+
+        RankedDealTable table = RankedDealTable.build(starts, ends, discounts, quantities);
+
+        for (int minute = 0; minute < DAY_TOTAL_MINUTES; minute++) {
+            if (minute < opening || minute >= closing) {
+                assertEquals(table.start(minute), table.end(minute), "Night minute " + minute + " should stay empty");
+                continue;
+            }
+            assertEquals(RankedDealTable.DEPTH, table.end(minute) - table.start(minute));
+            assertTrue(table.isTruncated(minute));
+        }
+        for (int minute = opening; minute < closing; minute += 97) {
+            int current = minute;
+            int[] expected = IntStream.range(0, count)
+                    .filter(id -> starts[id] <= current && current <= ends[id])
+                    .boxed()
+                    .sorted((a, b) -> discounts[a] != discounts[b]
+                            ? Integer.compare(discounts[b], discounts[a])
+                            : Integer.compare(a, b))
+                    .mapToInt(Integer::intValue)
+                    .limit(RankedDealTable.DEPTH)
+                    .toArray();
+            int[] actual = new int[RankedDealTable.DEPTH];
+            for (int i = 0; i < actual.length; i++) {
+                actual[i] = table.dealId(table.start(minute) + i);
+            }
+            assertArrayEquals(expected, actual, "Mismatch at minute " + minute);
+        }
+    }
+
+    @Test
+    void shouldRankUnknownDiscountsLast() {
+        int[] starts = {600, 600, 600, 600};
+        int[] ends = {660, 660, 660, 660};
+        int[] discounts = {DealColumns.UNKNOWN, 0, 30, 30};
+        int[] quantities = {1, 2, 3, 0};
+
+        RankedDealTable table = RankedDealTable.build(starts, ends, discounts, quantities);
+
+        assertEquals(3, table.end(630) - table.start(630));
+        assertEquals(2, table.dealId(table.start(630)));
+        assertEquals(1, table.dealId(table.start(630) + 1));
+        assertEquals(0, table.dealId(table.start(630) + 2));
+        assertFalse(table.isTruncated(630));
+        assertEquals(table.start(700), table.end(700));
+        assertTrue(RankedDealTable.rankKey(DealColumns.UNKNOWN, 0) > RankedDealTable.rankKey(0, Integer.MAX_VALUE));
+        assertEquals(Integer.MAX_VALUE, RankedDealTable.idOf(RankedDealTable.rankKey(7, Integer.MAX_VALUE)));
+    }
+}